@@ -0,0 +1,178 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches whether a user is a collaborator of a repository, used to authorize comment and review triggers.
+ *
+ * Answers are kept for {@link #POSITIVE_TTL_SECONDS} when the user is a collaborator and for the shorter
+ * {@link #NEGATIVE_TTL_SECONDS} when they are not, failed lookups are not cached. Concurrent checks for the same
+ * repository and user share a single request. Entries are dropped early when GitHub reports a change of
+ * collaborators, organization membership or teams.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class CollaboratorCache {
+
+    static final long POSITIVE_TTL_SECONDS =
+            Long.getLong(CollaboratorCache.class.getName() + ".positiveTtlSeconds", 600L);
+    static final long NEGATIVE_TTL_SECONDS =
+            Long.getLong(CollaboratorCache.class.getName() + ".negativeTtlSeconds", 60L);
+    static final int MAX_ENTRIES = Integer.getInteger(CollaboratorCache.class.getName() + ".maxEntries", 10000);
+
+    private static final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The actual collaborator check.
+     */
+    @FunctionalInterface
+    interface Lookup {
+        boolean isCollaborator() throws IOException;
+    }
+
+    private CollaboratorCache() {
+        // go away
+    }
+
+    /**
+     * @param apiUri     the API endpoint the repository lives on
+     * @param repository the repository in {@code owner/name} form
+     * @param login      the user to check
+     * @param lookup     called when there is no valid cached answer
+     */
+    static boolean isCollaborator(@NonNull final String apiUri,
+                                  @NonNull final String repository,
+                                  @NonNull final String login,
+                                  @NonNull final Lookup lookup) throws IOException {
+        final Key key = new Key(apiUri, repository, login);
+        while (true) {
+            final long now = System.nanoTime();
+            final Entry created = new Entry();
+            final Entry entry = entries.compute(key, (k, existing) ->
+                    existing == null || existing.isExpired(now) ? created : existing);
+
+            if (entry != created) {
+                hits.incrementAndGet();
+                try {
+                    return entry.future.get();
+                } catch (final ExecutionException e) {
+                    // the lookup we joined failed and was removed, try again with our own
+                    continue;
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while checking if " + login + " is a collaborator", e);
+                }
+            }
+
+            misses.incrementAndGet();
+            if (entries.size() > MAX_ENTRIES) {
+                entries.values().removeIf(e -> e.isExpired(now));
+            }
+            try {
+                final boolean collaborator = lookup.isCollaborator();
+                entry.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(
+                        collaborator ? POSITIVE_TTL_SECONDS : NEGATIVE_TTL_SECONDS);
+                entry.future.complete(collaborator);
+                return collaborator;
+            } catch (final IOException | RuntimeException e) {
+                entries.remove(key, entry);
+                entry.future.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Drops the cached answers for a repository.
+     *
+     * @param repository the repository in {@code owner/name} form
+     * @param login      the user whose answer changed, or {@code null} for all users
+     */
+    public static void invalidate(@NonNull final String repository, @CheckForNull final String login) {
+        final String repo = repository.toLowerCase(Locale.ENGLISH);
+        final String user = login == null ? null : login.toLowerCase(Locale.ENGLISH);
+        entries.keySet().removeIf(key -> key.repository.equals(repo) && (user == null || key.login.equals(user)));
+    }
+
+    /**
+     * Drops the cached answers for every repository of an owner, e.g. when an organization's teams change.
+     */
+    public static void invalidateOwner(@NonNull final String owner) {
+        final String prefix = owner.toLowerCase(Locale.ENGLISH) + '/';
+        entries.keySet().removeIf(key -> key.repository.startsWith(prefix));
+    }
+
+    public static void invalidateAll() {
+        entries.clear();
+    }
+
+    public static int size() {
+        return entries.size();
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        // far in the future while the lookup is in flight
+        private volatile long expiresAt = System.nanoTime() + Long.MAX_VALUE / 2;
+
+        private boolean isExpired(final long now) {
+            return now - expiresAt > 0;
+        }
+    }
+
+    private static final class Key {
+        private final String apiUri;
+        private final String repository;
+        private final String login;
+
+        private Key(final String apiUri, final String repository, final String login) {
+            this.apiUri = apiUri;
+            this.repository = repository.toLowerCase(Locale.ENGLISH);
+            this.login = login.toLowerCase(Locale.ENGLISH);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return apiUri.equals(key.apiUri)
+                    && repository.equals(key.repository)
+                    && login.equals(key.login);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apiUri, repository, login);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The ids of the comments {@link PullRequestGroovyObject#upsertComment(String, String)} has written, by their marker.
+ *
+ * Attached to the build, and started from the index of the latest of the previous builds that has one, so a build
+ * edits the comment an earlier build of the pull request wrote without looking through the comments for it.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class CommentMarkerIndex extends InvisibleAction implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // how many previous builds are looked through for an index
+    static final int LOOKBACK = Math.max(0,
+            Integer.getInteger(CommentMarkerIndex.class.getName() + ".lookback", 20));
+
+    private final Map<String, Long> comments;
+
+    private CommentMarkerIndex(final Map<String, Long> comments) {
+        this.comments = comments;
+    }
+
+    /**
+     * @return the index of the build, added to it if it has none yet.
+     */
+    @NonNull
+    static CommentMarkerIndex of(@NonNull final Run<?, ?> build) {
+        synchronized (CommentMarkerIndex.class) {
+            CommentMarkerIndex index = build.getAction(CommentMarkerIndex.class);
+            if (index == null) {
+                final CommentMarkerIndex previous = previous(build);
+                index = new CommentMarkerIndex(previous != null ? previous.copy() : new TreeMap<>());
+                build.addAction(index);
+            }
+            return index;
+        }
+    }
+
+    @CheckForNull
+    private static CommentMarkerIndex previous(@NonNull final Run<?, ?> build) {
+        Run<?, ?> previous = build.getPreviousBuild();
+        for (int i = 0; i < LOOKBACK && previous != null; i++, previous = previous.getPreviousBuild()) {
+            final CommentMarkerIndex index = previous.getAction(CommentMarkerIndex.class);
+            if (index != null) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the hidden tag that marks a comment, written at the end of its body.
+     */
+    @NonNull
+    static String tag(@NonNull final String marker) {
+        return "<!-- " + marker + " -->";
+    }
+
+    private synchronized Map<String, Long> copy() {
+        return new TreeMap<>(comments);
+    }
+
+    @CheckForNull
+    synchronized Long get(@NonNull final String marker) {
+        return comments.get(marker);
+    }
+
+    synchronized void put(@NonNull final String marker, final long commentId) {
+        comments.put(marker, commentId);
+    }
+
+    synchronized void remove(@NonNull final String marker) {
+        comments.remove(marker);
+    }
+}
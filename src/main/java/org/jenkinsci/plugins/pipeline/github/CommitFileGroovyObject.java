@@ -2,6 +2,8 @@ package org.jenkinsci.plugins.pipeline.github;
 
 import groovy.lang.GroovyObjectSupport;
 import org.eclipse.egit.github.core.CommitFile;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedPullRequestService;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
 
 import java.io.Serializable;
@@ -10,6 +12,9 @@ import java.util.Objects;
 /**
  * Groovy wrapper over a {@link CommitFile}.
  *
+ * The files of a pull request don't keep their patch, it's read again from the page of files it was on when it's
+ * first asked for.
+ *
  * @author Aaron Whiteside
  * @see CommitFile
  */
@@ -17,9 +22,40 @@ public class CommitFileGroovyObject extends GroovyObjectSupport implements Seria
     private static final long serialVersionUID = 1L;
 
     private final CommitFile file;
+    // where to read the patch from, for the files of a pull request
+    private final String jobId;
+    private final RepositoryId base;
+    private final int pullRequestNumber;
+    private final int page;
+    private boolean patchRead;
 
     CommitFileGroovyObject(final CommitFile file) {
         this.file = Objects.requireNonNull(file, "file cannot be null");
+        this.jobId = null;
+        this.base = null;
+        this.pullRequestNumber = 0;
+        this.page = 0;
+    }
+
+    CommitFileGroovyObject(final CommitFile file,
+                           final String jobId,
+                           final RepositoryId base,
+                           final int pullRequestNumber,
+                           final int page) {
+        Objects.requireNonNull(file, "file cannot be null");
+        this.file = new CommitFile()
+                .setAdditions(file.getAdditions())
+                .setChanges(file.getChanges())
+                .setDeletions(file.getDeletions())
+                .setBlobUrl(file.getBlobUrl())
+                .setFilename(file.getFilename())
+                .setRawUrl(file.getRawUrl())
+                .setSha(file.getSha())
+                .setStatus(file.getStatus());
+        this.jobId = Objects.requireNonNull(jobId, "jobId cannot be null");
+        this.base = Objects.requireNonNull(base, "base cannot be null");
+        this.pullRequestNumber = pullRequestNumber;
+        this.page = page;
     }
 
     @Whitelisted
@@ -49,6 +85,17 @@ public class CommitFileGroovyObject extends GroovyObjectSupport implements Seria
 
     @Whitelisted
     public String getPatch() {
+        if (jobId != null && !patchRead) {
+            final ExtendedPullRequestService pullRequestService =
+                    new ExtendedPullRequestService(GitHubHelper.getGitHubClient(GitHubHelper.getJob(jobId)));
+            pullRequestService.pageFiles(base, pullRequestNumber, page).next()
+                    .stream()
+                    .filter(f -> Objects.equals(f.getFilename(), file.getFilename()))
+                    .findFirst()
+                    .ifPresent(f -> file.setPatch(f.getPatch()));
+            // binary and huge files have no patch
+            patchRead = true;
+        }
         return file.getPatch();
     }
 
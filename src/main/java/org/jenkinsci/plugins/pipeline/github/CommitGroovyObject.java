@@ -1,7 +1,9 @@
 package org.jenkinsci.plugins.pipeline.github;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import groovy.lang.GroovyObjectSupport;
+import hudson.model.Computer;
 import org.eclipse.egit.github.core.Commit;
 import org.eclipse.egit.github.core.CommitStatus;
 import org.eclipse.egit.github.core.RepositoryCommit;
@@ -9,18 +11,18 @@ import org.eclipse.egit.github.core.RepositoryId;
 import org.eclipse.egit.github.core.User;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedCommitComment;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedCommitService;
+import org.jenkinsci.plugins.pipeline.github.client.PrefetchingIterable;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.UncheckedIOException;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 import static java.util.stream.Collectors.toList;
 
@@ -36,14 +38,20 @@ import static java.util.stream.Collectors.toList;
  * - Review comments
  * - Statuses
  *
+ * The files of a commit are fetched when they are first asked for if it came without them, e.g. from the commits of
+ * a pull request, or was restored from its serialized form, which has only the logins of its users and no files.
+ *
  * @author Aaron Whiteside
  * @see RepositoryCommit
  */
-public class CommitGroovyObject extends GroovyObjectSupport implements Serializable {
+public class CommitGroovyObject extends GroovyObjectSupport implements Serializable,
+        PagedGroovyIterable.Listings {
     private static final long serialVersionUID = 1L;
 
     private final String jobId;
-    private final RepositoryCommit commit;
+    // the build the commit was read by, if any
+    private final String buildId;
+    private RepositoryCommit commit;
     private final RepositoryId base;
 
     private transient ExtendedCommitService commitService;
@@ -52,12 +60,69 @@ public class CommitGroovyObject extends GroovyObjectSupport implements Serializa
                        final RepositoryCommit commit,
                        final ExtendedCommitService commitService,
                        final RepositoryId base) {
+        this(jobId, null, commit, commitService, base);
+    }
+
+    CommitGroovyObject(final String jobId,
+                       @CheckForNull final String buildId,
+                       final RepositoryCommit commit,
+                       final ExtendedCommitService commitService,
+                       final RepositoryId base) {
         this.jobId = Objects.requireNonNull(jobId, "jobId cannot be null");
+        this.buildId = buildId;
         this.commit = Objects.requireNonNull(commit, "commit cannot be null");
         this.commitService = Objects.requireNonNull(commitService, "commitService cannot be null");
         this.base = Objects.requireNonNull(base, "base cannot be null");
     }
 
+    private CommitGroovyObject(final String jobId,
+                               final String buildId,
+                               final RepositoryCommit commit,
+                               final RepositoryId base) {
+        this.jobId = jobId;
+        this.buildId = buildId;
+        this.commit = commit;
+        this.base = base;
+    }
+
+    private Object writeReplace() {
+        final RepositoryCommit copy = new RepositoryCommit()
+                .setSha(commit.getSha())
+                .setUrl(commit.getUrl())
+                .setAuthor(GitHubHelper.loginOnly(commit.getAuthor()))
+                .setCommitter(GitHubHelper.loginOnly(commit.getCommitter()))
+                .setStats(commit.getStats());
+        if (commit.getCommit() != null) {
+            copy.setCommit(new Commit()
+                    .setMessage(commit.getCommit().getMessage())
+                    .setCommentCount(commit.getCommit().getCommentCount()));
+        }
+        if (commit.getParents() != null) {
+            copy.setParents(commit.getParents()
+                    .stream()
+                    .map(parent -> new Commit().setSha(parent.getSha()))
+                    .collect(toList()));
+        }
+        return new CommitGroovyObject(jobId, buildId, copy, base);
+    }
+
+    // the commit with its files, fetched if it has none
+    private RepositoryCommit fullCommit() {
+        if (commit.getFiles() == null) {
+            final RepositoryCommit full;
+            try {
+                full = getCommitService().getCommit(base, commit.getSha());
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (full.getFiles() == null) {
+                full.setFiles(Collections.emptyList());
+            }
+            commit = full;
+        }
+        return commit;
+    }
+
     private ExtendedCommitService getCommitService() {
         if (commitService == null) {
             commitService = new ExtendedCommitService(GitHubHelper.getGitHubClient(GitHubHelper.getJob(jobId)));
@@ -116,11 +181,21 @@ public class CommitGroovyObject extends GroovyObjectSupport implements Serializa
 
     @Whitelisted
     public Iterable<ReviewCommentGroovyObject> getComments() {
-        Stream<ReviewCommentGroovyObject> stream = StreamSupport.stream(
-                getCommitService().pageComments2(base, commit.getSha()).spliterator(), false)
-                .flatMap(Collection::stream)
-                .map(c -> new ReviewCommentGroovyObject(jobId, base, c, commitService));
-        return stream::iterator;
+        return new PagedGroovyIterable<>(this, "comments");
+    }
+
+    @Override
+    @Restricted(NoExternalUse.class)
+    public PrefetchingIterable<?, ?> listing(final String name) {
+        if (!"comments".equals(name)) {
+            throw new IllegalArgumentException("Unknown listing: " + name);
+        }
+        final ExtendedCommitService commitService = getCommitService();
+        final String sha = commit.getSha();
+        return new PrefetchingIterable<>(start -> commitService.pageComments2(base, sha, start, 100),
+                Computer.threadPoolForRemoting,
+                commitService.getClient().getGovernor(),
+                (comment, page) -> new ReviewCommentGroovyObject(jobId, base, comment, commitService));
     }
 
     @Whitelisted
@@ -145,8 +220,7 @@ public class CommitGroovyObject extends GroovyObjectSupport implements Serializa
 
     @Whitelisted
     public Iterable<CommitFileGroovyObject> getFiles() {
-        return Optional.ofNullable(commit.getFiles())
-                .orElseGet(Collections::emptyList)
+        return fullCommit().getFiles()
                 .stream()
                 .map(CommitFileGroovyObject::new)
                 .collect(toList());
@@ -192,6 +266,13 @@ public class CommitGroovyObject extends GroovyObjectSupport implements Serializa
                             params.get("targetUrl") != null ? params.get("targetUrl").toString() : null);
     }
 
+    /**
+     * Statuses that would not change anything are not sent, and rapid {@code pending} updates are coalesced, see
+     * {@link CommitStatusWriter}.
+     *
+     * @return the status as it is on GitHub, or, when it is held back to be coalesced with later updates, the status
+     *         as given: it has not been sent yet, so it has no id, url, creator or dates.
+     */
     @Whitelisted
     public CommitStatusGroovyObject createStatus(final String status,
                                                  final String context,
@@ -206,7 +287,8 @@ public class CommitGroovyObject extends GroovyObjectSupport implements Serializa
         commitStatus.setTargetUrl(targetUrl);
         try {
             return new CommitStatusGroovyObject(
-                    getCommitService().createStatus(base, commit.getSha(), commitStatus));
+                    CommitStatusWriter.write(buildId != null ? buildId : jobId, getCommitService(), base,
+                            commit.getSha(), commitStatus));
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -11,6 +11,8 @@ import java.util.Objects;
 /**
  * Groovy wrapper over a {@link CommitStatus}
  *
+ * A status that has not been sent to GitHub yet, see {@link CommitStatusWriter}, has no creator, id or dates.
+ *
  * @author Aaron Whiteside
  * @see CommitStatus
  */
@@ -25,7 +27,7 @@ public class CommitStatusGroovyObject extends GroovyObjectSupport implements Ser
 
     @Whitelisted
     public String getCreator() {
-        return commitStatus.getCreator().getLogin();
+        return GitHubHelper.userToLogin(commitStatus.getCreator());
     }
 
     @Whitelisted
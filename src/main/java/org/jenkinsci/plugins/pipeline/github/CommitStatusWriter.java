@@ -0,0 +1,187 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import jenkins.util.Timer;
+import org.eclipse.egit.github.core.CommitStatus;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.service.CommitService;
+import org.jenkinsci.plugins.pipeline.github.client.RequestGovernor;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes commit statuses, one (build, repository, sha, context) at a time.
+ *
+ * A status identical to the one the same build last wrote is not sent again. A {@code pending} status written within
+ * {@link #DEBOUNCE_MILLIS} of the previous write is held back, and only the latest of the held statuses is sent
+ * once the window has passed. Any other state is sent right away, replacing a held status, and whatever is still
+ * held when the build completes is sent then. What the build wrote is forgotten once it completes.
+ *
+ * Statuses written outside of a build are tracked for their job, and sent and forgotten when any build of it
+ * completes.
+ *
+ * Held statuses are sent as {@link RequestGovernor#forInfrastructure() infrastructure} work, when GitHub asks us to
+ * hold back for longer than that may wait they are sent once it lets us, rather than holding up the timer or the
+ * completion of the build.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class CommitStatusWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(CommitStatusWriter.class);
+
+    static final long DEBOUNCE_MILLIS = Math.max(0L,
+            Long.getLong(CommitStatusWriter.class.getName() + ".debounceMillis", 1000L));
+
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private CommitStatusWriter() {
+        // go away
+    }
+
+    /**
+     * @param owner the externalizable id of the build writing the status, or the full name of its job if there is no
+     *              build
+     * @return the status as it is on GitHub, or the status given if it is held back: it has not been sent yet, so
+     *         it has no id, url, creator or dates.
+     */
+    @NonNull
+    static CommitStatus write(@NonNull final String owner,
+                              @NonNull final CommitService commitService,
+                              @NonNull final RepositoryId repository,
+                              @NonNull final String sha,
+                              @NonNull final CommitStatus status) throws IOException {
+        final String key = owner + ' ' + repository.generateId() + '@' + sha + '#'
+                + Objects.toString(status.getContext(), "default");
+        final Entry entry = entries.computeIfAbsent(key, k -> new Entry(owner, repository, sha));
+        synchronized (entry) {
+            entry.commitService = commitService;
+            if (entry.written != null && same(entry.written, status)) {
+                // whatever was held would be replaced by what GitHub already has
+                entry.cancel();
+                SkippedWrites.increment("createStatus");
+                return entry.effective;
+            }
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.writtenAt);
+            if (entry.written != null && isPending(status) && elapsed < DEBOUNCE_MILLIS) {
+                if (entry.held != null) {
+                    SkippedWrites.increment("createStatus");
+                }
+                entry.held = status;
+                if (entry.flush == null) {
+                    entry.flush = Timer.get().schedule(entry::flush, DEBOUNCE_MILLIS - elapsed, TimeUnit.MILLISECONDS);
+                }
+                return status;
+            }
+            entry.cancel();
+            return entry.send(status);
+        }
+    }
+
+    /**
+     * Sends the statuses held for the build, or job, and forgets what was written for it.
+     */
+    static void flush(@NonNull final String owner) {
+        entries.entrySet().removeIf(e -> {
+            final Entry entry = e.getValue();
+            if (!entry.owner.equals(owner)) {
+                return false;
+            }
+            entry.flush();
+            return true;
+        });
+    }
+
+    private static boolean isPending(final CommitStatus status) {
+        return CommitStatus.STATE_PENDING.equals(status.getState().toLowerCase(Locale.ENGLISH));
+    }
+
+    private static boolean same(final CommitStatus a, final CommitStatus b) {
+        return a.getState().equalsIgnoreCase(b.getState())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getTargetUrl(), b.getTargetUrl());
+    }
+
+    private static final class Entry {
+        private final String owner;
+        private final RepositoryId repository;
+        private final String sha;
+        private CommitService commitService;
+        // the status last sent, and GitHub's response to it
+        private CommitStatus written;
+        private CommitStatus effective;
+        private long writtenAt;
+        // the latest pending status, until it's sent
+        private CommitStatus held;
+        private ScheduledFuture<?> flush;
+
+        private Entry(final String owner, final RepositoryId repository, final String sha) {
+            this.owner = owner;
+            this.repository = repository;
+            this.sha = sha;
+        }
+
+        // callers hold the lock
+        private CommitStatus send(final CommitStatus status) throws IOException {
+            effective = commitService.createStatus(repository, sha, status);
+            written = status;
+            writtenAt = System.nanoTime();
+            return effective;
+        }
+
+        // callers hold the lock
+        private void cancel() {
+            held = null;
+            if (flush != null) {
+                flush.cancel(false);
+                flush = null;
+            }
+        }
+
+        private synchronized void flush() {
+            final CommitStatus status = held;
+            cancel();
+            if (status != null) {
+                try (RequestGovernor.Scope ignored = RequestGovernor.forInfrastructure()) {
+                    send(status);
+                } catch (final IOException | RuntimeException e) {
+                    final RequestGovernor.HeldBackException heldBack = RequestGovernor.HeldBackException.of(e);
+                    if (heldBack == null) {
+                        LOG.warn("Failed to write the {} status of {} in {}", status.getState(), sha, repository, e);
+                    } else {
+                        LOG.debug("Deferring the {} status of {} in {} by {}ms", status.getState(), sha, repository,
+                                heldBack.getHeldMillis());
+                        held = status;
+                        flush = Timer.get().schedule(this::flush, heldBack.getHeldMillis(), TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the held statuses before the build is reported as completed.
+     */
+    @Extension
+    public static class CompletedListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(final Run<?, ?> run, @NonNull final TaskListener listener) {
+            flush(run.getExternalizableId());
+            flush(run.getParent().getFullName());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import org.jenkinsci.plugins.pipeline.github.client.RequestGovernor;
+import org.jenkinsci.plugins.pipeline.github.client.ResponseCache;
+import org.jenkinsci.plugins.pipeline.github.trigger.WebhookDispatcher;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Shows what the plugin's counters say about its GitHub traffic under Manage Jenkins: the writes that were skipped
+ * because they would not have changed anything, the response cache, the waits of the request governor of each
+ * principal and the webhook lanes. They count from the start of Jenkins.
+ *
+ * @author Aaron Whiteside
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class GitHubApiStatisticsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-analytics";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.GitHubApiStatisticsLink_displayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.GitHubApiStatisticsLink_description();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "pipeline-github-statistics";
+    }
+
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    public Map<String, Long> getSkippedWrites() {
+        return SkippedWrites.getCounts();
+    }
+
+    public ResponseCache getResponseCache() {
+        return ResponseCache.getDefault();
+    }
+
+    public Map<String, RequestGovernor> getGovernors() {
+        return new TreeMap<>(RequestGovernor.getGovernors());
+    }
+
+    public WebhookDispatcher getWebhookDispatcher() {
+        return WebhookDispatcher.get();
+    }
+}
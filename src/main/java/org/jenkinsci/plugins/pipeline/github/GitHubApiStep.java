@@ -0,0 +1,142 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import groovy.lang.MetaMethod;
+import hudson.Extension;
+import org.codehaus.groovy.reflection.CachedMethod;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.runtime.MetaClassHelper;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Calls a method of one of our Groovy objects on a background thread.
+ *
+ * The methods of {@link PullRequestGroovyObject} and friends talk to GitHub on the CPS VM thread, which every branch
+ * of a pipeline shares, so a slow response holds up all of them. With this step only the calling branch waits:
+ * <pre>
+ * githubApi target: pullRequest, method: 'addLabels', args: [['ci']]
+ * def comment = githubApi target: pullRequest, method: 'comment', args: ['Build started']
+ * </pre>
+ *
+ * Only the {@link Whitelisted} methods of our Groovy objects can be called, and {@link Iterable} results are read
+ * in full before the pipeline resumes. Calls on the same object, from parallel branches, may run at the same time:
+ * the objects guard what they keep of GitHub themselves, without holding a lock while GitHub is called.
+ *
+ * @author Aaron Whiteside
+ */
+public class GitHubApiStep extends Step {
+
+    private final Object target;
+    private final String method;
+    private List<Object> args = Collections.emptyList();
+
+    @DataBoundConstructor
+    public GitHubApiStep(final Object target, final String method) {
+        this.target = Objects.requireNonNull(target, "target is a required argument");
+        this.method = Objects.requireNonNull(method, "method is a required argument");
+    }
+
+    public Object getTarget() {
+        return target;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public List<Object> getArgs() {
+        return args;
+    }
+
+    @DataBoundSetter
+    public void setArgs(final List<Object> args) {
+        this.args = args != null ? new ArrayList<>(args) : Collections.emptyList();
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) {
+        return new Execution(this, context);
+    }
+
+    static Object invoke(final Object target, final String method, final List<Object> args) {
+        if (target.getClass().getPackage() != GitHubApiStep.class.getPackage()) {
+            throw new IllegalArgumentException("Not a GitHub object: " + target.getClass().getName());
+        }
+        final Object[] arguments = args.toArray();
+        final MetaMethod metaMethod = InvokerHelper.getMetaClass(target)
+                .pickMethod(method, MetaClassHelper.convertToTypeArray(arguments));
+        if (!(metaMethod instanceof CachedMethod)
+                || !((CachedMethod) metaMethod).getCachedMethod().isAnnotationPresent(Whitelisted.class)) {
+            throw new IllegalArgumentException("No such method: " + target.getClass().getSimpleName() + "."
+                    + method + " taking " + args.size() + " arguments");
+        }
+        final Object result = metaMethod.doMethodInvoke(target, arguments);
+        if (result instanceof Iterable && !(result instanceof Collection)) {
+            // lazily paged, page through it here rather than on the CPS VM thread
+            final List<Object> list = new ArrayList<>();
+            ((Iterable<?>) result).forEach(list::add);
+            return list;
+        }
+        return result;
+    }
+
+    private static final class Execution extends SynchronousNonBlockingStepExecution<Object> {
+        private static final long serialVersionUID = 1L;
+
+        // not resumable, there is nothing to keep
+        private final transient GitHubApiStep step;
+
+        private Execution(final GitHubApiStep step, final StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Object run() {
+            return invoke(step.target, step.method, step.args);
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getFunctionName() {
+            return "githubApi";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.GitHubApiStep_displayName();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Collections.emptySet();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import jenkins.scm.api.SCMSourceOwner;
+import org.jenkinsci.plugins.github_branch_source.Connector;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedGitHubClient;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller-wide registry of {@link ExtendedGitHubClient}s.
+ *
+ * A client is shared by every job whose {@link GitHubSCMSource} resolves to the same API endpoint, scan
+ * credentials and repository owner, so credential lookups, connections and rate limit state are shared across
+ * builds instead of being recreated for every Groovy object.
+ *
+ * Credentials are resolved again once they are older than {@link #CREDENTIALS_REFRESH_SECONDS}, and as soon as a
+ * credentials store that may hold them is saved.
+ *
+ * Clients are dropped when the item owning their source, or a folder above it, is deleted or moved, and once there
+ * are more than {@link #MAX_CLIENTS} the ones unused for an hour are dropped too, e.g. after a source was
+ * reconfigured with other credentials.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class GitHubClientRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(GitHubClientRegistry.class);
+
+    /**
+     * How long resolved credentials are trusted before they are looked up again. Kept well below the lifetime of
+     * GitHub App installation tokens.
+     */
+    static final long CREDENTIALS_REFRESH_SECONDS =
+            Long.getLong(GitHubClientRegistry.class.getName() + ".credentialsRefreshSeconds", 300L);
+
+    static final int MAX_CLIENTS = Integer.getInteger(GitHubClientRegistry.class.getName() + ".maxClients", 256);
+
+    private static final long IDLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final Map<Key, Entry> clients = new ConcurrentHashMap<>();
+
+    private GitHubClientRegistry() {
+        // go away
+    }
+
+    static ExtendedGitHubClient getClient(@NonNull final Job<?, ?> job, @NonNull final GitHubSCMSource source) {
+        if (clients.size() > MAX_CLIENTS) {
+            final long now = System.nanoTime();
+            clients.values().removeIf(e -> now - e.lastUsed > IDLE_NANOS);
+        }
+        final Entry entry = clients.computeIfAbsent(Key.of(source), k -> new Entry(newClient(source)));
+        entry.lastUsed = System.nanoTime();
+        entry.ensureCredentials(job, source);
+        return entry.client;
+    }
+
+    /**
+     * Creates a client for the source's API endpoint that is not shared and has no credentials configured.
+     */
+    static ExtendedGitHubClient newClient(@NonNull final GitHubSCMSource source) {
+        final URI uri = URI.create(source.getApiUri());
+        return new ExtendedGitHubClient(uri.getHost(), uri.getPort(), uri.getScheme());
+    }
+
+    /**
+     * Forces credentials to be resolved again for every client whose credentials context is the given item or
+     * one of its descendants.
+     */
+    static void invalidate(@NonNull final String fullName) {
+        clients.forEach((key, entry) -> {
+            if (key.isWithin(fullName)) {
+                entry.invalidate();
+            }
+        });
+    }
+
+    /**
+     * Drops the clients whose credentials context is the given item or one of its descendants.
+     */
+    static void evict(@NonNull final String fullName) {
+        clients.keySet().removeIf(key -> key.isWithin(fullName));
+    }
+
+    static void invalidateAll() {
+        clients.values().forEach(Entry::invalidate);
+    }
+
+    private static final class Key {
+        private final String apiUri;
+        private final String credentialsId;
+        private final String owner;
+        // credentials are looked up relative to the item owning the source, folders can shadow ids.
+        private final String context;
+
+        private Key(final String apiUri, final String credentialsId, final String owner, final String context) {
+            this.apiUri = apiUri;
+            this.credentialsId = credentialsId;
+            this.owner = owner;
+            this.context = context;
+        }
+
+        // whether the context is the given item or one of its descendants, every item is within the root
+        boolean isWithin(final String fullName) {
+            return fullName.isEmpty() || context.equals(fullName) || context.startsWith(fullName + '/');
+        }
+
+        static Key of(final GitHubSCMSource source) {
+            final SCMSourceOwner sourceOwner = source.getOwner();
+            return new Key(source.getApiUri(),
+                    source.getCredentialsId(),
+                    source.getRepoOwner(),
+                    sourceOwner != null ? sourceOwner.getFullName() : "");
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return Objects.equals(apiUri, key.apiUri)
+                    && Objects.equals(credentialsId, key.credentialsId)
+                    && Objects.equals(owner, key.owner)
+                    && Objects.equals(context, key.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apiUri, credentialsId, owner, context);
+        }
+    }
+
+    private static final class Entry {
+        private final ExtendedGitHubClient client;
+        private volatile long lastUsed = System.nanoTime();
+        private volatile long resolvedAt;
+        private volatile boolean resolved;
+
+        private Entry(final ExtendedGitHubClient client) {
+            this.client = client;
+        }
+
+        void ensureCredentials(final Job<?, ?> job, final GitHubSCMSource source) {
+            if (isFresh()) {
+                return;
+            }
+            synchronized (this) {
+                if (isFresh()) {
+                    return;
+                }
+                if (source.getCredentialsId() != null) {
+                    final StandardCredentials credentials = Connector.lookupScanCredentials(
+                            job, source.getApiUri(), source.getCredentialsId(), source.getRepoOwner());
+
+                    if (credentials instanceof StandardUsernamePasswordCredentials) {
+                        StandardUsernamePasswordCredentials c = (StandardUsernamePasswordCredentials) credentials;
+                        client.setCredentials(c.getUsername(), c.getPassword().getPlainText());
+                    } else {
+                        LOG.debug("No username/password credentials found for id: {}, job: {}",
+                                source.getCredentialsId(), job.getFullName());
+                    }
+                }
+                resolvedAt = System.nanoTime();
+                resolved = true;
+            }
+        }
+
+        void invalidate() {
+            resolved = false;
+        }
+
+        private boolean isFresh() {
+            return resolved
+                    && System.nanoTime() - resolvedAt < TimeUnit.SECONDS.toNanos(CREDENTIALS_REFRESH_SECONDS);
+        }
+    }
+
+    /**
+     * Marks cached credentials stale whenever the system credentials or a folder (which may carry folder scoped
+     * credentials) is saved.
+     */
+    @Extension
+    public static class CredentialsChangeListener extends SaveableListener {
+        @Override
+        public void onChange(final Saveable o, final XmlFile file) {
+            if (o instanceof SystemCredentialsProvider) {
+                LOG.debug("System credentials changed, invalidating all GitHub clients");
+                invalidateAll();
+            } else if (o instanceof ItemGroup && o instanceof Item) {
+                invalidate(((Item) o).getFullName());
+            }
+        }
+    }
+
+    /**
+     * Drops the clients of deleted and moved items, a moved item gets a new client under its new name.
+     */
+    @Extension
+    public static class ItemChangeListener extends ItemListener {
+        @Override
+        public void onDeleted(final Item item) {
+            evict(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+            evict(oldFullName);
+        }
+    }
+}
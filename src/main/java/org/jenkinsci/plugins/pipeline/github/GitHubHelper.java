@@ -1,24 +1,27 @@
 package org.jenkinsci.plugins.pipeline.github;
 
-import com.cloudbees.plugins.credentials.common.StandardCredentials;
-import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.Job;
+import hudson.model.Run;
 import jenkins.model.Jenkins;
 import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.api.SCMRevisionAction;
 import jenkins.scm.api.SCMSource;
 import org.eclipse.egit.github.core.RepositoryId;
 import org.eclipse.egit.github.core.User;
 import org.eclipse.egit.github.core.service.CollaboratorService;
-import org.jenkinsci.plugins.github_branch_source.Connector;
 import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
 import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMRevision;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedGitHubClient;
+import org.jenkinsci.plugins.pipeline.github.client.RequestGovernor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.URI;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -36,13 +39,25 @@ public class GitHubHelper {
         // go away
     }
 
+    /**
+     * Checks if the user is a collaborator of the job's repository, answers are cached by {@link CollaboratorCache}.
+     *
+     * @throws UncheckedIOException caused by a {@link RequestGovernor.HeldBackException} if GitHub asked us to hold
+     *                              back for longer than the current thread may wait, the answer is not known yet.
+     */
     public static Boolean isAuthorized(@NonNull final Job<?,?> job, @NonNull final String User) {
-        ExtendedGitHubClient client = getGitHubClient(job);
+        GitHubSCMSource source = getGitHubSCMSource(job);
         RepositoryId repository = getRepositoryId(job);
-        CollaboratorService collaboratorService = new CollaboratorService(client);
+        if (repository == null) {
+            LOG.debug("Job: {} has no repository credentials, user {} is not authorized", job.getFullName(), User);
+            return false;
+        }
 
         try {
-            return collaboratorService.isCollaborator(repository, User);
+            return CollaboratorCache.isCollaborator(source.getApiUri(), repository.generateId(), User,
+                    () -> new CollaboratorService(getGitHubClient(job)).isCollaborator(repository, User));
+        } catch (final RequestGovernor.HeldBackException e) {
+            throw new UncheckedIOException(e);
         } catch (final IOException e) {
             LOG.debug("Received an exception while trying to check if user {} is a collaborator of repository: {}",
                     User, repository, e);
@@ -50,27 +65,27 @@ public class GitHubHelper {
         }
     }
 
+    /**
+     * Returns the shared client for the job's {@link GitHubSCMSource}, configured with its scan credentials.
+     *
+     * The client is shared with other jobs, callers must not change its credentials,
+     * use {@link #newGitHubClient(Job)} for that.
+     */
     public static ExtendedGitHubClient getGitHubClient(@NonNull final Job<?,?> job) {
+        return GitHubClientRegistry.getClient(job, getGitHubSCMSource(job));
+    }
+
+    /**
+     * Returns a new, unshared client for the job's {@link GitHubSCMSource} without any credentials configured.
+     */
+    public static ExtendedGitHubClient newGitHubClient(@NonNull final Job<?,?> job) {
+        return GitHubClientRegistry.newClient(getGitHubSCMSource(job));
+    }
+
+    private static GitHubSCMSource getGitHubSCMSource(final Job<?,?> job) {
         SCMSource scmSource = SCMSource.SourceByItem.findSource(job);
         if (scmSource instanceof GitHubSCMSource) {
-            GitHubSCMSource gitHubSource = (GitHubSCMSource) scmSource;
-
-            URI uri = URI.create(gitHubSource.getApiUri());
-            ExtendedGitHubClient client = new ExtendedGitHubClient(uri.getHost(), uri.getPort(), uri.getScheme());
-
-            // configure credentials
-            if (gitHubSource.getCredentialsId() != null) {
-                StandardCredentials credentials = Connector.lookupScanCredentials(
-                        job, gitHubSource.getApiUri(), gitHubSource.getCredentialsId(), gitHubSource.getRepoOwner());
-
-                if (credentials instanceof StandardUsernamePasswordCredentials) {
-                    StandardUsernamePasswordCredentials c = (StandardUsernamePasswordCredentials) credentials;
-                    String userName = c.getUsername();
-                    String password = c.getPassword().getPlainText();
-                    client.setCredentials(userName, password);
-                }
-            }
-            return client;
+            return (GitHubSCMSource) scmSource;
         }
         throw new IllegalArgumentException("Job's SCM is not GitHub.");
     }
@@ -94,10 +109,27 @@ public class GitHubHelper {
         return head;
     }
 
+    /**
+     * @return the pull request revision the build checked out, {@code null} if it is not known (yet).
+     */
+    @CheckForNull
+    public static PullRequestSCMRevision getPullRequestRevision(@NonNull final Run<?, ?> build) {
+        final SCMSource source = SCMSource.SourceByItem.findSource(build.getParent());
+        final SCMRevision revision = source != null ? SCMRevisionAction.getRevision(source, build) : null;
+        return revision instanceof PullRequestSCMRevision ? (PullRequestSCMRevision) revision : null;
+    }
+
     public static String userToLogin(final User user) {
         return user == null ? null : user.getLogin();
     }
 
+    /**
+     * @return a user with only the login of the given one, for the serialized forms of our Groovy objects.
+     */
+    public static User loginOnly(final User user) {
+        return user == null ? null : new User().setLogin(user.getLogin());
+    }
+
     public static Job getJob(final String jobId) {
         final Job job = Jenkins.get().getItemByFullName(jobId, Job.class);
         if (job == null) {
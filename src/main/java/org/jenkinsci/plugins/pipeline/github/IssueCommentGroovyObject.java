@@ -18,6 +18,10 @@ import java.util.Objects;
  *
  * Additionally provides one the ability to update the comment body and delete the comment.
  *
+ * Serialized with only the login of the comment's user.
+ *
+ * A comment written by {@link PullRequestGroovyObject#upsertComment(String, String)} knows its marker.
+ *
  * @author Aaron Whiteside
  * @see Comment
  */
@@ -27,6 +31,7 @@ public class IssueCommentGroovyObject extends GroovyObjectSupport implements Ser
     private final String jobId;
     private final RepositoryId base;
     private Comment comment;
+    private final String marker;
 
     private transient IssueService issueService;
 
@@ -34,10 +39,42 @@ public class IssueCommentGroovyObject extends GroovyObjectSupport implements Ser
                              final Comment comment,
                              final RepositoryId base,
                              final IssueService issueService) {
+        this(jobId, comment, base, issueService, null);
+    }
+
+    IssueCommentGroovyObject(final String jobId,
+                             final Comment comment,
+                             final RepositoryId base,
+                             final IssueService issueService,
+                             final String marker) {
         this.jobId = Objects.requireNonNull(jobId, "jobId cannot be null");
         this.comment = Objects.requireNonNull(comment, "comment cannot be null");
         this.base = Objects.requireNonNull(base, "base cannot be null");
         this.issueService = Objects.requireNonNull(issueService, "issueService cannot be null");
+        this.marker = marker;
+    }
+
+    private IssueCommentGroovyObject(final String jobId,
+                                     final Comment comment,
+                                     final RepositoryId base,
+                                     final String marker) {
+        this.jobId = jobId;
+        this.comment = comment;
+        this.base = base;
+        this.marker = marker;
+    }
+
+    private Object writeReplace() {
+        final Comment copy = new Comment()
+                .setId(comment.getId())
+                .setUrl(comment.getUrl())
+                .setBody(comment.getBody())
+                .setBodyHtml(comment.getBodyHtml())
+                .setBodyText(comment.getBodyText())
+                .setCreatedAt(comment.getCreatedAt())
+                .setUpdatedAt(comment.getUpdatedAt())
+                .setUser(GitHubHelper.loginOnly(comment.getUser()));
+        return new IssueCommentGroovyObject(jobId, copy, base, marker);
     }
 
     private IssueService getIssueService() {
@@ -87,6 +124,14 @@ public class IssueCommentGroovyObject extends GroovyObjectSupport implements Ser
         return GitHubHelper.userToLogin(comment.getUser());
     }
 
+    /**
+     * @return the marker the comment was upserted by, or {@code null} if it wasn't.
+     */
+    @Whitelisted
+    public String getMarker() {
+        return marker;
+    }
+
     @Whitelisted
     public void setBody(final String body) {
         Comment edit = new Comment();
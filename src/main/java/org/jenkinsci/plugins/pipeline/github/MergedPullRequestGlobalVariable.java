@@ -1,6 +1,7 @@
 package org.jenkinsci.plugins.pipeline.github;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import groovy.lang.Binding;
 import hudson.model.Run;
 import jenkins.plugins.git.AbstractGitSCMSource;
 import jenkins.scm.api.SCMRevision;
@@ -28,11 +29,19 @@ public class MergedPullRequestGlobalVariable extends GlobalVariable {
     @NonNull
     @Override
     public Object getValue(@NonNull final CpsScript script) throws Exception {
+        final Binding binding = script.getBinding();
+        if (binding.hasVariable(getName())) {
+            return binding.getVariable(getName());
+        }
+
         final Run<?, ?> build = script.$build();
         if (build == null) {
             throw new IllegalStateException("No associated build");
         }
-        return new MergedPullRequestGroovyObject(build.getParent(), getMergedPullRequest(build));
+        final MergedPullRequestGroovyObject mergedPullRequest =
+                new MergedPullRequestGroovyObject(build.getParent(), getMergedPullRequest(build));
+        binding.setVariable(getName(), mergedPullRequest);
+        return mergedPullRequest;
     }
 
     private ExtendedPullRequest getMergedPullRequest(final Run<?, ?> run) {
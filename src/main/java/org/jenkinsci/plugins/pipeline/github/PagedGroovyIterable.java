@@ -0,0 +1,93 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import org.jenkinsci.plugins.pipeline.github.client.PrefetchingIterable;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * The items of a paged listing, as given to Pipeline scripts.
+ *
+ * Pages are read as the items are iterated, see {@link PrefetchingIterable}. The iterator only keeps the page it is
+ * on and how many of its items were returned, so a loop over the items can run steps and be saved in program.dat.
+ * Once restored, it reads the current page again and skips the items already returned.
+ *
+ * @param <R> the items
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class PagedGroovyIterable<R> implements Iterable<R>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Whatever the listings are read from, saved along with their iterators.
+     */
+    public interface Listings extends Serializable {
+        /**
+         * @param name the name of the listing
+         * @return the listing, its items of the type the {@link PagedGroovyIterable} was created for
+         */
+        PrefetchingIterable<?, ?> listing(String name);
+    }
+
+    private final Listings listings;
+    private final String name;
+
+    PagedGroovyIterable(final Listings listings, final String name) {
+        this.listings = Objects.requireNonNull(listings, "listings cannot be null");
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+    }
+
+    @Override
+    public Iterator<R> iterator() {
+        return new Cursor<>(listings, name);
+    }
+
+    private static final class Cursor<R> implements Iterator<R>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Listings listings;
+        private final String name;
+        // the page of the last item returned, and how many of its items were returned
+        private int page = 1;
+        private int offset;
+
+        private transient PrefetchingIterable.PageAwareIterator<?> items;
+
+        private Cursor(final Listings listings, final String name) {
+            this.listings = listings;
+            this.name = name;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (items == null) {
+                items = listings.listing(name).iterator(page);
+                for (int i = 0; i < offset && items.hasNext(); i++) {
+                    items.next();
+                }
+            }
+            return items.hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final R item = (R) items.next();
+            if (items.getPage() != page) {
+                page = items.getPage();
+                offset = 0;
+            }
+            offset++;
+            return item;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import groovy.lang.GroovyObjectSupport;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Records changes to a pull request and applies them with as few requests as possible.
+ *
+ * Pull request fields are sent in one PATCH of the pull request, the milestone in one PATCH of its issue, and review
+ * requests in one POST. Labels added and removed are sent with a POST and a DELETE per removed label, assignees with
+ * a POST and a DELETE, so those set by others in the meantime are kept; only {@link #labels(List)} and
+ * {@link #assignees(List)} replace them, in the PATCH of the issue. These are sent concurrently:
+ * <pre>
+ * pullRequest.batch()
+ *     .title('New title')
+ *     .addLabels(['ci'])
+ *     .assignees(['octocat'])
+ *     .apply()
+ * </pre>
+ *
+ * @author Aaron Whiteside
+ * @see PullRequestGroovyObject#batch()
+ */
+public class PullRequestBatchGroovyObject extends GroovyObjectSupport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final PullRequestGroovyObject pullRequest;
+
+    // pull request fields
+    String title;
+    String body;
+    String state;
+    String base;
+    Boolean maintainerCanModify;
+
+    // issue fields, labels and assignees are replaced by the given ones, then added to and removed from
+    List<String> labels;
+    final Set<String> addLabels = new LinkedHashSet<>();
+    final Set<String> removeLabels = new LinkedHashSet<>();
+    List<String> assignees;
+    final Set<String> addAssignees = new LinkedHashSet<>();
+    final Set<String> removeAssignees = new LinkedHashSet<>();
+    boolean milestoneSet;
+    Integer milestone;
+
+    // review requests
+    final Set<String> reviewers = new LinkedHashSet<>();
+    final Set<String> teamReviewers = new LinkedHashSet<>();
+
+    PullRequestBatchGroovyObject(final PullRequestGroovyObject pullRequest) {
+        this.pullRequest = Objects.requireNonNull(pullRequest, "pullRequest cannot be null");
+    }
+
+    /**
+     * Records the changes of the map, its keys are the names of the methods of this class.
+     */
+    PullRequestBatchGroovyObject record(final Map<String, Object> changes) {
+        for (final Map.Entry<String, Object> change : changes.entrySet()) {
+            final Object value = change.getValue();
+            switch (change.getKey()) {
+                case "title":
+                    title(Objects.toString(value, null));
+                    break;
+                case "body":
+                    body(Objects.toString(value, null));
+                    break;
+                case "state":
+                    state(Objects.toString(value, null));
+                    break;
+                case "base":
+                    base(Objects.toString(value, null));
+                    break;
+                case "maintainerCanModify":
+                    maintainerCanModify(Boolean.TRUE.equals(value));
+                    break;
+                case "labels":
+                    labels(strings(change.getKey(), value));
+                    break;
+                case "addLabels":
+                    addLabels(strings(change.getKey(), value));
+                    break;
+                case "removeLabels":
+                    removeLabels(strings(change.getKey(), value));
+                    break;
+                case "assignees":
+                    assignees(strings(change.getKey(), value));
+                    break;
+                case "addAssignees":
+                    addAssignees(strings(change.getKey(), value));
+                    break;
+                case "removeAssignees":
+                    removeAssignees(strings(change.getKey(), value));
+                    break;
+                case "milestone":
+                    milestone(value);
+                    break;
+                case "reviewers":
+                    reviewers(strings(change.getKey(), value));
+                    break;
+                case "teamReviewers":
+                    teamReviewers(strings(change.getKey(), value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown pull request change: " + change.getKey());
+            }
+        }
+        return this;
+    }
+
+    private static List<String> strings(final String key, final Object value) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException(key + " must be a list");
+        }
+        final List<String> strings = new ArrayList<>();
+        for (final Object item : (List<?>) value) {
+            strings.add(Objects.toString(item));
+        }
+        return strings;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject title(final String title) {
+        this.title = Objects.requireNonNull(title, "title cannot be null");
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject body(final String body) {
+        this.body = Objects.requireNonNull(body, "body cannot be null");
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject state(final String state) {
+        this.state = Objects.requireNonNull(state, "state cannot be null");
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject base(final String base) {
+        this.base = Objects.requireNonNull(base, "base cannot be null");
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject maintainerCanModify(final boolean maintainerCanModify) {
+        this.maintainerCanModify = maintainerCanModify;
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject labels(final List<String> labels) {
+        this.labels = new ArrayList<>(Objects.requireNonNull(labels, "labels cannot be null"));
+        addLabels.clear();
+        removeLabels.clear();
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject addLabels(final List<String> labels) {
+        Objects.requireNonNull(labels, "labels cannot be null");
+        removeLabels.removeAll(labels);
+        addLabels.addAll(labels);
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject removeLabels(final List<String> labels) {
+        Objects.requireNonNull(labels, "labels cannot be null");
+        addLabels.removeAll(labels);
+        removeLabels.addAll(labels);
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject assignees(final List<String> assignees) {
+        this.assignees = new ArrayList<>(Objects.requireNonNull(assignees, "assignees cannot be null"));
+        addAssignees.clear();
+        removeAssignees.clear();
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject addAssignees(final List<String> assignees) {
+        Objects.requireNonNull(assignees, "assignees cannot be null");
+        removeAssignees.removeAll(assignees);
+        addAssignees.addAll(assignees);
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject removeAssignees(final List<String> assignees) {
+        Objects.requireNonNull(assignees, "assignees cannot be null");
+        addAssignees.removeAll(assignees);
+        removeAssignees.addAll(assignees);
+        return this;
+    }
+
+    /**
+     * @param milestone the milestone, its number, or {@code null} to remove the milestone
+     */
+    @Whitelisted
+    public PullRequestBatchGroovyObject milestone(final Object milestone) {
+        if (milestone == null) {
+            this.milestone = null;
+        } else if (milestone instanceof MilestoneGroovyObject) {
+            this.milestone = ((MilestoneGroovyObject) milestone).getNumber();
+        } else if (milestone instanceof Number) {
+            this.milestone = ((Number) milestone).intValue();
+        } else {
+            throw new IllegalArgumentException("milestone must be a milestone or its number");
+        }
+        this.milestoneSet = true;
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject reviewers(final List<String> reviewers) {
+        this.reviewers.addAll(Objects.requireNonNull(reviewers, "reviewers cannot be null"));
+        return this;
+    }
+
+    @Whitelisted
+    public PullRequestBatchGroovyObject teamReviewers(final List<String> teams) {
+        this.teamReviewers.addAll(Objects.requireNonNull(teams, "teams cannot be null"));
+        return this;
+    }
+
+    boolean hasPullRequestChanges() {
+        return title != null || body != null || state != null || base != null || maintainerCanModify != null;
+    }
+
+    boolean hasLabelChanges() {
+        return labels != null || !addLabels.isEmpty() || !removeLabels.isEmpty();
+    }
+
+    boolean hasAssigneeChanges() {
+        return assignees != null || !addAssignees.isEmpty() || !removeAssignees.isEmpty();
+    }
+
+    boolean hasReviewRequests() {
+        return !reviewers.isEmpty() || !teamReviewers.isEmpty();
+    }
+
+    /**
+     * Sends the recorded changes.
+     *
+     * @return the pull request, with all of the changes applied to it.
+     */
+    @Whitelisted
+    public PullRequestGroovyObject apply() {
+        pullRequest.apply(this);
+        return pullRequest;
+    }
+}
@@ -1,13 +1,20 @@
 package org.jenkinsci.plugins.pipeline.github;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import groovy.lang.Binding;
 import hudson.model.Run;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMRevision;
 import org.jenkinsci.plugins.workflow.cps.CpsScript;
 import org.jenkinsci.plugins.workflow.cps.GlobalVariable;
 
 /**
  * Factory for our {@link PullRequestGroovyObject} instance.
  *
+ * The instance is created once per run and kept in the script binding, so every reference to
+ * {@code pullRequest} shares the same cached pull request. Builds started by one of our triggers begin with the
+ * {@link PullRequestSnapshot} of the webhook, unless the pull request has been pushed to since. Use
+ * {@link PullRequestGroovyObject#refresh()} to re-read it from GitHub.
+ *
  * @author Aaron Whiteside
  * @see PullRequestGroovyObject
  */
@@ -22,11 +29,25 @@ public class PullRequestGlobalVariable extends GlobalVariable {
     @NonNull
     @Override
     public Object getValue(@NonNull final CpsScript script) throws Exception {
+        final Binding binding = script.getBinding();
+        if (binding.hasVariable(getName())) {
+            return binding.getVariable(getName());
+        }
+
         final Run<?, ?> build = script.$build();
         if (build == null) {
             throw new IllegalStateException("No associated build");
         }
-        return new PullRequestGroovyObject(build.getParent());
+        final PullRequestSCMRevision revision = GitHubHelper.getPullRequestRevision(build);
+        // a build triggered by a webhook starts from the pull request in its payload
+        PullRequestSnapshot snapshot = build.getAction(PullRequestSnapshot.class);
+        if (snapshot != null && !snapshot.isCurrent(revision)) {
+            snapshot = null;
+        }
+        final PullRequestGroovyObject pullRequest =
+                new PullRequestGroovyObject(build, snapshot, revision);
+        binding.setVariable(getName(), pullRequest);
+        return pullRequest;
     }
 
 }
@@ -1,18 +1,25 @@
 package org.jenkinsci.plugins.pipeline.github;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import groovy.lang.GroovyObjectSupport;
+import hudson.model.Computer;
 import hudson.model.Job;
+import hudson.model.Run;
 import jenkins.model.Jenkins;
 import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.CommitStatus;
+import org.eclipse.egit.github.core.Issue;
 import org.eclipse.egit.github.core.Label;
 import org.eclipse.egit.github.core.Milestone;
 import org.eclipse.egit.github.core.PullRequestMarker;
 import org.eclipse.egit.github.core.RepositoryId;
 import org.eclipse.egit.github.core.Team;
 import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.RequestException;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMRevision;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedCommitComment;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedCommitService;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedGitHubClient;
@@ -21,44 +28,107 @@ import org.jenkinsci.plugins.pipeline.github.client.ExtendedMergeStatus;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedMilestoneService;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedPullRequest;
 import org.jenkinsci.plugins.pipeline.github.client.ExtendedPullRequestService;
+import org.jenkinsci.plugins.pipeline.github.client.PrefetchingIterable;
+import org.jenkinsci.plugins.pipeline.github.client.RequestGovernor;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
 import org.jenkinsci.plugins.workflow.cps.persistence.PersistIn;
 import org.jenkinsci.plugins.workflow.cps.persistence.PersistenceContext;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 /**
  * Groovy object that represents a GitHub PullRequest.
  *
- * TODO: better javadoc
+ * Fields are read from the cheapest source that has them, the pull request is only fetched on first access to a
+ * field none of them has, and kept until {@link #refresh()}:
+ * <ul>
+ *     <li>identity: the number comes from the SCM head, ids and urls need the pull request</li>
+ *     <li>refs: head and base refs come from the SCM head, their shas from the revision the build checked out, or
+ *     from the webhook snapshot, and are kept once read</li>
+ *     <li>metadata: title, state, draft and updated at come from the webhook snapshot</li>
+ *     <li>counters: commits, comments, additions, deletions and changed files need the pull request</li>
+ *     <li>mergeability: the mergeable state comes from the webhook snapshot</li>
+ * </ul>
+ * Labels are read from GitHub each time they are asked for.
+ *
+ * Unlike the other fields, the refs and their shas do not follow the pull request once it is fetched: they stay those
+ * of the build until {@link #refresh()}, or a change of the base through this object. Before, they were those of the
+ * pull request as last fetched, so the head could move while the build ran.
+ *
+ * A fetched pull request is serialized as a {@link PullRequestSnapshot}, keeping program.dat small.
+ *
+ * The {@code githubApi} step calls this object from other threads than the CPS VM thread, parallel branches may call
+ * it at the same time. Its own state is guarded by a private lock that is only held to read or update it, never while
+ * GitHub is called: what is fetched or written is kept once the call returns, a parallel call may have kept its own
+ * result in the meantime.
  *
  * @author Aaron Whiteside
  * @see ExtendedPullRequest
  */
 @PersistIn(PersistenceContext.NONE)
-public class PullRequestGroovyObject extends GroovyObjectSupport implements Serializable {
+public class PullRequestGroovyObject extends GroovyObjectSupport implements Serializable,
+        PagedGroovyIterable.Listings {
 
     private static final long serialVersionUID = 1L;
 
+    // how many inline comments are sent with each review, larger reviews are split
+    static final int REVIEW_COMMENTS_PER_REQUEST = Math.max(1,
+            Integer.getInteger(PullRequestGroovyObject.class.getName() + ".reviewCommentsPerRequest", 50));
+
     private final String jobId;
     private int pullRequestNumber;
     private RepositoryId base;
     private ExtendedPullRequest pullRequest;
-
+    private PullRequestSnapshot snapshot;
+    // refs of the SCM head and revision of the build
+    private String headSha;
+    private String headRef;
+    private String baseSha;
+    private String baseRef;
+    // the labels of the pull request as last read or written by this build, kept in step with our writes
+    private List<String> knownLabels;
+    // the assignees as last written by this build, or read by refresh(): login -> assigned, and whether that is all
+    // of them, so those not in it are not assigned
+    private Map<String, Boolean> knownAssignees;
+    private boolean allAssigneesKnown;
+    // the build the pull request was read by, if any
+    private String buildId;
+
+    // guards the fields of this object, never held while GitHub is called
+    private transient Object lock = new Object();
     private transient Job job;
+    private transient Run<?, ?> build;
     private transient ExtendedGitHubClient gitHubClient;
     private transient ExtendedPullRequestService pullRequestService;
     private transient ExtendedIssueService issueService;
@@ -66,15 +136,50 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     private transient ExtendedMilestoneService milestoneService;
 
     PullRequestGroovyObject(@NonNull final Job job) throws Exception {
+        this(job, null, null);
+    }
+
+    /**
+     * Nothing is fetched from GitHub until a field that needs it is read.
+     *
+     * @param snapshot the pull request from the webhook that triggered the build
+     * @param revision the revision the build checked out
+     */
+    PullRequestGroovyObject(@NonNull final Job job,
+                            @CheckForNull final PullRequestSnapshot snapshot,
+                            @CheckForNull final PullRequestSCMRevision revision) throws Exception {
         this.job = job;
 
         this.jobId = job.getFullName();
 
-        this.pullRequestNumber = GitHubHelper.getPullRequest(job).getNumber();
+        final PullRequestSCMHead head = GitHubHelper.getPullRequest(job);
+        this.pullRequestNumber = head.getNumber();
         this.base = GitHubHelper.getRepositoryId(job);
 
-        // fetch and cache the pull request
-        this.pullRequest = getPullRequestService().getPullRequest(base, pullRequestNumber);
+        this.headRef = head.getSourceBranch();
+        this.baseRef = head.getTarget() != null ? head.getTarget().getName() : null;
+        if (revision != null) {
+            this.headSha = revision.getPullHash();
+            this.baseSha = revision.getBaseHash();
+        }
+        if (snapshot != null && snapshot.getNumber() == pullRequestNumber) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Nothing is fetched from GitHub until a field that needs it is read.
+     *
+     * @param build the build the pull request is read by
+     * @param snapshot the pull request from the webhook that triggered the build
+     * @param revision the revision the build checked out
+     */
+    PullRequestGroovyObject(@NonNull final Run<?, ?> build,
+                            @CheckForNull final PullRequestSnapshot snapshot,
+                            @CheckForNull final PullRequestSCMRevision revision) throws Exception {
+        this(build.getParent(), snapshot, revision);
+        this.build = build;
+        this.buildId = build.getExternalizableId();
     }
 
     PullRequestGroovyObject(@NonNull final Job job, final ExtendedPullRequest pr) throws Exception {
@@ -89,110 +194,242 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
         }
     }
 
+    private PullRequestGroovyObject(final PullRequestGroovyObject source) {
+        this.jobId = source.jobId;
+        this.pullRequestNumber = source.pullRequestNumber;
+        this.base = source.base;
+
+        final ExtendedPullRequest pr = source.pullRequest;
+        this.snapshot = PullRequestSnapshot.of(pr,
+                source.snapshot != null ? source.snapshot.getLabels() : null);
+        this.knownLabels = source.knownLabels;
+        this.knownAssignees = source.knownAssignees;
+        this.allAssigneesKnown = source.allAssigneesKnown;
+        this.buildId = source.buildId;
+        this.headSha = source.getHead();
+        this.headRef = source.getHeadRef();
+        this.baseSha = source.getBaseSha();
+        this.baseRef = source.getBase();
+    }
+
+    // the fetched pull request is serialized as a snapshot of its fields, it's fetched again when a field the
+    // snapshot doesn't carry is next read
+    private Object writeReplace() {
+        synchronized (lock) {
+            return pullRequest != null ? new PullRequestGroovyObject(this) : this;
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new Object();
+    }
+
     private Job getJob() {
-        if (job == null) {
-            job = Jenkins.get().getItemByFullName(jobId, Job.class);
+        synchronized (lock) {
             if (job == null) {
-                throw new IllegalStateException("Unable to find Job: " + jobId);
+                job = Jenkins.get().getItemByFullName(jobId, Job.class);
+                if (job == null) {
+                    throw new IllegalStateException("Unable to find Job: " + jobId);
+                }
             }
+            return job;
+        }
+    }
+
+    @CheckForNull
+    private Run<?, ?> getBuild() {
+        synchronized (lock) {
+            if (build == null && buildId != null) {
+                build = Run.fromExternalizableId(buildId);
+            }
+            return build;
         }
-        return job;
     }
 
     private ExtendedGitHubClient getGitHubClient() {
-        if (gitHubClient == null) {
-            gitHubClient = GitHubHelper.getGitHubClient(getJob());
+        synchronized (lock) {
+            if (gitHubClient == null) {
+                gitHubClient = GitHubHelper.getGitHubClient(getJob());
+            }
+            return gitHubClient;
         }
-        return gitHubClient;
     }
 
     private ExtendedPullRequestService getPullRequestService() {
-        if (pullRequestService == null) {
-            pullRequestService = new ExtendedPullRequestService(getGitHubClient());
+        synchronized (lock) {
+            if (pullRequestService == null) {
+                pullRequestService = new ExtendedPullRequestService(getGitHubClient());
+            }
+            return pullRequestService;
         }
-        return pullRequestService;
     }
 
     private ExtendedIssueService getIssueService() {
-        if (issueService == null) {
-            issueService = new ExtendedIssueService(getGitHubClient());
+        synchronized (lock) {
+            if (issueService == null) {
+                issueService = new ExtendedIssueService(getGitHubClient());
+            }
+            return issueService;
         }
-        return issueService;
     }
 
     private ExtendedCommitService getCommitService() {
-        if (commitService == null) {
-            commitService = new ExtendedCommitService(getGitHubClient());
+        synchronized (lock) {
+            if (commitService == null) {
+                commitService = new ExtendedCommitService(getGitHubClient());
+            }
+            return commitService;
         }
-        return commitService;
     }
 
     private ExtendedMilestoneService getMilestoneService() {
-        if (milestoneService == null) {
-            milestoneService = new ExtendedMilestoneService(getGitHubClient());
+        synchronized (lock) {
+            if (milestoneService == null) {
+                milestoneService = new ExtendedMilestoneService(getGitHubClient());
+            }
+            return milestoneService;
         }
-        return milestoneService;
     }
 
+    private ExtendedPullRequest pullRequest() {
+        synchronized (lock) {
+            if (pullRequest != null) {
+                return pullRequest;
+            }
+        }
+        final ExtendedPullRequest fetched = getPullRequestService().getPullRequest(base, pullRequestNumber);
+        synchronized (lock) {
+            // unless a parallel call kept one in the meantime
+            if (pullRequest == null) {
+                pullRequest = fetched;
+            }
+            return pullRequest;
+        }
+    }
+
+    // keeps the pull request an edit returned
+    private void editedPullRequest(final ExtendedPullRequest edited, final boolean base) {
+        synchronized (lock) {
+            pullRequest = edited;
+            if (base) {
+                updateRefs(edited, false);
+            }
+        }
+    }
+
+    // answers from the snapshot of the triggering webhook until the pull request has been fetched
+    private <T> T field(final Function<PullRequestSnapshot, T> cached,
+                        final Function<ExtendedPullRequest, T> fetched) {
+        final PullRequestSnapshot unfetched;
+        synchronized (lock) {
+            unfetched = pullRequest == null ? snapshot : null;
+        }
+        if (unfetched != null) {
+            final T value = cached.apply(unfetched);
+            if (value != null) {
+                return value;
+            }
+        }
+        return fetched.apply(pullRequest());
+    }
+
+    // a ref the build's SCM objects didn't have, from the snapshot if it has it, whether or not the pull request has
+    // been fetched since, the first one found is kept
+    private String ref(final Supplier<String> kept,
+                       final Consumer<String> keep,
+                       final Function<PullRequestSnapshot, String> cached,
+                       final Function<ExtendedPullRequest, String> fetched) {
+        final PullRequestSnapshot webhook;
+        synchronized (lock) {
+            if (kept.get() != null) {
+                return kept.get();
+            }
+            webhook = snapshot;
+        }
+        final String value = webhook != null && cached.apply(webhook) != null
+                ? cached.apply(webhook)
+                : fetched.apply(pullRequest());
+        synchronized (lock) {
+            if (kept.get() == null) {
+                keep.accept(value);
+            }
+            return kept.get();
+        }
+    }
+
+    // the refs follow our own edits of the pull request, and refresh(), called holding the lock
+    private void updateRefs(final ExtendedPullRequest pr, final boolean head) {
+        if (head && pr.getHead() != null) {
+            headSha = pr.getHead().getSha();
+            headRef = pr.getHead().getRef();
+        }
+        if (pr.getBase() != null) {
+            baseSha = pr.getBase().getSha();
+            baseRef = pr.getBase().getRef();
+        }
+    }
+
+    // identity
 
     @Whitelisted
     public long getId() {
-        return pullRequest.getId();
+        return pullRequest().getId();
     }
 
     @Whitelisted
     public int getNumber() {
-        return pullRequest.getNumber();
+        return pullRequestNumber;
     }
 
     @Whitelisted
     public String getDiffUrl() {
-        return pullRequest.getDiffUrl();
+        return pullRequest().getDiffUrl();
     }
 
     @Whitelisted
     public String getUrl() {
-        return pullRequest.getHtmlUrl();
+        return pullRequest().getHtmlUrl();
     }
 
     @Whitelisted
     public String getPatchUrl() {
-        return pullRequest.getPatchUrl();
+        return pullRequest().getPatchUrl();
     }
 
     @Whitelisted
     public String getState() {
-        return pullRequest.getState();
+        return field(PullRequestSnapshot::getState, ExtendedPullRequest::getState);
     }
 
     @Whitelisted
     public String getIssueUrl() {
-        return pullRequest.getIssueUrl();
+        return pullRequest().getIssueUrl();
     }
 
     @Whitelisted
     public String getTitle() {
-        return pullRequest.getTitle();
+        return field(PullRequestSnapshot::getTitle, ExtendedPullRequest::getTitle);
     }
 
     @Whitelisted
     public String getBody() {
-        return pullRequest.getBody();
+        return pullRequest().getBody();
     }
 
     @Whitelisted
     public boolean isLocked() {
-        return pullRequest.isLocked();
+        return pullRequest().isLocked();
     }
 
     @Whitelisted
     public boolean isDraft() {
-        return pullRequest.isDraft();
+        return field(PullRequestSnapshot::getDraft, ExtendedPullRequest::isDraft);
     }
 
     @Whitelisted
     public MilestoneGroovyObject getMilestone() {
-        return Optional.ofNullable(pullRequest.getMilestone())
+        return Optional.ofNullable(pullRequest().getMilestone())
                 .map(Milestone::getNumber)
                 .map(m -> getMilestoneService().getMilestone(base, m))
                 .map(milestone -> new MilestoneGroovyObject(jobId, milestone))
@@ -201,124 +438,122 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
 
     @Whitelisted
     public String getHead() {
-        return pullRequest.getHead().getSha();
+        return ref(() -> headSha, sha -> headSha = sha,
+                PullRequestSnapshot::getHeadSha, pr -> pr.getHead().getSha());
     }
 
     @Whitelisted
     public String getHeadRef() {
-        return pullRequest.getHead().getRef();
+        return ref(() -> headRef, ref -> headRef = ref,
+                PullRequestSnapshot::getHeadRef, pr -> pr.getHead().getRef());
     }
 
     @Whitelisted
     public String getBaseSha() {
-        return pullRequest.getBase().getSha();
+        return ref(() -> baseSha, sha -> baseSha = sha,
+                PullRequestSnapshot::getBaseSha, pr -> pr.getBase().getSha());
     }
 
     @Whitelisted
     public String getBase() {
-        return pullRequest.getBase().getRef();
+        return ref(() -> baseRef, ref -> baseRef = ref,
+                PullRequestSnapshot::getBaseRef, pr -> pr.getBase().getRef());
     }
 
     @Whitelisted
     public Date getUpdatedAt() {
-        return pullRequest.getUpdatedAt();
+        return field(PullRequestSnapshot::getUpdatedAt, ExtendedPullRequest::getUpdatedAt);
     }
 
     @Whitelisted
     public Date getCreatedAt() {
-        return pullRequest.getCreatedAt();
+        return pullRequest().getCreatedAt();
     }
 
     @Whitelisted
     public String getCreatedBy() {
-        return GitHubHelper.userToLogin(pullRequest.getUser());
+        return GitHubHelper.userToLogin(pullRequest().getUser());
     }
 
     @Whitelisted
     public Date getClosedAt() {
-        return pullRequest.getCreatedAt();
+        return pullRequest().getCreatedAt();
     }
 
     @Whitelisted
     public String getClosedBy() {
-        return GitHubHelper.userToLogin(pullRequest.getClosedBy());
+        return GitHubHelper.userToLogin(pullRequest().getClosedBy());
     }
 
     @Whitelisted
     public Date getMergedAt() {
-        return pullRequest.getMergedAt();
+        return pullRequest().getMergedAt();
     }
 
     @Whitelisted
     public String getMergedBy() {
-        return GitHubHelper.userToLogin(pullRequest.getMergedBy());
+        return GitHubHelper.userToLogin(pullRequest().getMergedBy());
     }
 
     @Whitelisted
     public int getCommitCount() {
-        return pullRequest.getCommits();
+        return pullRequest().getCommits();
     }
 
     @Whitelisted
     public int getCommentCount() {
-        return pullRequest.getComments();
+        return pullRequest().getComments();
     }
 
     @Whitelisted
     public int getDeletions() {
-        return pullRequest.getDeletions();
+        return pullRequest().getDeletions();
     }
 
     @Whitelisted
     public String getMergeCommitSha() {
-        return pullRequest.getMergeCommitSha();
+        return pullRequest().getMergeCommitSha();
     }
 
     @Whitelisted
     public String getMergeableState() {
-        return pullRequest.getMergeableState();
+        return field(PullRequestSnapshot::getMergeableState, ExtendedPullRequest::getMergeableState);
     }
 
     @Whitelisted
     public boolean isMaintainerCanModify() {
-        return pullRequest.isMaintainerCanModify();
+        return pullRequest().isMaintainerCanModify();
     }
 
     @Whitelisted
     public int getAdditions() {
-        return pullRequest.getAdditions();
+        return pullRequest().getAdditions();
     }
 
     @Whitelisted
     public int getChangedFiles() {
-        return pullRequest.getChangedFiles();
+        return pullRequest().getChangedFiles();
     }
 
     @Whitelisted
     public boolean isMergeable() {
-        return pullRequest.isMergeable();
+        return pullRequest().isMergeable();
     }
 
     @Whitelisted
     public boolean isMerged() {
-        return pullRequest.isMerged();
+        return pullRequest().isMerged();
     }
 
     @Whitelisted
     public Iterable<String> getRequestedReviewers() {
-        Stream<String> stream = StreamSupport
-                .stream(getPullRequestService().pageRequestedReviewers(base, pullRequest.getNumber())
-                        .spliterator(), false)
-                .flatMap(Collection::stream)
-                .map(User::getLogin);
-
-        return stream::iterator;
+        return new PagedGroovyIterable<>(this, "requestedReviewers");
     }
 
     @Whitelisted
     public Iterable<String> getRequestedTeamReviewers() {
         Stream<String> stream = StreamSupport
-                .stream(getPullRequestService().pageRequestedTeamReviewers(base, pullRequest.getNumber())
+                .stream(getPullRequestService().pageRequestedTeamReviewers(base, pullRequestNumber)
                         .spliterator(), false)
                 .flatMap(Collection::stream)
                 .map(Team::getName);
@@ -328,19 +563,13 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
 
     @Whitelisted
     public Iterable<ReviewGroovyObject> getReviews() {
-        Stream<ReviewGroovyObject> stream = StreamSupport
-            .stream(getPullRequestService().pageReviews(base, pullRequest.getNumber())
-                    .spliterator(), false)
-            .flatMap(Collection::stream)
-            .map(ReviewGroovyObject::new);
-
-        return stream::iterator;
+        return new PagedGroovyIterable<>(this, "reviews");
     }
 
     @Whitelisted
     public Iterable<CommitStatusGroovyObject> getStatuses() {
         try {
-            return getCommitService().getStatuses(base, pullRequest.getHead().getSha())
+            return getCommitService().getStatuses(base, getHead())
                     .stream()
                     .map(CommitStatusGroovyObject::new)
                     .collect(toList());
@@ -351,18 +580,20 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
 
     @Whitelisted
     public Iterable<String> getLabels() {
-        Stream<String> stream = StreamSupport
-                .stream(getIssueService().getLabels(base, pullRequest.getNumber())
-                        .spliterator(), false)
+        final List<String> labels = StreamSupport
+                .stream(getIssueService().getLabels(base, pullRequestNumber).spliterator(), false)
                 .flatMap(Collection::stream)
-                .map(Label::getName);
-
-        return stream::iterator;
+                .map(Label::getName)
+                .collect(toList());
+        synchronized (lock) {
+            knownLabels = labels;
+        }
+        return new ArrayList<>(labels);
     }
 
     @Whitelisted
     public Iterable<String> getAssignees() {
-        return pullRequest.getAssignees()
+        return pullRequest().getAssignees()
                 .stream()
                 .map(User::getLogin)
                 .collect(toList());
@@ -370,16 +601,7 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
 
     @Whitelisted
     public Iterable<CommitGroovyObject> getCommits() {
-        try {
-            Stream<CommitGroovyObject> steam = getPullRequestService()
-                    .getCommits(base, pullRequestNumber)
-                    .stream()
-                    .map(c -> new CommitGroovyObject(jobId, c, getCommitService(), base));
-
-            return steam::iterator;
-        } catch (final IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return new PagedGroovyIterable<>(this, "commits");
     }
 
     @Whitelisted
@@ -398,31 +620,59 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
 
     @Whitelisted
     public Iterable<ReviewCommentGroovyObject> getReviewComments() {
-        Stream<ReviewCommentGroovyObject> stream = StreamSupport
-                .stream(getPullRequestService().pageComments2(base,
-                        pullRequestNumber).spliterator(), false)
-                .flatMap(Collection::stream)
-                .map(c -> new ReviewCommentGroovyObject(jobId, base, c, getCommitService()));
-        return stream::iterator;
+        return new PagedGroovyIterable<>(this, "reviewComments");
     }
 
     @Whitelisted
     public Iterable<CommitFileGroovyObject> getFiles() {
-        try {
-            return getPullRequestService().getFiles(base, pullRequestNumber)
-                    .stream()
-                    .map(CommitFileGroovyObject::new)
-                    .collect(toList());
-        } catch (final IOException e) {
-            throw new UncheckedIOException(e);
+        return new PagedGroovyIterable<>(this, "files");
+    }
+
+    @Override
+    @Restricted(NoExternalUse.class)
+    public PrefetchingIterable<?, ?> listing(final String name) {
+        final ExtendedPullRequestService pullRequestService = getPullRequestService();
+        final ExtendedCommitService commitService = getCommitService();
+        final RequestGovernor governor = pullRequestService.getClient().getGovernor();
+        switch (name) {
+            case "requestedReviewers":
+                return new PrefetchingIterable<>(
+                        start -> pullRequestService.pageRequestedReviewers(base, pullRequestNumber, start),
+                        Computer.threadPoolForRemoting,
+                        governor,
+                        (user, page) -> user.getLogin());
+            case "reviews":
+                return new PrefetchingIterable<>(
+                        start -> pullRequestService.pageReviews(base, pullRequestNumber, start),
+                        Computer.threadPoolForRemoting,
+                        governor,
+                        (review, page) -> new ReviewGroovyObject(review));
+            case "commits":
+                return new PrefetchingIterable<>(
+                        start -> pullRequestService.pageCommits(base, pullRequestNumber, start),
+                        Computer.threadPoolForRemoting,
+                        governor,
+                        (commit, page) -> new CommitGroovyObject(jobId, buildId, commit, commitService, base));
+            case "reviewComments":
+                return new PrefetchingIterable<>(
+                        start -> pullRequestService.pageComments2(base, pullRequestNumber, start),
+                        Computer.threadPoolForRemoting,
+                        governor,
+                        (comment, page) -> new ReviewCommentGroovyObject(jobId, base, comment, commitService));
+            case "files":
+                return new PrefetchingIterable<>(
+                        start -> pullRequestService.pageFiles(base, pullRequestNumber, start),
+                        Computer.threadPoolForRemoting,
+                        governor,
+                        (file, page) -> new CommitFileGroovyObject(file, jobId, base, pullRequestNumber, page));
+            default:
+                throw new IllegalArgumentException("Unknown listing: " + name);
         }
     }
 
     @Whitelisted
     public void setMilestone(final int milestoneNumber) {
-        pullRequest.setMilestone(
-                getIssueService().setMilestone(base, pullRequest.getNumber(), milestoneNumber)
-                        .getMilestone());
+        updateMilestone(getIssueService().setMilestone(base, pullRequestNumber, milestoneNumber).getMilestone());
     }
 
     @Whitelisted
@@ -430,21 +680,30 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
         if (milestone == null) {
             // call setMilestone because the caller might not have the right permissions to remove
             // the milestone and it'll return the current milestone.
-            pullRequest.setMilestone(
-                    getIssueService().setMilestone(base, pullRequest.getNumber(), null)
-                        .getMilestone());
+            updateMilestone(getIssueService().setMilestone(base, pullRequestNumber, null).getMilestone());
         } else {
             setMilestone(milestone.getNumber());
         }
     }
 
+    private void updateMilestone(final Milestone milestone) {
+        final ExtendedPullRequest pr = pullRequest();
+        synchronized (lock) {
+            pr.setMilestone(milestone);
+        }
+    }
+
     @Whitelisted
     public void setLocked(final boolean locked) {
         try {
             if (locked) {
-                getIssueService().lockIssue(base, pullRequest.getNumber());
+                getIssueService().lockIssue(base, pullRequestNumber);
             } else {
-                getIssueService().unlockIssue(base, pullRequest.getNumber());
+                getIssueService().unlockIssue(base, pullRequestNumber);
+            }
+            final ExtendedPullRequest pr = pullRequest();
+            synchronized (lock) {
+                pr.setLocked(locked);
             }
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
@@ -456,9 +715,9 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
         Objects.requireNonNull(title, "title cannot be null");
 
         ExtendedPullRequest edit = new ExtendedPullRequest();
-        edit.setNumber(pullRequest.getNumber());
+        edit.setNumber(pullRequestNumber);
         edit.setTitle(title);
-        pullRequest = getPullRequestService().editPullRequest(base, edit);
+        editedPullRequest(getPullRequestService().editPullRequest(base, edit), false);
     }
 
     @Whitelisted
@@ -466,9 +725,9 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
         Objects.requireNonNull(body, "body cannot be null");
 
         ExtendedPullRequest edit = new ExtendedPullRequest();
-        edit.setNumber(pullRequest.getNumber());
+        edit.setNumber(pullRequestNumber);
         edit.setBody(body);
-        pullRequest = getPullRequestService().editPullRequest(base, edit);
+        editedPullRequest(getPullRequestService().editPullRequest(base, edit), false);
     }
 
     @Whitelisted
@@ -476,9 +735,9 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
         Objects.requireNonNull(state, "state cannot be null");
 
         ExtendedPullRequest edit = new ExtendedPullRequest();
-        edit.setNumber(pullRequest.getNumber());
+        edit.setNumber(pullRequestNumber);
         edit.setState(state);
-        pullRequest = getPullRequestService().editPullRequest(base, edit);
+        editedPullRequest(getPullRequestService().editPullRequest(base, edit), false);
     }
 
     @Whitelisted
@@ -486,24 +745,29 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
         Objects.requireNonNull(newBase, "base cannot be null");
 
         ExtendedPullRequest edit = new ExtendedPullRequest();
-        edit.setNumber(pullRequest.getNumber());
+        edit.setNumber(pullRequestNumber);
         edit.setBase(new PullRequestMarker().setRef(newBase));
-        pullRequest = getPullRequestService().editPullRequest(base, edit);
+        editedPullRequest(getPullRequestService().editPullRequest(base, edit), true);
     }
 
     @Whitelisted
     public void setMaintainerCanModify(final boolean value) {
         ExtendedPullRequest edit = new ExtendedPullRequest();
-        edit.setNumber(pullRequest.getNumber());
+        edit.setNumber(pullRequestNumber);
         edit.setMaintainerCanModify(value);
-        pullRequest = getPullRequestService().editPullRequest(base, edit);
+        editedPullRequest(getPullRequestService().editPullRequest(base, edit), false);
     }
 
     @Whitelisted
     public void setLabels(final List<String> labels) {
+        final List<String> wanted = Optional.ofNullable(labels).orElseGet(Collections::emptyList);
+        final List<String> known = knownLabels();
+        if (known != null && sameLabels(known, wanted)) {
+            SkippedWrites.increment("setLabels");
+            return;
+        }
         try {
-            getIssueService().setLabels(base, pullRequest.getNumber(),
-                    Optional.ofNullable(labels).orElseGet(Collections::emptyList));
+            updateLabels(getIssueService().setLabels(base, pullRequestNumber, wanted));
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -519,7 +783,7 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     public void createReviewRequests(final List<String> reviewers) {
         Objects.requireNonNull(reviewers, "reviewers cannot be null");
         try {
-            getPullRequestService().createReviewRequests(base, pullRequest.getNumber(), reviewers, null);
+            getPullRequestService().createReviewRequests(base, pullRequestNumber, reviewers, null);
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -535,7 +799,7 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     public void deleteReviewRequests(final List<String> reviewers) {
         Objects.requireNonNull(reviewers, "reviewers cannot be null");
         try {
-            getPullRequestService().deleteReviewRequests(base, pullRequest.getNumber(), reviewers, null);
+            getPullRequestService().deleteReviewRequests(base, pullRequestNumber, reviewers, null);
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -552,7 +816,7 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     public void createTeamReviewRequests(final List<String> teams) {
         Objects.requireNonNull(teams, "teams cannot be null");
         try {
-            getPullRequestService().createReviewRequests(base, pullRequest.getNumber(), null, teams);
+            getPullRequestService().createReviewRequests(base, pullRequestNumber, null, teams);
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -568,7 +832,7 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     public void deleteTeamReviewRequests(final List<String> teams) {
         Objects.requireNonNull(teams, "teams cannot be null");
         try {
-            getPullRequestService().deleteReviewRequests(base, pullRequest.getNumber(), null, teams);
+            getPullRequestService().deleteReviewRequests(base, pullRequestNumber, null, teams);
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -582,8 +846,19 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     @Whitelisted
     public void addLabels(final List<String> labels) {
         Objects.requireNonNull(labels, "labels is a required argument");
+        final List<String> known = knownLabels();
+        final List<String> missing = new ArrayList<>();
+        for (final String label : labels) {
+            if (!containsLabel(missing, label) && (known == null || !containsLabel(known, label))) {
+                missing.add(label);
+            }
+        }
+        if (missing.isEmpty()) {
+            SkippedWrites.increment("addLabels");
+            return;
+        }
         try {
-            getIssueService().addLabels(base, pullRequest.getNumber(), labels);
+            updateLabels(getIssueService().addLabels(base, pullRequestNumber, missing));
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -592,8 +867,13 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     @Whitelisted
     public void removeLabel(final String label) {
         Objects.requireNonNull(label, "label is a required argument");
+        final List<String> known = knownLabels();
+        if (known != null && !containsLabel(known, label)) {
+            SkippedWrites.increment("removeLabel");
+            return;
+        }
         try {
-            getIssueService().removeLabel(base, pullRequest.getNumber(), label);
+            updateLabels(getIssueService().removeLabel(base, pullRequestNumber, label));
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -602,8 +882,17 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     @Whitelisted
     public void addAssignees(final List<String> assignees) {
         Objects.requireNonNull(assignees, "assignees is a required argument");
+        final List<String> missing = assignees.stream()
+                .distinct()
+                .filter(assignee -> !Boolean.TRUE.equals(isAssigned(assignee)))
+                .collect(toList());
+        if (missing.isEmpty()) {
+            SkippedWrites.increment("addAssignees");
+            return;
+        }
         try {
-            getIssueService().addAssignees(base, pullRequest.getNumber(), assignees);
+            getIssueService().addAssignees(base, pullRequestNumber, missing);
+            updateAssignees(null, missing, Collections.emptyList());
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -612,8 +901,13 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     @Whitelisted
     public void setAssignees(final List<String> assignees) {
         Objects.requireNonNull(assignees, "assignees is a required argument");
+        if (areAssigned(assignees)) {
+            SkippedWrites.increment("setAssignees");
+            return;
+        }
         try {
-            getIssueService().setAssignees(base, pullRequest.getNumber(), assignees);
+            getIssueService().setAssignees(base, pullRequestNumber, assignees);
+            updateAssignees(assignees, Collections.emptyList(), Collections.emptyList());
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -622,43 +916,458 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
     @Whitelisted
     public void removeAssignees(final List<String> assignees) {
         Objects.requireNonNull(assignees, "assignees is a required argument");
+        final List<String> present = assignees.stream()
+                .distinct()
+                .filter(assignee -> !Boolean.FALSE.equals(isAssigned(assignee)))
+                .collect(toList());
+        if (present.isEmpty()) {
+            SkippedWrites.increment("removeAssignees");
+            return;
+        }
         try {
-            getIssueService().removeAssignees(base, pullRequest.getNumber(), assignees);
+            getIssueService().removeAssignees(base, pullRequestNumber, present);
+            updateAssignees(null, Collections.emptyList(), present);
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    // label writes are only skipped once this build has read or written the labels, GitHub ignores their case
+    private static boolean containsLabel(final List<String> labels, final String label) {
+        return labels.stream().anyMatch(label::equalsIgnoreCase);
+    }
+
+    private static boolean sameLabels(final List<String> a, final List<String> b) {
+        return a.stream().allMatch(label -> containsLabel(b, label))
+                && b.stream().allMatch(label -> containsLabel(a, label));
+    }
+
+    // the label writes return the labels of the pull request
+    private void updateLabels(final List<Label> labels) {
+        if (labels != null) {
+            final List<String> names = labels.stream().map(Label::getName).collect(toList());
+            synchronized (lock) {
+                knownLabels = names;
+            }
+        }
+    }
+
+    @CheckForNull
+    private List<String> knownLabels() {
+        synchronized (lock) {
+            return knownLabels;
+        }
+    }
+
+    // assignee writes are only skipped once this build has written the assignees, or read them with refresh(), the
+    // fetched pull request may be older than that
+    @CheckForNull
+    private Boolean isAssigned(final String login) {
+        synchronized (lock) {
+            final Boolean assigned = knownAssignees != null ? knownAssignees.get(login) : null;
+            return assigned == null && allAssigneesKnown ? Boolean.FALSE : assigned;
+        }
+    }
+
+    private boolean areAssigned(final Collection<String> logins) {
+        synchronized (lock) {
+            return allAssigneesKnown && assigned(knownAssignees).equals(new HashSet<>(logins));
+        }
+    }
+
+    private static Set<String> assigned(final Map<String, Boolean> assignees) {
+        return assignees.entrySet().stream()
+                .filter(Map.Entry::getValue)
+                .map(Map.Entry::getKey)
+                .collect(toCollection(LinkedHashSet::new));
+    }
+
+    // keeps what this build knows of the assignees, and the cached pull request, in step with its writes, so it does
+    // not need to be re-fetched
+    private void updateAssignees(@CheckForNull final List<String> replaced,
+                                 final Collection<String> added,
+                                 final Collection<String> removed) {
+        synchronized (lock) {
+            if (knownAssignees == null || replaced != null) {
+                knownAssignees = new LinkedHashMap<>();
+            }
+            if (replaced != null) {
+                replaced.forEach(login -> knownAssignees.put(login, Boolean.TRUE));
+                allAssigneesKnown = true;
+            }
+            added.forEach(login -> knownAssignees.put(login, Boolean.TRUE));
+            removed.forEach(login -> knownAssignees.put(login, Boolean.FALSE));
+            if (pullRequest != null) {
+                final Set<String> logins = replaced != null
+                        ? new LinkedHashSet<>()
+                        : Optional.ofNullable(pullRequest.getAssignees())
+                                .orElseGet(Collections::emptyList)
+                                .stream()
+                                .map(User::getLogin)
+                                .collect(toCollection(LinkedHashSet::new));
+                logins.addAll(assigned(knownAssignees));
+                logins.removeIf(login -> Boolean.FALSE.equals(knownAssignees.get(login)));
+                pullRequest.setAssignees(logins.stream()
+                        .map(login -> new User().setLogin(login))
+                        .collect(toList()));
+            }
+        }
+    }
+
+    /**
+     * @return a batch of changes to this pull request, sent when it is applied.
+     */
     @Whitelisted
-    public void review(final String event) {
-        review(null, event, null);
+    public PullRequestBatchGroovyObject batch() {
+        return new PullRequestBatchGroovyObject(this);
     }
 
+    /**
+     * Applies the changes at once, the keys of the map are the names of the methods of
+     * {@link PullRequestBatchGroovyObject}, e.g. {@code [title: 'New title', addLabels: ['ci']]}.
+     */
     @Whitelisted
-    public void review(final String event, final String body) {
-        review(null, event, body);
+    public PullRequestGroovyObject batch(final Map<String, Object> changes) {
+        Objects.requireNonNull(changes, "changes cannot be null");
+        return batch().record(changes).apply();
+    }
+
+    void apply(final PullRequestBatchGroovyObject batch) {
+        final ExtendedPullRequestService pullRequestService = getPullRequestService();
+        final ExtendedIssueService issueService = getIssueService();
+        final List<String> known = knownLabels();
+        final List<Runnable> requests = new ArrayList<>(5);
+
+        final AtomicReference<ExtendedPullRequest> edited = new AtomicReference<>();
+        if (batch.hasPullRequestChanges()) {
+            final ExtendedPullRequest edit = new ExtendedPullRequest();
+            edit.setNumber(pullRequestNumber);
+            edit.setTitle(batch.title);
+            edit.setBody(batch.body);
+            edit.setState(batch.state);
+            if (batch.base != null) {
+                edit.setBase(new PullRequestMarker().setRef(batch.base));
+            }
+            edit.setMaintainerCanModify(batch.maintainerCanModify);
+            requests.add(() -> edited.set(pullRequestService.editPullRequest(base, edit)));
+        }
+
+        final Map<String, Object> issueEdit = new HashMap<>();
+        final AtomicReference<List<Label>> labelled = new AtomicReference<>();
+        if (batch.labels != null) {
+            // replaced, as asked
+            final List<String> labels = edit(batch.labels, batch.addLabels, batch.removeLabels);
+            if (known != null && sameLabels(labels, known)) {
+                SkippedWrites.increment("batch.labels");
+            } else {
+                issueEdit.put("labels", labels);
+            }
+        } else if (batch.hasLabelChanges()) {
+            // added and removed one by one, so labels others set in the meantime are kept
+            final List<String> add = batch.addLabels.stream()
+                    .filter(label -> known == null || !containsLabel(known, label))
+                    .collect(toList());
+            final List<String> remove = batch.removeLabels.stream()
+                    .filter(label -> known == null || containsLabel(known, label))
+                    .collect(toList());
+            if (add.isEmpty() && remove.isEmpty()) {
+                SkippedWrites.increment("batch.labels");
+            } else {
+                requests.add(() -> editLabels(issueService, add, remove, labelled));
+            }
+        }
+        List<String> assignees = null;
+        final List<String> assigned = new ArrayList<>();
+        final List<String> unassigned = new ArrayList<>();
+        final AtomicBoolean added = new AtomicBoolean();
+        final AtomicBoolean removed = new AtomicBoolean();
+        if (batch.assignees != null) {
+            // replaced, as asked
+            assignees = edit(batch.assignees, batch.addAssignees, batch.removeAssignees);
+            if (areAssigned(assignees)) {
+                SkippedWrites.increment("batch.assignees");
+                assignees = null;
+            } else {
+                issueEdit.put("assignees", assignees);
+            }
+        } else if (batch.hasAssigneeChanges()) {
+            // added and removed, so assignees others set in the meantime are kept
+            batch.addAssignees.stream().filter(a -> !Boolean.TRUE.equals(isAssigned(a))).forEach(assigned::add);
+            batch.removeAssignees.stream().filter(a -> !Boolean.FALSE.equals(isAssigned(a))).forEach(unassigned::add);
+            if (assigned.isEmpty() && unassigned.isEmpty()) {
+                SkippedWrites.increment("batch.assignees");
+            }
+            if (!assigned.isEmpty()) {
+                requests.add(() -> {
+                    try {
+                        issueService.addAssignees(base, pullRequestNumber, assigned);
+                        added.set(true);
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            if (!unassigned.isEmpty()) {
+                requests.add(() -> {
+                    try {
+                        issueService.removeAssignees(base, pullRequestNumber, unassigned);
+                        removed.set(true);
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        }
+        if (batch.milestoneSet) {
+            issueEdit.put("milestone", batch.milestone);
+        }
+        final AtomicReference<Issue> issue = new AtomicReference<>();
+        if (!issueEdit.isEmpty()) {
+            requests.add(() -> issue.set(issueService.editIssue(base, pullRequestNumber, issueEdit)));
+        }
+
+        if (batch.hasReviewRequests()) {
+            final List<String> reviewers = batch.reviewers.isEmpty() ? null : new ArrayList<>(batch.reviewers);
+            final List<String> teams = batch.teamReviewers.isEmpty() ? null : new ArrayList<>(batch.teamReviewers);
+            requests.add(() -> {
+                try {
+                    pullRequestService.createReviewRequests(base, pullRequestNumber, reviewers, teams);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        try {
+            sendConcurrently(requests);
+        } finally {
+            // whatever was applied is reflected in the cached pull request, once
+            if (edited.get() != null) {
+                editedPullRequest(edited.get(), batch.base != null);
+            }
+            if (labelled.get() != null) {
+                updateLabels(labelled.get());
+            } else if (issue.get() != null) {
+                updateLabels(issue.get().getLabels());
+            }
+            if (added.get() || removed.get()) {
+                updateAssignees(null,
+                        added.get() ? assigned : Collections.emptyList(),
+                        removed.get() ? unassigned : Collections.emptyList());
+            }
+            if (issue.get() != null) {
+                if (assignees != null) {
+                    updateAssignees(assignees, Collections.emptyList(), Collections.emptyList());
+                }
+                if (batch.milestoneSet) {
+                    synchronized (lock) {
+                        if (pullRequest != null) {
+                            pullRequest.setMilestone(issue.get().getMilestone());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // the label writes return the labels of the pull request, the latest response is kept
+    private void editLabels(final ExtendedIssueService issueService,
+                            final List<String> add,
+                            final List<String> remove,
+                            final AtomicReference<List<Label>> labels) {
+        try {
+            if (!add.isEmpty()) {
+                labels.set(issueService.addLabels(base, pullRequestNumber, add));
+            }
+            for (final String label : remove) {
+                try {
+                    labels.set(issueService.removeLabel(base, pullRequestNumber, label));
+                } catch (final RequestException e) {
+                    // not set, which is what was asked for
+                    if (e.getStatus() != 404) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the requests are independent of each other, the calling thread sends the first one itself
+    private static void sendConcurrently(final List<Runnable> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        final List<CompletableFuture<Void>> others = new ArrayList<>(requests.size() - 1);
+        for (final Runnable request : requests.subList(1, requests.size())) {
+            others.add(CompletableFuture.runAsync(request, Computer.threadPoolForRemoting));
+        }
+        RuntimeException failure = null;
+        try {
+            requests.get(0).run();
+        } catch (final RuntimeException e) {
+            failure = e;
+        }
+        for (final CompletableFuture<Void> other : others) {
+            try {
+                other.join();
+            } catch (final CompletionException e) {
+                final RuntimeException cause = e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : e;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static List<String> edit(final List<String> current, final Set<String> add, final Set<String> remove) {
+        final Set<String> result = new LinkedHashSet<>(current);
+        result.addAll(add);
+        result.removeAll(remove);
+        return new ArrayList<>(result);
+    }
+
+    @Whitelisted
+    public ReviewGroovyObject review(final String event) {
+        return review(null, event, null);
     }
 
     @Whitelisted
-    public void review(final Map<String, Object> params) {
-        review(params.get("commitId") != null ? params.get("commitId").toString() : null,
-               params.get("event") != null ? params.get("event").toString() : null,
-               params.get("body") != null ? params.get("body").toString() : null);
+    public ReviewGroovyObject review(final String event, final String body) {
+        return review(null, event, body);
     }
 
+    /**
+     * Takes {@code commitId}, {@code event}, {@code body}, {@code comments} and {@code partBody}, see
+     * {@link #review(String, String, String, List, String)}.
+     */
     @Whitelisted
-    public void review(final String commitId, final String event, final String body) {
+    public List<ReviewGroovyObject> review(final Map<String, Object> params) {
+        final Object comments = params.get("comments");
+        if (comments != null && !(comments instanceof List)) {
+            throw new IllegalArgumentException("comments must be a list");
+        }
+        @SuppressWarnings("unchecked")
+        final List<Map<String, Object>> list = (List<Map<String, Object>>) comments;
+        return review(params.get("commitId") != null ? params.get("commitId").toString() : null,
+                      params.get("event") != null ? params.get("event").toString() : null,
+                      params.get("body") != null ? params.get("body").toString() : null,
+                      list,
+                      params.get("partBody") != null ? params.get("partBody").toString() : null);
+    }
+
+    @Whitelisted
+    public ReviewGroovyObject review(final String commitId, final String event, final String body) {
         if (event != null && (event.equals("REQUEST_CHANGES") || event.equals("COMMENT"))) {
             Objects.requireNonNull(body, "body is a required argument when event equals REQUEST_CHANGES or COMMENT");
         }
 
         try {
-            pullRequestService.createReview(base, pullRequestNumber, commitId, event, body);
+            return new ReviewGroovyObject(
+                    getPullRequestService().createReview(base, pullRequestNumber, commitId, event, body));
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    @Whitelisted
+    public List<ReviewGroovyObject> review(final String commitId,
+                                           final String event,
+                                           final String body,
+                                           final List<Map<String, Object>> comments) {
+        return review(commitId, event, body, comments, null);
+    }
+
+    /**
+     * Submits a review together with its inline comments, instead of a request per comment.
+     *
+     * Each comment is a map of {@code path}, {@code body} and {@code line}, optionally with {@code side},
+     * {@code startLine} and {@code startSide} for comments on several lines, or {@code position} instead of them.
+     * More than {@link #REVIEW_COMMENTS_PER_REQUEST} comments are split over several reviews: the leading ones are
+     * submitted as {@code COMMENT} reviews with {@code partBody}, or without a body if it is {@code null}, the last
+     * one with the given event and body. They are sent one after the other, paced with the other writes to GitHub.
+     *
+     * @return the submitted reviews, in order, the last one carrying the event.
+     * @throws UncheckedIOException if a review could not be submitted, its message tells which ones were.
+     */
+    @Whitelisted
+    public List<ReviewGroovyObject> review(final String commitId,
+                                           final String event,
+                                           final String body,
+                                           final List<Map<String, Object>> comments,
+                                           final String partBody) {
+        if (comments == null || comments.isEmpty()) {
+            return Collections.singletonList(review(commitId, event, body));
+        }
+        if (event != null && (event.equals("REQUEST_CHANGES") || event.equals("COMMENT"))) {
+            Objects.requireNonNull(body, "body is a required argument when event equals REQUEST_CHANGES or COMMENT");
+        }
+        final List<Map<String, Object>> drafts = comments.stream()
+                .map(PullRequestGroovyObject::reviewComment)
+                .collect(toList());
+
+        final int parts = (drafts.size() + REVIEW_COMMENTS_PER_REQUEST - 1) / REVIEW_COMMENTS_PER_REQUEST;
+        final List<ReviewGroovyObject> submitted = new ArrayList<>(parts);
+        for (int part = 1; part <= parts; part++) {
+            final List<Map<String, Object>> chunk = drafts.subList((part - 1) * REVIEW_COMMENTS_PER_REQUEST,
+                    Math.min(part * REVIEW_COMMENTS_PER_REQUEST, drafts.size()));
+            try {
+                submitted.add(new ReviewGroovyObject(part < parts
+                        ? getPullRequestService().createReview(base, pullRequestNumber, commitId, "COMMENT",
+                                partBody, chunk)
+                        : getPullRequestService().createReview(base, pullRequestNumber, commitId, event, body,
+                                chunk)));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(String.format("Unable to submit part %d of %d of the review, %s",
+                        part, parts, submitted.isEmpty()
+                                ? "no part was submitted"
+                                : "the parts before it were submitted as reviews "
+                                        + submitted.stream().map(ReviewGroovyObject::getId).collect(toList())),
+                        e);
+            }
+        }
+        return submitted;
+    }
+
+    // the inline comment of a review, as the API takes it
+    private static Map<String, Object> reviewComment(final Map<String, Object> comment) {
+        if (comment == null || comment.get("path") == null || comment.get("body") == null) {
+            throw new IllegalArgumentException("path and body are required arguments of a review comment");
+        }
+        if (comment.get("line") == null && comment.get("position") == null) {
+            throw new IllegalArgumentException("line or position is a required argument of a review comment");
+        }
+        final Map<String, Object> draft = new HashMap<>();
+        draft.put("path", comment.get("path").toString());
+        draft.put("body", comment.get("body").toString());
+        putNumber(draft, "line", comment.get("line"));
+        putNumber(draft, "position", comment.get("position"));
+        putNumber(draft, "start_line", comment.get("startLine"));
+        if (comment.get("side") != null) {
+            draft.put("side", comment.get("side").toString());
+        }
+        if (comment.get("startSide") != null) {
+            draft.put("start_side", comment.get("startSide").toString());
+        }
+        return draft;
+    }
+
+    private static void putNumber(final Map<String, Object> draft, final String key, final Object value) {
+        if (value instanceof Number) {
+            draft.put(key, ((Number) value).intValue());
+        } else if (value != null) {
+            throw new IllegalArgumentException(key + " of a review comment must be a number");
+        }
+    }
+
     @Whitelisted
     public CommitStatusGroovyObject createStatus(final Map<String, Object> params) {
         Objects.requireNonNull(params.get("status"), "status is a required argument");
@@ -669,6 +1378,13 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
                             params.get("targetUrl") != null ? params.get("targetUrl").toString() : null);
     }
 
+    /**
+     * Statuses that would not change anything are not sent, and rapid {@code pending} updates are coalesced, see
+     * {@link CommitStatusWriter}.
+     *
+     * @return the status as it is on GitHub, or, when it is held back to be coalesced with later updates, the status
+     *         as given: it has not been sent yet, so it has no id, url, creator or dates.
+     */
     @Whitelisted
     public CommitStatusGroovyObject createStatus(final String status,
                                                  final String context,
@@ -683,7 +1399,8 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
         commitStatus.setTargetUrl(targetUrl);
         try {
             return new CommitStatusGroovyObject(
-                    getCommitService().createStatus(base, pullRequest.getHead().getSha(), commitStatus));
+                    CommitStatusWriter.write(buildId != null ? buildId : jobId, getCommitService(), base, getHead(),
+                            commitStatus));
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -766,6 +1483,66 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
         }
     }
 
+    /**
+     * Edits the comment marked with the marker, or creates it if the pull request has none.
+     *
+     * The marker is written at the end of the body as a hidden tag. The id of the comment is kept with the build
+     * and carried over to the following builds, so once written the comment is edited with a single request, the
+     * comments are only looked through if it has since been deleted.
+     */
+    @Whitelisted
+    public IssueCommentGroovyObject upsertComment(final String marker, final String body) {
+        Objects.requireNonNull(marker, "marker is a required argument");
+        Objects.requireNonNull(body, "body is a required argument");
+        if (marker.isEmpty() || marker.contains("--")) {
+            throw new IllegalArgumentException("marker cannot be empty or contain '--'");
+        }
+
+        final String tag = CommentMarkerIndex.tag(marker);
+        final String text = body.contains(tag) ? body : body + "\n\n" + tag;
+        final Run<?, ?> run = getBuild();
+        final CommentMarkerIndex index = run != null ? CommentMarkerIndex.of(run) : null;
+        try {
+            final Long indexed = index != null ? index.get(marker) : null;
+            Comment comment = indexed != null ? editCommentIfExists(indexed, text) : null;
+            if (comment == null) {
+                final Comment found = findComment(tag);
+                comment = found != null
+                        ? getIssueService().editComment(base, new Comment().setId(found.getId()).setBody(text))
+                        : getIssueService().createComment(base, pullRequestNumber, text);
+            }
+            if (index != null) {
+                index.put(marker, comment.getId());
+            }
+            return new IssueCommentGroovyObject(jobId, comment, base, getIssueService(), marker);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // null if the comment has been deleted
+    private Comment editCommentIfExists(final long commentId, final String body) throws IOException {
+        try {
+            return getIssueService().editComment(base, new Comment().setId(commentId).setBody(body));
+        } catch (final RequestException e) {
+            if (e.getStatus() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private Comment findComment(final String tag) {
+        for (final Collection<Comment> page : getIssueService().pageComments(base, pullRequestNumber)) {
+            for (final Comment comment : page) {
+                if (comment.getBody() != null && comment.getBody().contains(tag)) {
+                    return comment;
+                }
+            }
+        }
+        return null;
+    }
+
     @Whitelisted
     public IssueCommentGroovyObject editComment(final long commentId, final String body) {
         Objects.requireNonNull(body, "body is a required argument");
@@ -830,18 +1607,38 @@ public class PullRequestGroovyObject extends GroovyObjectSupport implements Seri
 
     @Whitelisted
     public void refresh() {
-        pullRequest = getPullRequestService().getPullRequest(base, pullRequest.getNumber());
+        final ExtendedPullRequest fetched = getPullRequestService().getPullRequest(base, pullRequestNumber);
+        synchronized (lock) {
+            pullRequest = fetched;
+            snapshot = null;
+            knownLabels = null;
+            knownAssignees = Optional.ofNullable(fetched.getAssignees())
+                    .orElseGet(Collections::emptyList)
+                    .stream()
+                    .collect(toMap(User::getLogin, user -> Boolean.TRUE, (a, b) -> a, LinkedHashMap::new));
+            allAssigneesKnown = true;
+            updateRefs(fetched, true);
+        }
     }
 
     @Whitelisted
     public void setCredentials(final String userName, final String password) {
-        getGitHubClient().setCredentials(userName, password);
+        // the default client is shared with other builds, so use our own one from now on.
+        ExtendedGitHubClient client = GitHubHelper.newGitHubClient(getJob());
+        client.setCredentials(userName, password);
+        synchronized (lock) {
+            gitHubClient = client;
+            pullRequestService = null;
+            issueService = null;
+            commitService = null;
+            milestoneService = null;
+        }
     }
 
     @Whitelisted
     public void deleteBranch(){
         try {
-            getPullRequestService().deleteBranch(base,pullRequest.getBranchReference());
+            getPullRequestService().deleteBranch(base,pullRequest().getBranchReference());
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -0,0 +1,209 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.InvisibleAction;
+import org.eclipse.egit.github.core.PullRequestMarker;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMRevision;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedPullRequest;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The pull request as it was in the webhook payload that triggered the build.
+ *
+ * Attached to the builds scheduled by our triggers, so {@link PullRequestGroovyObject} can answer from it instead of
+ * fetching the pull request again. Fields the payload did not carry are {@code null}, e.g. the refs of an issue
+ * comment event, and are fetched when first needed. Also the serialized form of a fetched pull request in
+ * {@link PullRequestGroovyObject}.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class PullRequestSnapshot extends InvisibleAction implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int number;
+    private final String headSha;
+    private final String headRef;
+    private final String baseSha;
+    private final String baseRef;
+    private final String title;
+    private final String state;
+    private final List<String> labels;
+    private final Boolean draft;
+    private final String mergeableState;
+    private final Date updatedAt;
+
+    private PullRequestSnapshot(final int number,
+                                final String headSha,
+                                final String headRef,
+                                final String baseSha,
+                                final String baseRef,
+                                final String title,
+                                final String state,
+                                final List<String> labels,
+                                final Boolean draft,
+                                final String mergeableState,
+                                final Date updatedAt) {
+        this.number = number;
+        this.headSha = headSha;
+        this.headRef = headRef;
+        this.baseSha = baseSha;
+        this.baseRef = baseRef;
+        this.title = title;
+        this.state = state;
+        this.labels = labels;
+        this.draft = draft;
+        this.mergeableState = mergeableState;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * @param pullRequest the {@code pull_request} object of a pull request event, or the {@code issue} object of
+     *                    an issue comment event
+     */
+    @NonNull
+    public static PullRequestSnapshot of(@NonNull final JsonNode pullRequest) {
+        List<String> labels = null;
+        if (pullRequest.path("labels").isArray()) {
+            labels = new ArrayList<>();
+            for (final JsonNode label : pullRequest.path("labels")) {
+                labels.add(label.path("name").asText());
+            }
+        }
+        return new PullRequestSnapshot(
+                pullRequest.path("number").asInt(),
+                text(pullRequest.path("head"), "sha"),
+                text(pullRequest.path("head"), "ref"),
+                text(pullRequest.path("base"), "sha"),
+                text(pullRequest.path("base"), "ref"),
+                text(pullRequest, "title"),
+                text(pullRequest, "state"),
+                labels,
+                pullRequest.path("draft").isBoolean() ? pullRequest.path("draft").booleanValue() : null,
+                text(pullRequest, "mergeable_state"),
+                date(text(pullRequest, "updated_at")));
+    }
+
+    /**
+     * @param labels the labels of the pull request, if they are known
+     */
+    @NonNull
+    static PullRequestSnapshot of(@NonNull final ExtendedPullRequest pullRequest,
+                                  @CheckForNull final List<String> labels) {
+        final PullRequestMarker head = pullRequest.getHead();
+        final PullRequestMarker base = pullRequest.getBase();
+        return new PullRequestSnapshot(
+                pullRequest.getNumber(),
+                head != null ? head.getSha() : null,
+                head != null ? head.getRef() : null,
+                base != null ? base.getSha() : null,
+                base != null ? base.getRef() : null,
+                pullRequest.getTitle(),
+                pullRequest.getState(),
+                labels != null ? new ArrayList<>(labels) : null,
+                pullRequest.isDraft(),
+                pullRequest.getMergeableState(),
+                pullRequest.getUpdatedAt());
+    }
+
+    private static String text(final JsonNode node, final String field) {
+        final JsonNode value = node.path(field);
+        return value.isValueNode() && !value.isNull() ? value.asText() : null;
+    }
+
+    private static Date date(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Date.from(Instant.parse(value));
+        } catch (final DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether this snapshot is not older than the other one.
+     */
+    public boolean isNewerThan(@CheckForNull final PullRequestSnapshot other) {
+        return other == null || other.updatedAt == null
+                || (updatedAt != null && !updatedAt.before(other.updatedAt));
+    }
+
+    /**
+     * Checks the head of the snapshot against the revision the build checked out, the pull request may have been
+     * pushed to after the build was scheduled.
+     *
+     * @return {@code false} if the build is of another head commit, or it can't be told, e.g. the snapshot of an
+     *         issue comment has no head.
+     */
+    boolean isCurrent(@CheckForNull final PullRequestSCMRevision revision) {
+        return headSha != null && revision != null && headSha.equals(revision.getPullHash());
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    @CheckForNull
+    public String getHeadSha() {
+        return headSha;
+    }
+
+    @CheckForNull
+    public String getHeadRef() {
+        return headRef;
+    }
+
+    @CheckForNull
+    public String getBaseSha() {
+        return baseSha;
+    }
+
+    @CheckForNull
+    public String getBaseRef() {
+        return baseRef;
+    }
+
+    @CheckForNull
+    public String getTitle() {
+        return title;
+    }
+
+    @CheckForNull
+    public String getState() {
+        return state;
+    }
+
+    @CheckForNull
+    public List<String> getLabels() {
+        return labels != null ? Collections.unmodifiableList(labels) : null;
+    }
+
+    @CheckForNull
+    public Boolean getDraft() {
+        return draft;
+    }
+
+    @CheckForNull
+    public String getMergeableState() {
+        return mergeableState;
+    }
+
+    @CheckForNull
+    public Date getUpdatedAt() {
+        return updatedAt != null ? new Date(updatedAt.getTime()) : null;
+    }
+}
@@ -18,6 +18,8 @@ import java.util.Objects;
  *
  * Additionally provides one the ability to update the comment body and delete the comment.
  *
+ * Serialized with only the fields exposed here and the login of the comment's user.
+ *
  * @author Aaron Whiteside
  * @see ExtendedCommitComment
  */
@@ -39,6 +41,35 @@ public class ReviewCommentGroovyObject extends GroovyObjectSupport implements Se
         this.commitService = Objects.requireNonNull(commitService, "commitService cannot be null");
     }
 
+    private ReviewCommentGroovyObject(final String jobId,
+                                      final RepositoryId base,
+                                      final ExtendedCommitComment commitComment) {
+        this.jobId = jobId;
+        this.base = base;
+        this.commitComment = commitComment;
+    }
+
+    private Object writeReplace() {
+        final ExtendedCommitComment copy = new ExtendedCommitComment();
+        copy.setInReplyToId(commitComment.getInReplyToId());
+        copy.setPullRequestUrl(commitComment.getPullRequestUrl());
+        copy.setPullRequestReviewId(commitComment.getPullRequestReviewId());
+        copy.setLine(commitComment.getLine())
+                .setPosition(commitComment.getPosition())
+                .setOriginalPosition(commitComment.getOriginalPosition())
+                .setCommitId(commitComment.getCommitId())
+                .setOriginalCommitId(commitComment.getOriginalCommitId())
+                .setPath(commitComment.getPath())
+                .setDiffHunk(commitComment.getDiffHunk());
+        copy.setId(commitComment.getId())
+                .setUrl(commitComment.getUrl())
+                .setBody(commitComment.getBody())
+                .setCreatedAt(commitComment.getCreatedAt())
+                .setUpdatedAt(commitComment.getUpdatedAt())
+                .setUser(GitHubHelper.loginOnly(commitComment.getUser()));
+        return new ReviewCommentGroovyObject(jobId, base, copy);
+    }
+
     private ExtendedCommitService getCommitService() {
         if (commitService == null) {
             commitService = new ExtendedCommitService(GitHubHelper.getGitHubClient(GitHubHelper.getJob(jobId)));
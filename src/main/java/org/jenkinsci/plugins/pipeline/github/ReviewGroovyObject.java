@@ -43,4 +43,9 @@ public class ReviewGroovyObject extends GroovyObjectSupport implements Serializa
     public String getState() {
         return review.getState();
     }
+
+    @Whitelisted
+    public String getUrl() {
+        return review.getHtmlUrl();
+    }
 }
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the writes that were not sent to GitHub because they would not have changed anything, by the name of the
+ * operation, e.g. {@code addLabels}.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class SkippedWrites {
+
+    private static final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+
+    private SkippedWrites() {
+        // go away
+    }
+
+    static void increment(@NonNull final String operation) {
+        counts.computeIfAbsent(operation, o -> new AtomicLong()).incrementAndGet();
+    }
+
+    public static long getCount(@NonNull final String operation) {
+        final AtomicLong count = counts.get(operation);
+        return count != null ? count.get() : 0L;
+    }
+
+    @NonNull
+    public static Map<String, Long> getCounts() {
+        final Map<String, Long> snapshot = new TreeMap<>();
+        counts.forEach((operation, count) -> snapshot.put(operation, count.get()));
+        return snapshot;
+    }
+}
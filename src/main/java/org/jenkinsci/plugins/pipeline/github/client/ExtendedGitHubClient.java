@@ -8,68 +8,133 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
+ * GitHub client that sends all requests through a {@link GitHubTransport} instead of egit's
+ * per request {@link HttpURLConnection}.
+ *
+ * GETs, including the pages fetched by {@link org.eclipse.egit.github.core.client.PageIterator}, are revalidated
+ * against the {@link ResponseCache}.
+ *
  * @author Aaron Whiteside
  */
 public class ExtendedGitHubClient extends GitHubClient {
 
+    private static final String HOST_GITHUB_API = "api.github.com";
+    private static final String API_V3_PREFIX = "/api/v3";
+    private static final String DEFAULT_ACCEPT = "application/vnd.github.v3+json";
+    private static final String DEFAULT_USER_AGENT = "Jenkins-Pipeline-GitHub";
+    private static final String ANONYMOUS = "anonymous";
+
+    private final String apiUrl;
+    private final String apiPrefix;
+
+    private volatile GitHubTransport transport;
+    private volatile ResponseCache responseCache = ResponseCache.getDefault();
+    private volatile String authorization;
+    // identifies the credentials in the response cache without keeping another copy of them
+    private volatile String principal = ANONYMOUS;
+
     public ExtendedGitHubClient() {
+        this(HOST_GITHUB_API);
     }
 
     public ExtendedGitHubClient(final String hostname) {
-        super(hostname);
+        this(hostname, -1, "https");
     }
 
     public ExtendedGitHubClient(final String hostname, final int port, final String scheme) {
         super(hostname, port, scheme);
+
+        // same rules as GitHubClient, which keeps them private
+        StringBuilder uri = new StringBuilder(scheme).append("://").append(hostname);
+        if (port > 0) {
+            uri.append(':').append(port);
+        }
+        this.apiUrl = uri.toString();
+        this.apiPrefix = HOST_GITHUB_API.equals(hostname) ? null : API_V3_PREFIX;
     }
 
-    public <V> V patch(final String uri, final Object params, final Type type) {
-        return patch(uri, params, type, null);
+    public GitHubTransport getTransport() {
+        GitHubTransport t = transport;
+        return t != null ? t : JdkHttpTransport.getDefault();
     }
 
-    public <V> V patch(final String uri, final Object params, final Type type, final String accept) {
-        try {
-            final HttpURLConnection request = createPost(uri);
-            request.setRequestProperty("X-HTTP-Method-Override", "PATCH");
+    public ExtendedGitHubClient setTransport(final GitHubTransport transport) {
+        this.transport = transport;
+        return this;
+    }
 
-            if (accept != null) {
-                request.setRequestProperty("Accept", accept);
-            }
-            return this.sendJson(request, params, type);
-        } catch (final IOException e) {
-            throw new UncheckedIOException(e);
-        }
+    public ResponseCache getResponseCache() {
+        return responseCache;
     }
 
-    public <V> V post(final String uri, final Object params, final Type type, final String accept) throws IOException {
-        HttpURLConnection request = this.createPost(uri);
-        if (accept != null) {
-            request.setRequestProperty("Accept", accept);
+    /**
+     * @param responseCache the cache for conditional GETs, or {@code null} to disable caching.
+     */
+    public ExtendedGitHubClient setResponseCache(final ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    /**
+     * @return the governor pacing the requests made with this client's credentials.
+     */
+    public RequestGovernor getGovernor() {
+        return RequestGovernor.forPrincipal(URI.create(apiUrl).getHost() + '/' + principal);
+    }
+
+    @Override
+    public ExtendedGitHubClient setCredentials(final String user, final String password) {
+        super.setCredentials(user, password);
+        if (user != null && !user.isEmpty() && password != null && !password.isEmpty()) {
+            authorization = "Basic " + Base64.getEncoder()
+                    .encodeToString((user + ':' + password).getBytes(StandardCharsets.UTF_8));
+        } else {
+            authorization = null;
         }
-        return this.sendJson(request, params, type);
+        principal = principalOf(authorization);
+        return this;
     }
 
-    public <V> V put(final String uri, final Object params, final Type type, final String accept) throws IOException {
-        HttpURLConnection request = this.createPut(uri);
-        if (accept != null) {
-            request.setRequestProperty("Accept", accept);
+    @Override
+    public ExtendedGitHubClient setOAuth2Token(final String token) {
+        super.setOAuth2Token(token);
+        authorization = token != null && !token.isEmpty() ? "token " + token : null;
+        principal = principalOf(authorization);
+        return this;
+    }
+
+    private static String principalOf(final String authorization) {
+        if (authorization == null) {
+            return ANONYMOUS;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(authorization.getBytes(StandardCharsets.UTF_8)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
-        return this.sendJson(request, params, type);
     }
 
-    // duplicated here because it's private in the super class.
-    private <V> V sendJson(final HttpURLConnection request, final Object params, final Type type) throws IOException {
-        this.sendParams(request, params);
-        int code = request.getResponseCode();
-        this.updateRateLimits(request);
-        if(this.isOk(code)) {
-            return type != null?this.parseJson(this.getStream(request), type):null;
-        } else if(this.isEmpty(code)) {
-            return null;
+    @Override
+    public GitHubResponse get(final GitHubRequest request) throws IOException {
+        TransportConnection connection = execute("GET", request.generateUri(), null, request.getResponseContentType());
+        int code = connection.getResponseCode();
+        if (isOk(code)) {
+            Type type = request.getType();
+            return new GitHubResponse(connection, type != null ? parseJson(connection.getInputStream(), type) : null);
+        } else if (isEmpty(code)) {
+            return new GitHubResponse(connection, null);
         } else {
-            throw this.createException(this.getStream(request), code, request.getResponseMessage());
+            throw createException(connection.getInputStream(), code, connection.getResponseMessage());
         }
     }
 
@@ -82,21 +147,126 @@ public class ExtendedGitHubClient extends GitHubClient {
         }
     }
 
-    public <V> V delete(final String uri, final Type type, final String accept) throws IOException {
-        HttpURLConnection request = this.createDelete(uri);
-        if (accept != null) {
-            request.setRequestProperty("Accept", accept);
+    @Override
+    public <V> V post(final String uri, final Object params, final Type type) throws IOException {
+        return post(uri, params, type, null);
+    }
+
+    public <V> V post(final String uri, final Object params, final Type type, final String accept) throws IOException {
+        return sendJson("POST", uri, params, type, accept);
+    }
+
+    @Override
+    public <V> V put(final String uri, final Object params, final Type type) throws IOException {
+        return put(uri, params, type, null);
+    }
+
+    public <V> V put(final String uri, final Object params, final Type type, final String accept) throws IOException {
+        return sendJson("PUT", uri, params, type, accept);
+    }
+
+    public <V> V patch(final String uri, final Object params, final Type type) {
+        return patch(uri, params, type, null);
+    }
+
+    public <V> V patch(final String uri, final Object params, final Type type, final String accept) {
+        try {
+            return sendJson("PATCH", uri, params, type, accept);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        int code = request.getResponseCode();
-        this.updateRateLimits(request);
-        if (this.isOk(code)) {
-            return type != null ? this.parseJson(this.getStream(request), type) : null;
-        } else if (this.isEmpty(code)) {
+    @Override
+    public void delete(final String uri, final Object params) throws IOException {
+        sendJson("DELETE", uri, params, null, null);
+    }
+
+    public <V> V delete(final String uri, final Type type, final String accept) throws IOException {
+        return sendJson("DELETE", uri, null, type, accept);
+    }
+
+    private <V> V sendJson(final String method,
+                           final String uri,
+                           final Object params,
+                           final Type type,
+                           final String accept) throws IOException {
+        byte[] body = params != null ? toJson(params).getBytes(StandardCharsets.UTF_8) : null;
+        TransportConnection connection = execute(method, uri, body, accept);
+        int code = connection.getResponseCode();
+        if (isOk(code)) {
+            return type != null ? parseJson(connection.getInputStream(), type) : null;
+        } else if (isEmpty(code)) {
             return null;
         } else {
-            throw this.createException(this.getStream(request), code, request.getResponseMessage());
+            throw createException(connection.getInputStream(), code, connection.getResponseMessage());
+        }
+    }
+
+    private TransportConnection execute(final String method,
+                                        final String uri,
+                                        final byte[] body,
+                                        final String accept) throws IOException {
+        String acceptHeader = accept != null ? accept : DEFAULT_ACCEPT;
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", acceptHeader);
+        headers.put("User-Agent", DEFAULT_USER_AGENT);
+        String auth = authorization;
+        if (auth != null) {
+            headers.put("Authorization", auth);
+        }
+        if (body != null) {
+            headers.put("Content-Type", "application/json; charset=utf-8");
+        }
+
+        URI requestUri = createRequestUri(uri);
+        String requestPrincipal = principal;
+        ResponseCache cache = "GET".equals(method) ? responseCache : null;
+        ResponseCache.Entry cached = cache != null ? cache.get(requestPrincipal, requestUri, acceptHeader) : null;
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                headers.put("If-None-Match", cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                headers.put("If-Modified-Since", cached.getLastModified());
+            }
+        }
+
+        // rate limits are per token, so every client using the same credentials shares one governor
+        RequestGovernor governor = RequestGovernor.forPrincipal(requestUri.getHost() + '/' + requestPrincipal);
+        RequestGovernor.Priority priority = "GET".equals(method)
+                ? RequestGovernor.currentPriority()
+                : RequestGovernor.Priority.MUTATING;
+        governor.acquire(priority);
+        GitHubTransport.Response response = getTransport().execute(method, requestUri, headers, body);
+        if (governor.update(response)) {
+            // rejected by a rate limit, acquire() waits as long as GitHub asked before the single retry
+            governor.acquire(priority);
+            response = getTransport().execute(method, requestUri, headers, body);
+            governor.update(response);
+        }
+        if (cached != null && response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            response = cache.revalidated(cached, response);
+        } else if (cache != null && response.getStatusCode() == HttpURLConnection.HTTP_OK) {
+            cache.put(requestPrincipal, requestUri, acceptHeader, response);
         }
+        TransportConnection connection = new TransportConnection(method, response);
+        updateRateLimits(connection);
+        return connection;
     }
 
+    /**
+     * Resolves a request path against the API endpoint, absolute URIs (e.g. paging links) are used as is.
+     */
+    URI createRequestUri(final String uri) throws IOException {
+        try {
+            if (uri.startsWith("http://") || uri.startsWith("https://")) {
+                return URI.create(uri);
+            }
+            String path = apiPrefix == null || uri.startsWith(apiPrefix) ? uri : apiPrefix + uri;
+            return URI.create(apiUrl + path);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("Invalid request URI: " + uri, e);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package org.jenkinsci.plugins.pipeline.github.client;
 
 import com.google.gson.reflect.TypeToken;
+import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
 import org.eclipse.egit.github.core.Issue;
 import org.eclipse.egit.github.core.Label;
@@ -10,6 +11,10 @@ import org.eclipse.egit.github.core.service.IssueService;
 
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -89,6 +94,21 @@ public class ExtendedIssueService extends IssueService {
         return getClient().patch(uri.toString(), params, Issue.class);
     }
 
+    /**
+     * Edits the given fields of the issue in one request, e.g. {@code labels}, {@code assignees} and
+     * {@code milestone}.
+     */
+    public Issue editIssue(final IRepositoryIdProvider repository,
+                           final int issueNumber,
+                           final Map<String, Object> fields) {
+        String repoId = this.getId(repository);
+        StringBuilder uri = new StringBuilder("/repos");
+        uri.append('/').append(repoId);
+        uri.append("/issues");
+        uri.append('/').append(issueNumber);
+        return getClient().patch(uri.toString(), fields, Issue.class);
+    }
+
     public void setAssignees(final IRepositoryIdProvider repository,
                              final int issueNumber,
                              final List<String> assignees) throws IOException {
@@ -117,6 +137,41 @@ public class ExtendedIssueService extends IssueService {
         return this.createPageIterator(request);
     }
 
+    /**
+     * Pages through the comments of the issue, oldest first, 100 at a time.
+     */
+    public PageIterator<Comment> pageComments(final IRepositoryIdProvider repository, final int issueNumber) {
+        return pageComments(repository, issueNumber, Collections.emptyMap());
+    }
+
+    /**
+     * Pages through the comments of the issue that were created or updated after the given time, oldest first.
+     */
+    public PageIterator<Comment> pageComments(final IRepositoryIdProvider repository,
+                                              final int issueNumber,
+                                              final Date since) {
+        Map<String, String> params = new HashMap<>(1, 1.0F);
+        params.put("since", DateTimeFormatter.ISO_INSTANT.format(since.toInstant().truncatedTo(ChronoUnit.SECONDS)));
+        return pageComments(repository, issueNumber, params);
+    }
+
+    private PageIterator<Comment> pageComments(final IRepositoryIdProvider repository,
+                                               final int issueNumber,
+                                               final Map<String, String> params) {
+        String repoId = this.getId(repository);
+        StringBuilder uri = new StringBuilder("/repos");
+        uri.append('/').append(repoId);
+        uri.append("/issues");
+        uri.append('/').append(issueNumber);
+        uri.append("/comments");
+
+        PagedRequest<Comment> request = this.createPagedRequest(1, 100);
+        request.setUri(uri);
+        request.setParams(params);
+        request.setType((new TypeToken<List<Comment>>() {}).getType());
+        return this.createPageIterator(request);
+    }
+
     public List<Label> setLabels(final IRepositoryIdProvider repository,
                                  final int issueNumber,
                                  final List<String> labels) throws IOException {
@@ -1,7 +1,9 @@
 package org.jenkinsci.plugins.pipeline.github.client;
 
 import com.google.gson.reflect.TypeToken;
+import org.eclipse.egit.github.core.CommitFile;
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.RepositoryCommit;
 import org.eclipse.egit.github.core.Team;
 import org.eclipse.egit.github.core.User;
 import org.eclipse.egit.github.core.client.GitHubRequest;
@@ -134,8 +136,16 @@ public class ExtendedPullRequestService extends PullRequestService {
         return getClient().put(uri.toString(), params, ExtendedMergeStatus.class);
     }
 
+    public PageIterator<ExtendedCommitComment> pageComments2(final IRepositoryIdProvider repository, final int id) {
+        return this.pageComments2(repository, id, 1);
+    }
+
+    /**
+     * @param start the first page to fetch, pages are of 100 items
+     */
     public PageIterator<ExtendedCommitComment> pageComments2(final IRepositoryIdProvider repository,
-                                                             final int id) {
+                                                             final int id,
+                                                             final int start) {
         String repoId = this.getId(repository);
         StringBuilder uri = new StringBuilder("/repos");
         uri.append('/').append(repoId);
@@ -143,7 +153,7 @@ public class ExtendedPullRequestService extends PullRequestService {
         uri.append('/').append(id);
         uri.append("/comments");
 
-        PagedRequest<ExtendedCommitComment> request = this.createPagedRequest(1, 100);
+        PagedRequest<ExtendedCommitComment> request = this.createPagedRequest(start, 100);
         request.setUri(uri);
         request.setType((new TypeToken<List<ExtendedCommitComment>>(){}).getType());
         return this.createPageIterator(request);
@@ -190,6 +200,15 @@ public class ExtendedPullRequestService extends PullRequestService {
     }
 
     public PageIterator<User> pageRequestedReviewers(final IRepositoryIdProvider repository, final int id) {
+        return this.pageRequestedReviewers(repository, id, 1);
+    }
+
+    /**
+     * @param start the first page to fetch, pages are of 100 items
+     */
+    public PageIterator<User> pageRequestedReviewers(final IRepositoryIdProvider repository,
+                                                     final int id,
+                                                     final int start) {
         String repoId = this.getId(repository);
         StringBuilder uri = new StringBuilder("/repos");
         uri.append('/').append(repoId);
@@ -197,7 +216,7 @@ public class ExtendedPullRequestService extends PullRequestService {
         uri.append('/').append(id);
         uri.append("/requested_reviewers");
 
-        PagedRequest<User> request = this.createPagedRequest(1, 100);
+        PagedRequest<User> request = this.createPagedRequest(start, 100);
         request.setUri(uri);
         request.setType((new TypeToken<List<User>>(){}).getType());
         return this.createPageIterator(request);
@@ -217,7 +236,54 @@ public class ExtendedPullRequestService extends PullRequestService {
         return this.createPageIterator(request);
     }
 
+    public PageIterator<RepositoryCommit> pageCommits(final IRepositoryIdProvider repository, final int id) {
+        return this.pageCommits(repository, id, 1);
+    }
+
+    /**
+     * @param start the first page to fetch, pages are of 100 items
+     */
+    public PageIterator<RepositoryCommit> pageCommits(final IRepositoryIdProvider repository,
+                                                      final int id,
+                                                      final int start) {
+        String repoId = this.getId(repository);
+        StringBuilder uri = new StringBuilder("/repos");
+        uri.append('/').append(repoId);
+        uri.append("/pulls");
+        uri.append('/').append(id);
+        uri.append("/commits");
+
+        PagedRequest<RepositoryCommit> request = this.createPagedRequest(start, 100);
+        request.setUri(uri);
+        request.setType((new TypeToken<List<RepositoryCommit>>(){}).getType());
+        return this.createPageIterator(request);
+    }
+
+    /**
+     * @param start the first page to fetch, pages are of 100 files
+     */
+    public PageIterator<CommitFile> pageFiles(final IRepositoryIdProvider repository, final int id, final int start) {
+        String repoId = this.getId(repository);
+        StringBuilder uri = new StringBuilder("/repos");
+        uri.append('/').append(repoId);
+        uri.append("/pulls");
+        uri.append('/').append(id);
+        uri.append("/files");
+
+        PagedRequest<CommitFile> request = this.createPagedRequest(start, 100);
+        request.setUri(uri);
+        request.setType((new TypeToken<List<CommitFile>>(){}).getType());
+        return this.createPageIterator(request);
+    }
+
     public PageIterator<Review> pageReviews(final IRepositoryIdProvider repository, final int id) {
+        return this.pageReviews(repository, id, 1);
+    }
+
+    /**
+     * @param start the first page to fetch, pages are of 100 items
+     */
+    public PageIterator<Review> pageReviews(final IRepositoryIdProvider repository, final int id, final int start) {
         String repoId = this.getId(repository);
         StringBuilder uri = new StringBuilder("/repos");
         uri.append('/').append(repoId);
@@ -225,18 +291,32 @@ public class ExtendedPullRequestService extends PullRequestService {
         uri.append('/').append(id);
         uri.append("/reviews");
 
-        PagedRequest<Review> request = this.createPagedRequest(1, 100);
+        PagedRequest<Review> request = this.createPagedRequest(start, 100);
         request.setUri(uri);
         request.setType((new TypeToken<List<Review>>(){}).getType());
         return this.createPageIterator(request);
     }
 
-    public void createReview(final IRepositoryIdProvider repository,
-                             final int id,
-                             final String commitId,
-                             final String event,
-                             final String body) throws IOException {
-        if (event != null && (event.equals("REQUEST_CHANGES") || event.equals("COMMENT"))) {
+    public Review createReview(final IRepositoryIdProvider repository,
+                               final int id,
+                               final String commitId,
+                               final String event,
+                               final String body) throws IOException {
+        return createReview(repository, id, commitId, event, body, null);
+    }
+
+    /**
+     * @param comments the inline comments of the review, each with the {@code path}, {@code body} and {@code line}
+     *                 or {@code position} fields of the API, and optionally {@code side}, {@code start_line} and
+     *                 {@code start_side}; a {@code COMMENT} review with comments needs no body
+     */
+    public Review createReview(final IRepositoryIdProvider repository,
+                               final int id,
+                               final String commitId,
+                               final String event,
+                               final String body,
+                               final List<Map<String, Object>> comments) throws IOException {
+        if ("REQUEST_CHANGES".equals(event) || ("COMMENT".equals(event) && (comments == null || comments.isEmpty()))) {
             Objects.requireNonNull(body, "body is a required argument when event equals REQUEST_CHANGES or COMMENT");
         }
 
@@ -247,11 +327,12 @@ public class ExtendedPullRequestService extends PullRequestService {
         uri.append('/').append(id);
         uri.append("/reviews");
 
-        Map<String, String> params = new HashMap<>();
+        Map<String, Object> params = new HashMap<>();
         if (commitId != null) params.put("commit_id", commitId);
         if (body != null) params.put("body", body);
         if (event != null) params.put("event", event);
-        getClient().post(uri.toString(), params, null);
+        if (comments != null && !comments.isEmpty()) params.put("comments", comments);
+        return getClient().post(uri.toString(), params, Review.class);
     }
 
     public void createReviewRequests(final IRepositoryIdProvider repository,
@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.pipeline.github.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The HTTP layer used by {@link ExtendedGitHubClient} to talk to the GitHub API.
+ *
+ * @author Aaron Whiteside
+ * @see JdkHttpTransport
+ */
+public interface GitHubTransport {
+
+    /**
+     * Sends a request and reads the whole (decoded) response body.
+     *
+     * @param method  the HTTP method, any method is allowed including PATCH and DELETE with a body
+     * @param uri     the absolute request URI
+     * @param headers request headers
+     * @param body    the request body, or {@code null} for none
+     */
+    Response execute(String method, URI uri, Map<String, String> headers, byte[] body) throws IOException;
+
+    /**
+     * A fully read HTTP response.
+     */
+    final class Response {
+        private final URI uri;
+        private final int statusCode;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+
+        public Response(final URI uri, final int statusCode, final Map<String, List<String>> headers, final byte[] body) {
+            this.uri = uri;
+            this.statusCode = statusCode;
+            Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            copy.putAll(headers);
+            this.headers = Collections.unmodifiableMap(copy);
+            this.body = body != null ? body : new byte[0];
+        }
+
+        public URI getUri() {
+            return uri;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        /**
+         * @return the first value of the header (case insensitive), or {@code null}
+         */
+        public String getHeader(final String name) {
+            List<String> values = headers.get(name);
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public InputStream getBodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+    }
+}
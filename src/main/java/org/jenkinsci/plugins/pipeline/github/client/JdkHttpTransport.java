@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.pipeline.github.client;
+
+import hudson.ProxyConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link GitHubTransport} backed by {@link HttpClient}.
+ *
+ * A single {@link HttpClient} is shared by all clients, so connections are pooled and kept alive, and
+ * multiplexed over HTTP/2 where the server supports it. Responses are requested gzip compressed.
+ *
+ * Timeouts can be tuned with the {@code connectTimeoutSeconds} and {@code readTimeoutSeconds} system properties
+ * prefixed with this class name.
+ *
+ * @author Aaron Whiteside
+ */
+public class JdkHttpTransport implements GitHubTransport {
+
+    static final long CONNECT_TIMEOUT_SECONDS =
+            Long.getLong(JdkHttpTransport.class.getName() + ".connectTimeoutSeconds", 10L);
+    static final long READ_TIMEOUT_SECONDS =
+            Long.getLong(JdkHttpTransport.class.getName() + ".readTimeoutSeconds", 60L);
+
+    private static volatile JdkHttpTransport defaultTransport;
+
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+
+    public JdkHttpTransport(final HttpClient httpClient, final Duration readTimeout) {
+        this.httpClient = httpClient;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @return the transport shared by every client that was not given one explicitly.
+     */
+    public static JdkHttpTransport getDefault() {
+        JdkHttpTransport transport = defaultTransport;
+        if (transport == null) {
+            synchronized (JdkHttpTransport.class) {
+                transport = defaultTransport;
+                if (transport == null) {
+                    HttpClient httpClient = ProxyConfiguration.newHttpClientBuilder()
+                            .version(HttpClient.Version.HTTP_2)
+                            .connectTimeout(Duration.ofSeconds(CONNECT_TIMEOUT_SECONDS))
+                            .followRedirects(HttpClient.Redirect.NORMAL)
+                            .build();
+                    transport = new JdkHttpTransport(httpClient, Duration.ofSeconds(READ_TIMEOUT_SECONDS));
+                    defaultTransport = transport;
+                }
+            }
+        }
+        return transport;
+    }
+
+    @Override
+    public Response execute(final String method,
+                            final URI uri,
+                            final Map<String, String> headers,
+                            final byte[] body) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .method(method, body != null
+                        ? HttpRequest.BodyPublishers.ofByteArray(body)
+                        : HttpRequest.BodyPublishers.noBody());
+        headers.forEach(builder::header);
+        builder.header("Accept-Encoding", "gzip");
+
+        final HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + method + " " + uri);
+        }
+
+        byte[] content = response.body();
+        boolean gzipped = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        if (gzipped && content != null && content.length > 0) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+                content = in.readAllBytes();
+            }
+        }
+        return new Response(uri, response.statusCode(), response.headers().map(), content);
+    }
+}
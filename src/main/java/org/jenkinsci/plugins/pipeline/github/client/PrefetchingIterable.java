@@ -0,0 +1,169 @@
+package org.jenkinsci.plugins.pipeline.github.client;
+
+import org.eclipse.egit.github.core.client.PageIterator;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Iterates over the items of a paged listing, fetching the following pages in the background while the current one
+ * is consumed.
+ *
+ * When the first page links to the last one, up to {@link #PARALLELISM} of the following pages are fetched
+ * concurrently, fewer when the {@link RequestGovernor} has no budget for as many, otherwise the next page is fetched
+ * once the current one links to it. Items come back in order either way, at most the current page and the pages being
+ * fetched are held, and no further pages are fetched once the iteration is abandoned. The pages are fetched in the
+ * {@link RequestGovernor.Context} of the thread that started the iteration, so they are paced like any other request
+ * and wait no longer than that thread may. Each iteration starts over from the first page,
+ * or from the page it is given.
+ *
+ * @param <V> the items of the listing
+ * @param <R> what they are mapped to
+ * @author Aaron Whiteside
+ */
+public final class PrefetchingIterable<V, R> implements Iterable<R> {
+
+    static final int PARALLELISM = Math.max(1,
+            Integer.getInteger(PrefetchingIterable.class.getName() + ".parallelism", 4));
+
+    /**
+     * Maps an item of the listing, given the page it was on.
+     */
+    @FunctionalInterface
+    public interface Mapper<V, R> {
+        R map(V item, int page);
+    }
+
+    /**
+     * Iterates over the items, telling which page the last one returned was on.
+     */
+    public interface PageAwareIterator<R> extends Iterator<R> {
+        int getPage();
+    }
+
+    private final IntFunction<PageIterator<V>> pages;
+    private final Executor executor;
+    private final RequestGovernor governor;
+    private final Mapper<V, R> mapper;
+
+    /**
+     * @param pages    the listing starting at the given page
+     * @param governor paces the client of the listing
+     */
+    public PrefetchingIterable(final IntFunction<PageIterator<V>> pages,
+                               final Executor executor,
+                               final RequestGovernor governor,
+                               final Mapper<V, R> mapper) {
+        this.pages = Objects.requireNonNull(pages, "pages cannot be null");
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+        this.governor = Objects.requireNonNull(governor, "governor cannot be null");
+        this.mapper = Objects.requireNonNull(mapper, "mapper cannot be null");
+    }
+
+    @Override
+    public PageAwareIterator<R> iterator() {
+        return iterator(1);
+    }
+
+    /**
+     * @param first the page to start from
+     */
+    public PageAwareIterator<R> iterator(final int first) {
+        return new PrefetchingIterator(first);
+    }
+
+    private final class PrefetchingIterator implements PageAwareIterator<R> {
+        private final RequestGovernor.Context context = RequestGovernor.currentContext();
+        private final int first;
+        // the listing from the first page on, followed page by page when it doesn't link to its last page
+        private PageIterator<V> listing;
+        private int lastPage;
+        private Iterator<V> items = Collections.emptyIterator();
+        private int page;
+        // the pages after the current one, in order, while they're being fetched
+        private final Deque<CompletableFuture<Collection<V>>> fetching = new ArrayDeque<>();
+        private int fetched;
+
+        private PrefetchingIterator(final int first) {
+            this.first = first;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!items.hasNext()) {
+                final Collection<V> current;
+                if (listing == null) {
+                    listing = pages.apply(first);
+                    current = listing.next();
+                    page = first;
+                    fetched = first;
+                    lastPage = listing.getLastPage();
+                } else if (!fetching.isEmpty()) {
+                    current = await(fetching.poll());
+                    page++;
+                } else {
+                    return false;
+                }
+                items = current.iterator();
+                fetchAhead();
+            }
+            return true;
+        }
+
+        private void fetchAhead() {
+            if (lastPage > fetched) {
+                final int parallelism = governor.parallelism(context.getPriority(), PARALLELISM);
+                while (fetching.size() < parallelism && fetched < lastPage) {
+                    final int number = ++fetched;
+                    fetching.add(fetch(() -> pages.apply(number).next()));
+                }
+            } else if (fetching.isEmpty() && listing.hasNext()) {
+                // the listing is only used by one thread at a time, the fetch is awaited before its next use
+                fetched++;
+                fetching.add(fetch(listing::next));
+            }
+        }
+
+        private CompletableFuture<Collection<V>> fetch(final Supplier<Collection<V>> page) {
+            return CompletableFuture.supplyAsync(() -> {
+                try (RequestGovernor.Scope scope = context.enter()) {
+                    return page.get();
+                }
+            }, executor);
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return mapper.map(items.next(), page);
+        }
+
+        @Override
+        public int getPage() {
+            return page;
+        }
+
+        private Collection<V> await(final CompletableFuture<Collection<V>> future) {
+            try {
+                return future.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package org.jenkinsci.plugins.pipeline.github.client;
+
+import org.jenkinsci.plugins.workflow.cps.CpsThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Paces the requests made with one set of credentials, shared by every client and build using them.
+ *
+ * The governor tracks the primary rate limit reported by GitHub ({@code X-RateLimit-Remaining} and
+ * {@code X-RateLimit-Reset}) and paces requests with two token buckets, one for all requests and a slower one for
+ * mutating requests, which is what GitHub's secondary rate limits are about. When GitHub answers with
+ * {@code Retry-After}, or the primary limit is exhausted, every caller waits until the given time.
+ *
+ * {@link Priority#MUTATING} and {@link Priority#CRITICAL} requests may use the whole budget,
+ * {@link Priority#BEST_EFFORT} requests leave a reserve for them. No caller waits longer than
+ * {@link #MAX_WAIT_SECONDS}, after that the request is sent anyway and GitHub has the final say.
+ *
+ * The CPS VM thread runs every branch of a pipeline, so it only waits up to {@link #CPS_MAX_WAIT_MILLIS}. After that
+ * a request held back by our own pacing is sent anyway, and one GitHub asked us to hold back fails right away rather
+ * than freeze the pipeline, the {@code githubApi} step waits on another thread instead. Threads the CPS VM thread
+ * waits on, e.g. the ones prefetching pages, are held to the same limit through their {@link Context}.
+ *
+ * Threads Jenkins or this plugin use for their own work, e.g. the webhook lanes, {@link jenkins.util.Timer} tasks
+ * and {@link hudson.model.listeners.RunListener}s, enter {@link #forInfrastructure()} and wait up to
+ * {@link #INFRASTRUCTURE_MAX_WAIT_MILLIS}. A request GitHub asked us to hold back for longer fails with a
+ * {@link HeldBackException}, which tells the caller when to try again, so that it can defer its work rather than
+ * hold up everything else queued on the thread.
+ *
+ * Waiting callers go in order of priority, and in the order they came within a priority, whenever the budget
+ * allows more than one of them to go.
+ *
+ * @author Aaron Whiteside
+ */
+public class RequestGovernor {
+    private static final Logger LOG = LoggerFactory.getLogger(RequestGovernor.class);
+
+    private static final String PREFIX = RequestGovernor.class.getName();
+
+    static final boolean ENABLED = !Boolean.getBoolean(PREFIX + ".disabled");
+    static final long MAX_WAIT_SECONDS = Long.getLong(PREFIX + ".maxWaitSeconds", 60L);
+    static final long CPS_MAX_WAIT_MILLIS = Long.getLong(PREFIX + ".cpsMaxWaitMillis", 1000L);
+    static final long INFRASTRUCTURE_MAX_WAIT_MILLIS = Long.getLong(PREFIX + ".infrastructureMaxWaitMillis", 5000L);
+    static final double REQUESTS_PER_SECOND = Double.parseDouble(System.getProperty(PREFIX + ".requestsPerSecond", "15"));
+    static final int REQUEST_BURST = Integer.getInteger(PREFIX + ".requestBurst", 50);
+    static final double MUTATIONS_PER_SECOND = Double.parseDouble(System.getProperty(PREFIX + ".mutationsPerSecond", "1.3"));
+    static final int MUTATION_BURST = Integer.getInteger(PREFIX + ".mutationBurst", 20);
+    // part of the primary rate limit that best effort requests leave untouched
+    static final double BEST_EFFORT_RESERVE = 0.2;
+    static final int CRITICAL_RESERVE = 10;
+
+    private static final long IDLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final Map<String, RequestGovernor> governors = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Priority> priority = ThreadLocal.withInitial(() -> Priority.CRITICAL);
+    // whether the current thread does work the CPS VM thread is waiting on
+    private static final ThreadLocal<Boolean> forCpsVmThread = ThreadLocal.withInitial(() -> false);
+    // whether the current thread does work for Jenkins, or this plugin, rather than for a build
+    private static final ThreadLocal<Boolean> forInfrastructure = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * How important a request is when the budget runs low.
+     */
+    public enum Priority {
+        /** Writes, always sent once the buckets allow. */
+        MUTATING,
+        /** Reads a build depends on, the default for GETs. */
+        CRITICAL,
+        /** Reads that may be delayed, e.g. background catch-up or prefetching. */
+        BEST_EFFORT
+    }
+
+    /**
+     * Restores the previous priority when closed.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Thrown instead of waiting when GitHub asked us to hold back for longer than the current thread may wait.
+     */
+    public static final class HeldBackException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final long heldMillis;
+
+        public HeldBackException(final String message, final long heldMillis) {
+            super(message);
+            this.heldMillis = heldMillis;
+        }
+
+        /**
+         * @return how long GitHub still holds back requests, from when this was thrown.
+         */
+        public long getHeldMillis() {
+            return heldMillis;
+        }
+
+        /**
+         * @return the {@link HeldBackException} that caused the given failure, {@code null} if there is none.
+         */
+        public static HeldBackException of(final Throwable failure) {
+            for (Throwable t = failure; t != null; t = t.getCause()) {
+                if (t instanceof HeldBackException) {
+                    return (HeldBackException) t;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The priority of a thread, and whether it is the CPS VM thread or does infrastructure work, carried over to the
+     * threads doing its work so their requests wait no longer than it may.
+     */
+    public static final class Context {
+        private final Priority priority;
+        private final boolean cpsVmThread;
+        private final boolean infrastructure;
+
+        Context(final Priority priority, final boolean cpsVmThread) {
+            this(priority, cpsVmThread, false);
+        }
+
+        Context(final Priority priority, final boolean cpsVmThread, final boolean infrastructure) {
+            this.priority = priority;
+            this.cpsVmThread = cpsVmThread;
+            this.infrastructure = infrastructure;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public boolean isCpsVmThread() {
+            return cpsVmThread;
+        }
+
+        public boolean isInfrastructure() {
+            return infrastructure;
+        }
+
+        /**
+         * Applies the context to the current thread until the returned scope is closed.
+         */
+        public Scope enter() {
+            final Priority previousPriority = RequestGovernor.priority.get();
+            final boolean previousCpsVmThread = forCpsVmThread.get();
+            final boolean previousInfrastructure = forInfrastructure.get();
+            RequestGovernor.priority.set(priority);
+            forCpsVmThread.set(cpsVmThread);
+            forInfrastructure.set(infrastructure);
+            return () -> {
+                RequestGovernor.priority.set(previousPriority);
+                forCpsVmThread.set(previousCpsVmThread);
+                forInfrastructure.set(previousInfrastructure);
+            };
+        }
+    }
+
+    private final Object lock = new Object();
+    private final TokenBucket requests = new TokenBucket(REQUESTS_PER_SECOND, REQUEST_BURST);
+    private final TokenBucket mutations = new TokenBucket(MUTATIONS_PER_SECOND, MUTATION_BURST);
+
+    private int limit = -1;
+    private int remaining = -1;
+    private long resetAt;
+    private long blockedUntil;
+    private volatile long lastUsed = System.nanoTime();
+    // the callers waiting, most important first, guarded by lock
+    private final TreeSet<Waiter> waiters = new TreeSet<>();
+    private long tickets;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    RequestGovernor() {
+    }
+
+    /**
+     * @param principal identifies the credentials, see {@link ExtendedGitHubClient}
+     */
+    static RequestGovernor forPrincipal(final String principal) {
+        if (governors.size() > 256) {
+            long now = System.nanoTime();
+            governors.values().removeIf(g -> now - g.lastUsed > IDLE_NANOS && g.queueDepth.get() == 0);
+        }
+        return governors.computeIfAbsent(principal, p -> new RequestGovernor());
+    }
+
+    /**
+     * @return the governors currently tracking a set of credentials, keyed by an opaque credentials digest.
+     */
+    public static Map<String, RequestGovernor> getGovernors() {
+        return Collections.unmodifiableMap(governors);
+    }
+
+    /**
+     * Sets the priority of the GETs made by the current thread until the returned scope is closed.
+     */
+    public static Scope withPriority(final Priority p) {
+        final Priority previous = priority.get();
+        priority.set(p);
+        return () -> priority.set(previous);
+    }
+
+    static Priority currentPriority() {
+        return priority.get();
+    }
+
+    /**
+     * Marks the current thread as doing infrastructure work until the returned scope is closed, its requests wait no
+     * longer than {@link #INFRASTRUCTURE_MAX_WAIT_MILLIS}.
+     */
+    public static Scope forInfrastructure() {
+        final boolean previous = forInfrastructure.get();
+        forInfrastructure.set(true);
+        return () -> forInfrastructure.set(previous);
+    }
+
+    /**
+     * @return the context of the current thread, to {@link Context#enter() enter} on the threads doing its work.
+     */
+    public static Context currentContext() {
+        return new Context(priority.get(), forCpsVmThread.get() || CpsThread.current() != null,
+                forInfrastructure.get());
+    }
+
+    /**
+     * Blocks until a request of the given priority may be sent.
+     *
+     * @throws HeldBackException if called on the CPS VM thread, on behalf of it or on an infrastructure thread, while
+     *                           GitHub asked us to hold back for longer than it may wait.
+     */
+    void acquire(final Priority p) throws IOException {
+        if (forCpsVmThread.get() || CpsThread.current() != null) {
+            acquire(p, true);
+        } else if (forInfrastructure.get()) {
+            acquire(p, TimeUnit.MILLISECONDS.toNanos(INFRASTRUCTURE_MAX_WAIT_MILLIS), "");
+        } else {
+            acquire(p, false);
+        }
+    }
+
+    void acquire(final Priority p, final boolean cpsVmThread) throws IOException {
+        if (cpsVmThread) {
+            acquire(p, TimeUnit.MILLISECONDS.toNanos(CPS_MAX_WAIT_MILLIS), ", which the pipeline would wait out "
+                    + "with all of its branches stopped; use the githubApi step to wait on another thread");
+        } else {
+            acquire(p, TimeUnit.SECONDS.toNanos(MAX_WAIT_SECONDS), null);
+        }
+    }
+
+    /**
+     * @param heldBack why a request GitHub asked us to hold back fails after {@code maxWait}, {@code null} to send it
+     *                 anyway
+     */
+    private void acquire(final Priority p, final long maxWait, final String heldBack) throws IOException {
+        if (!ENABLED) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final long deadline = start + maxWait;
+        lastUsed = start;
+        queueDepth.incrementAndGet();
+        try {
+            synchronized (lock) {
+                final Waiter waiter = new Waiter(p, tickets++);
+                waiters.add(waiter);
+                try {
+                    while (true) {
+                        long now = System.nanoTime();
+                        long delay = delay(p, now);
+                        if (delay <= 0 && !yields(waiter, now)) {
+                            break;
+                        }
+                        // no point waiting for a hold that outlasts the wait
+                        long held = heldByGitHub(p, now);
+                        if (heldBack != null && held > 0 && held > deadline - now) {
+                            throw new HeldBackException("GitHub rate limit reached, requests are held back for "
+                                    + "another " + TimeUnit.NANOSECONDS.toSeconds(held) + "s" + heldBack,
+                                    TimeUnit.NANOSECONDS.toMillis(held));
+                        }
+                        if (now >= deadline) {
+                            LOG.debug("Gave up waiting for the GitHub rate limit after {}ms, sending {} request "
+                                    + "anyway", TimeUnit.NANOSECONDS.toMillis(maxWait), p);
+                            break;
+                        }
+                        if (delay <= 0) {
+                            // let the waiter ahead go first, it wakes this one once it went
+                            lock.notifyAll();
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(lock, delay > 0 ? Math.min(delay, deadline - now)
+                                : deadline - now);
+                    }
+                    take(p);
+                    if (remaining > 0) {
+                        remaining--;
+                    }
+                } finally {
+                    waiters.remove(waiter);
+                    lock.notifyAll();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the GitHub rate limit");
+        } finally {
+            queueDepth.decrementAndGet();
+            long waited = System.nanoTime() - start;
+            if (waited > TimeUnit.MILLISECONDS.toNanos(1)) {
+                waits.incrementAndGet();
+                waitNanos.addAndGet(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+            }
+        }
+    }
+
+    /**
+     * @return how many of at most {@code max} requests of the given priority may be sent right away, at least one.
+     */
+    int parallelism(final Priority p, final int max) {
+        if (!ENABLED) {
+            return max;
+        }
+        synchronized (lock) {
+            long now = System.nanoTime();
+            if (heldByGitHub(p, now) > 0) {
+                return 1;
+            }
+            double keep = p == Priority.BEST_EFFORT ? REQUEST_BURST * BEST_EFFORT_RESERVE : 0;
+            long budget = (long) requests.available(now, keep);
+            if (p == Priority.MUTATING) {
+                budget = Math.min(budget, (long) mutations.available(now, 0));
+            }
+            if (remaining >= 0 && resetAt - now > 0) {
+                budget = Math.min(budget, remaining - reserve(p));
+            }
+            return (int) Math.max(1, Math.min(max, budget));
+        }
+    }
+
+    // nanos GitHub asked us to wait, or its primary rate limit leaves to wait, before the request may go
+    private long heldByGitHub(final Priority p, final long now) {
+        if (blockedUntil - now > 0) {
+            return blockedUntil - now;
+        }
+        if (remaining >= 0 && resetAt - now > 0 && remaining <= reserve(p)) {
+            return resetAt - now;
+        }
+        return 0;
+    }
+
+    // part of the primary rate limit the priority leaves to the others
+    private int reserve(final Priority p) {
+        return p == Priority.BEST_EFFORT ? (int) (limit * BEST_EFFORT_RESERVE)
+                : p == Priority.CRITICAL ? CRITICAL_RESERVE
+                : 0;
+    }
+
+    // whether a waiter ahead of the given one may go now, guarded by lock
+    private boolean yields(final Waiter waiter, final long now) {
+        for (final Waiter ahead : waiters.headSet(waiter)) {
+            if (delay(ahead.priority, now) <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // nanos to wait before the request may go, or <= 0 if it may go now
+    private long delay(final Priority p, final long now) {
+        final long held = heldByGitHub(p, now);
+        if (held > 0) {
+            return held;
+        }
+        double keep = p == Priority.BEST_EFFORT ? REQUEST_BURST * BEST_EFFORT_RESERVE : 0;
+        long delay = requests.delay(now, keep);
+        if (p == Priority.MUTATING) {
+            delay = Math.max(delay, mutations.delay(now, 0));
+        }
+        return delay;
+    }
+
+    // takes the tokens a request of the given priority needs
+    private void take(final Priority p) {
+        requests.take();
+        if (p == Priority.MUTATING) {
+            mutations.take();
+        }
+    }
+
+    /**
+     * Records the rate limit state of a response.
+     *
+     * @return {@code true} if GitHub rejected the request because of a rate limit and it should be retried, the
+     *         next {@link #acquire(Priority)} waits as long as GitHub asked for.
+     */
+    boolean update(final GitHubTransport.Response response) {
+        if (!ENABLED) {
+            return false;
+        }
+        final int code = response.getStatusCode();
+        final Integer responseLimit = parseInt(response.getHeader("X-RateLimit-Limit"));
+        final Integer responseRemaining = parseInt(response.getHeader("X-RateLimit-Remaining"));
+        final Integer reset = parseInt(response.getHeader("X-RateLimit-Reset"));
+        final Integer retryAfter = parseInt(response.getHeader("Retry-After"));
+        final boolean limited = code == HttpURLConnection.HTTP_FORBIDDEN || code == 429;
+
+        synchronized (lock) {
+            long now = System.nanoTime();
+            if (responseLimit != null) {
+                limit = responseLimit;
+            }
+            if (responseRemaining != null) {
+                remaining = responseRemaining;
+            }
+            if (reset != null) {
+                resetAt = now + TimeUnit.MILLISECONDS.toNanos(reset * 1000L - System.currentTimeMillis());
+            }
+
+            boolean retry = false;
+            if (limited && retryAfter != null) {
+                blockedUntil = now + TimeUnit.SECONDS.toNanos(retryAfter);
+                retry = true;
+            } else if (limited && responseRemaining != null && responseRemaining == 0 && resetAt - now > 0) {
+                blockedUntil = resetAt;
+                retry = true;
+            }
+            if (retry) {
+                throttled.incrementAndGet();
+                LOG.info("GitHub rate limit hit (HTTP {}), pausing requests for {}s", code,
+                        TimeUnit.NANOSECONDS.toSeconds(blockedUntil - now));
+            }
+            lock.notifyAll();
+            return retry;
+        }
+    }
+
+    private static Integer parseInt(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of callers currently waiting.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return the number of requests that had to wait.
+     */
+    public long getWaitCount() {
+        return waits.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * @return the number of responses where GitHub asked us to back off.
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    public int getRemaining() {
+        synchronized (lock) {
+            return remaining;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RequestGovernor{remaining=" + getRemaining() + ", queueDepth=" + getQueueDepth()
+                + ", waits=" + getWaitCount() + ", totalWaitMillis=" + getTotalWaitMillis()
+                + ", maxWaitMillis=" + getMaxWaitMillis() + ", throttled=" + getThrottledCount() + '}';
+    }
+
+    /**
+     * A caller waiting for the budget, ordered by priority and then by when it came.
+     */
+    private static final class Waiter implements Comparable<Waiter> {
+        private final Priority priority;
+        private final long ticket;
+
+        Waiter(final Priority priority, final long ticket) {
+            this.priority = priority;
+            this.ticket = ticket;
+        }
+
+        @Override
+        public int compareTo(final Waiter other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(ticket, other.ticket);
+        }
+    }
+
+    /**
+     * Classic token bucket, guarded by the governor's lock.
+     */
+    private static final class TokenBucket {
+        private final double perNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(final double perSecond, final int capacity) {
+            this.perNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        // nanos until one token is available on top of the ones to keep
+        long delay(final long now, final double keep) {
+            double missing = 1 + keep - available(now, 0);
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / perNano);
+        }
+
+        // tokens available on top of the ones to keep
+        double available(final long now, final double keep) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * perNano);
+            refilledAt = now;
+            return tokens - keep;
+        }
+
+        void take() {
+            tokens -= 1;
+        }
+    }
+}
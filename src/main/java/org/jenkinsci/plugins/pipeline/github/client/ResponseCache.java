@@ -0,0 +1,210 @@
+package org.jenkinsci.plugins.pipeline.github.client;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of GET responses that carried an {@code ETag} or {@code Last-Modified} header.
+ *
+ * Cached responses are revalidated with {@code If-None-Match}/{@code If-Modified-Since}, GitHub answers
+ * {@code 304 Not Modified} without counting the request against the rate limit. The raw body is kept rather than
+ * the parsed object because the egit models are mutable and handed out to callers, every hit is parsed again.
+ *
+ * Entries are evicted least recently used first, once the cached bodies exceed {@code maxBytes} in total.
+ * Entries are keyed by credentials, so responses are never shared between tokens.
+ *
+ * @author Aaron Whiteside
+ */
+public class ResponseCache {
+
+    static final long MAX_BYTES = Long.getLong(ResponseCache.class.getName() + ".maxBytes", 32L * 1024 * 1024);
+    static final long MAX_ENTRY_BYTES = Long.getLong(ResponseCache.class.getName() + ".maxEntryBytes", 1024L * 1024);
+
+    private static final ResponseCache DEFAULT = new ResponseCache(MAX_BYTES, MAX_ENTRY_BYTES);
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    public ResponseCache(final long maxBytes, final long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * @return the cache shared by all clients.
+     */
+    public static ResponseCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Looks up a cached response and counts a hit or a miss.
+     *
+     * @param principal identifies the credentials the request is sent with
+     */
+    Entry get(final String principal, final URI uri, final String accept) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(new Key(principal, uri, accept));
+        }
+        (entry != null ? hits : misses).incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Caches a successful response if it can be revalidated, or drops a stale entry if it cannot.
+     */
+    void put(final String principal, final URI uri, final String accept, final GitHubTransport.Response response) {
+        Key key = new Key(principal, uri, accept);
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        boolean cacheable = (etag != null || lastModified != null) && response.getBody().length <= maxEntryBytes;
+
+        synchronized (entries) {
+            Entry previous = cacheable
+                    ? entries.put(key, new Entry(etag, lastModified, response))
+                    : entries.remove(key);
+            if (previous != null) {
+                totalBytes -= previous.size();
+            }
+            if (cacheable) {
+                totalBytes += response.getBody().length;
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the full response for a {@code 304 Not Modified}, taking the fresh headers (e.g. rate limits)
+     * from the 304 and everything else from the cache.
+     */
+    GitHubTransport.Response revalidated(final Entry entry, final GitHubTransport.Response notModifiedResponse) {
+        notModified.incrementAndGet();
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(entry.response.getHeaders());
+        headers.putAll(notModifiedResponse.getHeaders());
+        return new GitHubTransport.Response(entry.response.getUri(), entry.response.getStatusCode(), headers,
+                entry.response.getBody());
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().size();
+            it.remove();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalBytes = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getTotalBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * @return number of GETs for which a cached response existed and a conditional request was sent.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of GETs without a cached response.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of conditional requests GitHub answered with 304, i.e. served from the cache.
+     */
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCache{entries=" + size() + ", bytes=" + getTotalBytes() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", notModified=" + getNotModifiedCount() + '}';
+    }
+
+    static final class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final GitHubTransport.Response response;
+
+        private Entry(final String etag, final String lastModified, final GitHubTransport.Response response) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.response = response;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        private long size() {
+            return response.getBody().length;
+        }
+    }
+
+    private static final class Key {
+        private final String principal;
+        private final URI uri;
+        private final String accept;
+
+        private Key(final String principal, final URI uri, final String accept) {
+            this.principal = principal;
+            this.uri = uri;
+            this.accept = accept;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(principal, key.principal)
+                    && uri.equals(key.uri)
+                    && Objects.equals(accept, key.accept);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(principal, uri, accept);
+        }
+    }
+}
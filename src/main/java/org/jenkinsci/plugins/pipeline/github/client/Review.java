@@ -3,6 +3,7 @@ package org.jenkinsci.plugins.pipeline.github.client;
 import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -27,6 +28,8 @@ public class Review implements Serializable {
     private long id;
     private User user;
     private String state;
+    private Date submittedAt;
+    private String htmlUrl;
 
     public String getBody() {
         return body;
@@ -68,6 +71,24 @@ public class Review implements Serializable {
         return state;
     }
 
+    public Date getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Review setSubmittedAt(final Date submittedAt) {
+        this.submittedAt = submittedAt;
+        return this;
+    }
+
+    public String getHtmlUrl() {
+        return htmlUrl;
+    }
+
+    public Review setHtmlUrl(final String htmlUrl) {
+        this.htmlUrl = htmlUrl;
+        return this;
+    }
+
     /**
      * @param state one of APPROVED, PENDING, CHANGES_REQUESTED, DISMISSED, COMMENTED
      * @return this review
@@ -0,0 +1,78 @@
+package org.jenkinsci.plugins.pipeline.github.client;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only {@link HttpURLConnection} view of a {@link GitHubTransport.Response}.
+ *
+ * egit's {@link org.eclipse.egit.github.core.client.GitHubResponse} and rate limit tracking read headers
+ * from a {@link HttpURLConnection}, this lets them work with responses from any transport.
+ *
+ * @author Aaron Whiteside
+ */
+class TransportConnection extends HttpURLConnection {
+
+    private final GitHubTransport.Response response;
+
+    TransportConnection(final String method, final GitHubTransport.Response response) throws MalformedURLException {
+        super(toUrl(response));
+        this.response = response;
+        this.method = method;
+        this.responseCode = response.getStatusCode();
+        this.connected = true;
+    }
+
+    private static URL toUrl(final GitHubTransport.Response response) throws MalformedURLException {
+        return response.getUri().toURL();
+    }
+
+    @Override
+    public String getHeaderField(final String name) {
+        return response.getHeader(name);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return response.getHeaders();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return response.getStatusCode();
+    }
+
+    @Override
+    public String getResponseMessage() {
+        return "HTTP " + response.getStatusCode();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return response.getBodyStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return response.getStatusCode() >= 400 ? response.getBodyStream() : null;
+    }
+
+    @Override
+    public void connect() {
+        // already connected
+    }
+
+    @Override
+    public void disconnect() {
+        // nothing to release, the body has been read
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return false;
+    }
+}
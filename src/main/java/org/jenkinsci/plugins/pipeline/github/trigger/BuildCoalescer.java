@@ -0,0 +1,182 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.ParameterValue;
+import hudson.model.StringParameterValue;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.pipeline.github.PullRequestSnapshot;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges the builds triggered for a job by the same kind of trigger within a short window into one build.
+ *
+ * A bot adding five labels, or a comment edited a few times in a row, results in a single build that carries all
+ * causes. The environment variables of the last event win, the plural variables (e.g. {@code GITHUB_LABELS_ADDED})
+ * list the values of every merged event, one per line.
+ *
+ * The window is set with the {@code windowMillis} system property prefixed with this class name. Every build waits
+ * for its window to close, even when no other event comes, so the default of 0 schedules every event right away.
+ * The build carries the newest {@link PullRequestSnapshot} of the merged events.
+ *
+ * @author Aaron Whiteside
+ */
+final class BuildCoalescer {
+    private static final Logger LOG = LoggerFactory.getLogger(BuildCoalescer.class);
+
+    static final long WINDOW_MILLIS = Long.getLong(BuildCoalescer.class.getName() + ".windowMillis", 0L);
+
+    private static final Map<String, String> PLURALS;
+
+    static {
+        Map<String, String> plurals = new LinkedHashMap<>();
+        plurals.put("GITHUB_LABEL_ADDED", "GITHUB_LABELS_ADDED");
+        plurals.put("GITHUB_COMMENT", "GITHUB_COMMENTS");
+        plurals.put("GITHUB_COMMENT_AUTHOR", "GITHUB_COMMENT_AUTHORS");
+        plurals.put("GITHUB_REVIEW_COMMENT", "GITHUB_REVIEW_COMMENTS");
+        plurals.put("GITHUB_REVIEW_AUTHOR", "GITHUB_REVIEW_AUTHORS");
+        plurals.put("GITHUB_REVIEW_STATE", "GITHUB_REVIEW_STATES");
+        PLURALS = Collections.unmodifiableMap(plurals);
+    }
+
+    private static final Map<Key, Batch> pending = new ConcurrentHashMap<>();
+    private static final AtomicLong coalesced = new AtomicLong();
+
+    private BuildCoalescer() {
+        // go away
+    }
+
+    /**
+     * Schedules a build of the job, or adds the cause to a build scheduled by the same trigger type that is still
+     * waiting for its window to close.
+     */
+    static void schedule(final WorkflowJob job,
+                         final Class<?> triggerType,
+                         final Cause cause,
+                         final List<ParameterValue> values,
+                         @CheckForNull final PullRequestSnapshot snapshot) {
+        schedule(job, triggerType, cause, values, snapshot, WINDOW_MILLIS);
+    }
+
+    static void schedule(final WorkflowJob job,
+                         final Class<?> triggerType,
+                         final Cause cause,
+                         final List<ParameterValue> values,
+                         @CheckForNull final PullRequestSnapshot snapshot,
+                         final long windowMillis) {
+        if (windowMillis <= 0) {
+            scheduleBuild(job, Collections.singletonList(cause), merge(Collections.singletonList(values)), snapshot);
+            return;
+        }
+        final Key key = new Key(job.getFullName(), triggerType);
+        pending.compute(key, (k, batch) -> {
+            if (batch == null) {
+                batch = new Batch(job);
+                final Batch scheduled = batch;
+                Timer.get().schedule(() -> flush(k, scheduled), windowMillis, TimeUnit.MILLISECONDS);
+            } else {
+                coalesced.incrementAndGet();
+                LOG.debug("Coalescing {} into the pending build of job: {}", cause, job.getFullName());
+            }
+            batch.causes.add(cause);
+            batch.values.add(values);
+            if (snapshot != null && snapshot.isNewerThan(batch.snapshot)) {
+                batch.snapshot = snapshot;
+            }
+            return batch;
+        });
+    }
+
+    static long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    private static void flush(final Key key, final Batch batch) {
+        // once removed, no more events are added to the batch
+        pending.remove(key, batch);
+        scheduleBuild(batch.job, batch.causes, merge(batch.values), batch.snapshot);
+    }
+
+    private static void scheduleBuild(final WorkflowJob job,
+                                      final List<Cause> causes,
+                                      final List<ParameterValue> values,
+                                      @CheckForNull final PullRequestSnapshot snapshot) {
+        final List<Action> actions = new ArrayList<>(3);
+        actions.add(new CauseAction(causes));
+        actions.add(new GitHubEnvironmentVariablesAction(values));
+        if (snapshot != null) {
+            actions.add(snapshot);
+        }
+        job.scheduleBuild2(Jenkins.get().getQuietPeriod(), actions.toArray(new Action[0]));
+    }
+
+    static List<ParameterValue> merge(final List<List<ParameterValue>> events) {
+        final Map<String, ParameterValue> last = new LinkedHashMap<>();
+        final Map<String, List<String>> all = new LinkedHashMap<>();
+        for (final List<ParameterValue> values : events) {
+            for (final ParameterValue value : values) {
+                last.put(value.getName(), value);
+                if (PLURALS.containsKey(value.getName())) {
+                    all.computeIfAbsent(PLURALS.get(value.getName()), n -> new ArrayList<>())
+                            .add(String.valueOf(value.getValue()));
+                }
+            }
+        }
+        final List<ParameterValue> merged = new ArrayList<>(last.values());
+        all.forEach((name, list) -> merged.add(new StringParameterValue(name, String.join("\n", list))));
+        return merged;
+    }
+
+    private static final class Batch {
+        private final WorkflowJob job;
+        private final List<Cause> causes = new ArrayList<>();
+        private final List<List<ParameterValue>> values = new ArrayList<>();
+        private PullRequestSnapshot snapshot;
+
+        private Batch(final WorkflowJob job) {
+            this.job = job;
+        }
+    }
+
+    private static final class Key {
+        private final String job;
+        private final Class<?> triggerType;
+
+        private Key(final String job, final Class<?> triggerType) {
+            this.job = job;
+            this.triggerType = triggerType;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return job.equals(key.job) && triggerType == key.triggerType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(job, triggerType);
+        }
+    }
+}
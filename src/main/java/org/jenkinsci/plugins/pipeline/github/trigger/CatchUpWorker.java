@@ -0,0 +1,220 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.PageIterator;
+import org.jenkinsci.plugins.pipeline.github.GitHubHelper;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedGitHubClient;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedIssueService;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedPullRequest;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedPullRequestService;
+import org.jenkinsci.plugins.pipeline.github.client.RequestGovernor;
+import org.jenkinsci.plugins.pipeline.github.client.Review;
+import org.jenkinsci.plugins.pipeline.github.trigger.TriggerRegistry.PullRequestKey;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Replays the comments and reviews that were posted while Jenkins was down.
+ *
+ * Once Jenkins has started, the activity of every pull request with registered triggers is fetched since the last
+ * {@link EventJournal} checkpoint, comments with the {@code since} parameter and reviews a page of 100 at a time from
+ * the last page back, until one submitted before then, so a pull request usually costs one or two requests per trigger
+ * type, sent with the best effort priority of the {@link RequestGovernor}. Pull requests with webhook events left
+ * unhandled at shutdown are caught up on from when those were received. Pull requests whose triggered jobs are all
+ * disabled are skipped, and so are closed ones, which costs a request for the pull request. Everything fetched goes
+ * through the same matching as webhooks, and the journal drops what has already been handled. Label events have no
+ * incremental listing and are not replayed.
+ *
+ * The catch-up runs on a thread of its own, so it doesn't hold up the other {@link jenkins.util.Timer} tasks while it
+ * waits for the rate limit, and is stopped when Jenkins shuts down.
+ *
+ * Disabled with the {@code disabled} system property prefixed with this class name, {@code maxAgeHours} limits how
+ * far back activity is replayed.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class CatchUpWorker {
+    private static final Logger LOG = LoggerFactory.getLogger(CatchUpWorker.class);
+
+    static final boolean DISABLED = Boolean.getBoolean(CatchUpWorker.class.getName() + ".disabled");
+    static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(
+            Long.getLong(CatchUpWorker.class.getName() + ".maxAgeHours", 24L));
+    // webhook activity is journaled when it's received, and GitHub's clock differs from ours
+    static final long SKEW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static volatile ExecutorService executor;
+
+    private CatchUpWorker() {
+        // go away
+    }
+
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void schedule() {
+        if (DISABLED) {
+            return;
+        }
+        final long checkpoint = EventJournal.getPreviousCheckpoint();
+        if (checkpoint == 0) {
+            LOG.debug("Jenkins has not been running before, no GitHub activity to catch up on");
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final ExecutorService worker = Executors.newSingleThreadExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "GitHub activity catch-up"));
+        executor = worker;
+        worker.submit(() -> catchUp(checkpoint, now));
+        // the thread ends with the catch-up
+        worker.shutdown();
+    }
+
+    @Terminator
+    public static void stop() {
+        final ExecutorService worker = executor;
+        if (worker != null) {
+            worker.shutdownNow();
+            executor = null;
+        }
+    }
+
+    static void catchUp(final long checkpoint, final long now) {
+        final long start = System.nanoTime();
+        int pullRequests = 0;
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2);
+             RequestGovernor.Scope scope = RequestGovernor.withPriority(RequestGovernor.Priority.BEST_EFFORT)) {
+            for (final PullRequestKey key : TriggerRegistry.getPullRequests()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    LOG.info("Stopped catching up on GitHub activity, Jenkins is shutting down");
+                    break;
+                }
+                final Long lastSeen = EventJournal.getLastSeen(key);
+                final Long pending = EventJournal.getPending(key);
+                long from = Math.max(checkpoint, lastSeen != null ? lastSeen : 0L);
+                if (pending != null) {
+                    from = Math.min(from, pending);
+                }
+                final long since = Math.max(now - MAX_AGE_MILLIS, from - SKEW_MILLIS);
+                try {
+                    catchUp(key, since);
+                    EventJournal.caughtUp(key);
+                    pullRequests++;
+                } catch (final RuntimeException e) {
+                    LOG.warn("Unable to catch up on the GitHub activity of: {}", key, e);
+                }
+            }
+        }
+        LOG.info("Caught up on the GitHub activity of {} pull requests in {} ms", pullRequests,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void catchUp(final PullRequestKey key, final long since) {
+        final List<WorkflowJob> commentJobs = enabled(TriggerRegistry.getJobs(IssueCommentTrigger.class, key));
+        final List<WorkflowJob> reviewJobs = enabled(TriggerRegistry.getJobs(PullRequestReviewTrigger.class, key));
+        final WorkflowJob job = !commentJobs.isEmpty() ? commentJobs.get(0)
+                : !reviewJobs.isEmpty() ? reviewJobs.get(0)
+                : null;
+        if (job == null) {
+            // disabled, or label triggers only, labels have no incremental listing
+            return;
+        }
+        final ExtendedGitHubClient client = GitHubHelper.getGitHubClient(job);
+        final RepositoryId repository = RepositoryId.create(key.getOwner(), key.getName());
+        final ExtendedPullRequest pullRequest = new ExtendedPullRequestService(client)
+                .getPullRequest(repository, key.getNumber());
+        if ("closed".equals(pullRequest.getState())) {
+            LOG.debug("Not catching up on the GitHub activity of closed pull request: {}", key);
+            return;
+        }
+
+        if (!commentJobs.isEmpty()) {
+            final ExtendedIssueService issueService = new ExtendedIssueService(client);
+            final Date from = new Date(since);
+            for (final Collection<Comment> page : issueService.pageComments(repository, key.getNumber(), from)) {
+                for (final Comment comment : page) {
+                    GitHubEventSubscriber.onIssueComment(key,
+                            comment.getId(),
+                            false,
+                            comment.getUpdatedAt().getTime(),
+                            GitHubHelper.userToLogin(comment.getUser()),
+                            comment.getBody(),
+                            null);
+                }
+            }
+        }
+
+        if (!reviewJobs.isEmpty()) {
+            for (final Review review : reviewsSince(new ExtendedPullRequestService(client), repository, key, since)) {
+                final Date submittedAt = review.getSubmittedAt();
+                if (submittedAt == null || submittedAt.getTime() < since
+                        || Review.STATE_PENDING.equals(review.getState())) {
+                    continue;
+                }
+                GitHubEventSubscriber.onPullRequestReview(key,
+                        review.getId(),
+                        submittedAt.getTime(),
+                        GitHubHelper.userToLogin(review.getUser()),
+                        review.getState(),
+                        review.getBody(),
+                        null);
+            }
+        }
+    }
+
+    private static List<WorkflowJob> enabled(final List<WorkflowJob> jobs) {
+        return jobs.stream().filter(job -> !job.isDisabled()).collect(Collectors.toList());
+    }
+
+    // reviews are listed oldest first and can't be filtered by time, so the pages are read from the last one back
+    // until one has a review submitted before since, the reviews are returned oldest first
+    private static List<Review> reviewsSince(final ExtendedPullRequestService pullRequestService,
+                                             final RepositoryId repository,
+                                             final PullRequestKey key,
+                                             final long since) {
+        final PageIterator<Review> first = pullRequestService.pageReviews(repository, key.getNumber());
+        if (!first.hasNext()) {
+            return Collections.emptyList();
+        }
+        final Collection<Review> firstPage = first.next();
+        final Deque<Collection<Review>> pages = new ArrayDeque<>();
+        boolean older = false;
+        for (int number = first.getLastPage(); number > 1 && !older; number--) {
+            final PageIterator<Review> listing = pullRequestService.pageReviews(repository, key.getNumber(), number);
+            final Collection<Review> page = listing.hasNext() ? listing.next() : Collections.emptyList();
+            pages.addFirst(page);
+            older = page.stream().anyMatch(review -> isBefore(review, since));
+        }
+        if (!older) {
+            pages.addFirst(firstPage);
+        }
+        final List<Review> reviews = new ArrayList<>();
+        pages.forEach(reviews::addAll);
+        return reviews;
+    }
+
+    private static boolean isBefore(final Review review, final long since) {
+        return review.getSubmittedAt() != null && review.getSubmittedAt().getTime() < since;
+    }
+}
@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import org.jenkinsci.plugins.github.extension.GHSubscriberEvent;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the most recent webhook deliveries, so events GitHub delivers again are only handled once.
+ *
+ * Deliveries are identified by their {@code X-GitHub-Delivery} header, which redeliveries keep. When the header is
+ * not available, e.g. the event was not received over HTTP, a digest of the event type and payload is used instead.
+ *
+ * @author Aaron Whiteside
+ */
+final class DeliveryDeduplicator {
+
+    static final int MAX_DELIVERIES = Integer.getInteger(DeliveryDeduplicator.class.getName() + ".maxDeliveries",
+            10000);
+
+    private static final Map<String, Boolean> seen = new LinkedHashMap<String, Boolean>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_DELIVERIES;
+        }
+    };
+
+    private static final AtomicLong duplicates = new AtomicLong();
+
+    private DeliveryDeduplicator() {
+        // go away
+    }
+
+    /**
+     * Records the delivery of the event.
+     *
+     * @return {@code true} if the same delivery has been seen before.
+     */
+    static boolean isDuplicate(final GHSubscriberEvent event) {
+        final String id = deliveryId(event);
+        final boolean duplicate;
+        synchronized (seen) {
+            duplicate = seen.put(id, Boolean.TRUE) != null;
+        }
+        if (duplicate) {
+            duplicates.incrementAndGet();
+        }
+        return duplicate;
+    }
+
+    static long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    private static String deliveryId(final GHSubscriberEvent event) {
+        final StaplerRequest2 request = Stapler.getCurrentRequest2();
+        final String delivery = request != null ? request.getHeader("X-GitHub-Delivery") : null;
+        if (delivery != null && !delivery.isEmpty()) {
+            return delivery;
+        }
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(event.getGHEvent().name().getBytes(StandardCharsets.UTF_8));
+            digest.update(event.getPayload().getBytes(StandardCharsets.UTF_8));
+            return "sha256:" + Base64.getEncoder().encodeToString(digest.digest());
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.pipeline.github.trigger.TriggerRegistry.PullRequestKey;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append only journal of the pull request activity that went through the triggers, kept in {@code JENKINS_HOME}.
+ *
+ * Every comment and review is recorded with its id and time, so {@link CatchUpWorker} knows from when to fetch the
+ * activity of each pull request after a restart, and never replays what has already been handled. The ids are kept
+ * per pull request, the oldest are forgotten past {@link #MAX_IDS} of them, and with them any activity of the pull
+ * request up to their time, so busy pull requests don't push out the ids of others. Events that were
+ * received but not handled before Jenkins shut down are recorded as pending from the time they were received, so
+ * the catch-up reaches back to them. A checkpoint is
+ * written every minute and on shutdown, it tells how long the controller was away. The journal is rewritten with
+ * only the latest time of each pull request and the most recent ids when Jenkins starts, and by the checkpoint once
+ * it has grown past {@link #COMPACT_BYTES} and twice its size after the last rewrite, pull requests without activity
+ * for 30 days are dropped.
+ *
+ * Each line is {@code time<TAB>owner/repo/number<TAB>id}, with the id {@code pending} for an unhandled event,
+ * {@code caught-up} once they were caught up on, {@code forgotten} for the time up to which activity is known to
+ * have been handled and {@code retry:} followed by the id of an activity that was recorded but could not be handled
+ * yet, or just {@code time} for a checkpoint, times are epoch milliseconds.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class EventJournal {
+    private static final Logger LOG = LoggerFactory.getLogger(EventJournal.class);
+
+    // per pull request
+    static final int MAX_IDS = Integer.getInteger(EventJournal.class.getName() + ".maxIds", 1000);
+    static final long CHECKPOINT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    static final long COMPACT_BYTES = Long.getLong(EventJournal.class.getName() + ".compactBytes", 4L * 1024 * 1024);
+    // pull requests without activity for this long are forgotten
+    static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private static final String PENDING = "pending";
+    private static final String CAUGHT_UP = "caught-up";
+    private static final String FORGOTTEN = "forgotten";
+    private static final String RETRY = "retry:";
+
+    private static final Map<PullRequestKey, Long> lastSeen = new ConcurrentHashMap<>();
+    // the time the oldest unhandled event of a pull request was received, until it is caught up on
+    private static final Map<PullRequestKey, Long> pending = new ConcurrentHashMap<>();
+    private static final Map<PullRequestKey, Ids> seen = new ConcurrentHashMap<>();
+    private static final Object lock = new Object();
+
+    // the last checkpoint written before this start, 0 if there was none
+    private static volatile long previousCheckpoint;
+    // guarded by lock
+    private static File file;
+    private static Writer out;
+    private static Future<?> checkpoints;
+    // the size of the journal after it was last rewritten
+    private static long compactedSize;
+
+    private EventJournal() {
+        // go away
+    }
+
+    /**
+     * Records an activity of the pull request.
+     *
+     * @param id   identifies the activity, e.g. {@code comment:42}
+     * @param time when the activity happened
+     * @return {@code false} if the activity has already been recorded and must not be handled again.
+     */
+    static boolean record(final PullRequestKey key, final String id, final long time) {
+        if (!seen.computeIfAbsent(key, k -> new Ids()).add(id, time)) {
+            return false;
+        }
+        lastSeen.merge(key, time, Math::max);
+        append(time + "\t" + key + '\t' + id);
+        return true;
+    }
+
+    /**
+     * Takes back the recording of an activity that could not be handled yet, so that it is handled when it is
+     * recorded again.
+     */
+    static void retry(final PullRequestKey key, final String id) {
+        final Ids ids = seen.get(key);
+        if (ids != null && ids.remove(id)) {
+            append(System.currentTimeMillis() + "\t" + key + '\t' + RETRY + id);
+        }
+    }
+
+    /**
+     * Records that an event of the pull request was received but not handled, e.g. because Jenkins shut down first.
+     *
+     * @param time when the event was received
+     */
+    static void pending(final PullRequestKey key, final long time) {
+        pending.merge(key, time, Math::min);
+        append(time + "\t" + key + '\t' + PENDING);
+    }
+
+    /**
+     * @return when the oldest unhandled event of the pull request was received, {@code null} if there is none.
+     */
+    @CheckForNull
+    static Long getPending(final PullRequestKey key) {
+        return pending.get(key);
+    }
+
+    /**
+     * Forgets the unhandled events of the pull request once its activity has been caught up on.
+     */
+    static void caughtUp(final PullRequestKey key) {
+        if (pending.remove(key) != null) {
+            append(System.currentTimeMillis() + "\t" + key + '\t' + CAUGHT_UP);
+        }
+    }
+
+    /**
+     * @return the time of the latest activity recorded for the pull request, {@code null} if there is none.
+     */
+    @CheckForNull
+    static Long getLastSeen(final PullRequestKey key) {
+        return lastSeen.get(key);
+    }
+
+    /**
+     * @return the last time the controller was known to be running before this start, 0 if unknown.
+     */
+    static long getPreviousCheckpoint() {
+        return previousCheckpoint;
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED, before = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void load() {
+        final File journal = new File(Jenkins.get().getRootDir(), EventJournal.class.getName() + ".log");
+        long checkpoint = 0;
+        lastSeen.clear();
+        pending.clear();
+        seen.clear();
+        if (journal.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    checkpoint = Math.max(checkpoint, read(line));
+                }
+            } catch (final IOException e) {
+                LOG.warn("Unable to read the GitHub event journal: {}", journal, e);
+            }
+        }
+        previousCheckpoint = checkpoint;
+
+        synchronized (lock) {
+            file = journal;
+            try {
+                rewrite(checkpoint);
+            } catch (final IOException e) {
+                LOG.warn("Unable to write the GitHub event journal: {}", journal, e);
+            }
+            checkpoints = Timer.get().scheduleAtFixedRate(EventJournal::checkpoint,
+                    CHECKPOINT_MILLIS, CHECKPOINT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // returns the time of a checkpoint line, 0 for other lines
+    private static long read(final String line) {
+        final String[] fields = line.split("\t", -1);
+        try {
+            final long time = Long.parseLong(fields[0]);
+            if (fields.length == 1) {
+                return time;
+            }
+            if (fields.length == 3) {
+                final PullRequestKey key = PullRequestKey.parse(fields[1]);
+                if (PENDING.equals(fields[2])) {
+                    pending.merge(key, time, Math::min);
+                    return 0;
+                }
+                if (CAUGHT_UP.equals(fields[2])) {
+                    pending.remove(key);
+                    return 0;
+                }
+                if (FORGOTTEN.equals(fields[2])) {
+                    seen.computeIfAbsent(key, k -> new Ids()).forget(time);
+                    return 0;
+                }
+                if (fields[2].startsWith(RETRY)) {
+                    seen.computeIfAbsent(key, k -> new Ids()).remove(fields[2].substring(RETRY.length()));
+                    return 0;
+                }
+                lastSeen.merge(key, time, Math::max);
+                if (!fields[2].isEmpty()) {
+                    seen.computeIfAbsent(key, k -> new Ids()).add(fields[2], time);
+                }
+            }
+        } catch (final IllegalArgumentException e) {
+            // a line cut short by a crash
+            LOG.debug("Ignoring GitHub event journal line: {}", line);
+        }
+        return 0;
+    }
+
+    @Terminator(requires = WebhookDispatcher.CLOSED)
+    public static void close() {
+        synchronized (lock) {
+            if (checkpoints != null) {
+                checkpoints.cancel(false);
+                checkpoints = null;
+            }
+            checkpoint();
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (final IOException e) {
+                    LOG.debug("Unable to close the GitHub event journal: {}", file, e);
+                }
+                out = null;
+            }
+        }
+    }
+
+    static void checkpoint() {
+        append(String.valueOf(System.currentTimeMillis()));
+        compact(COMPACT_BYTES);
+    }
+
+    /**
+     * Rewrites the journal if it is larger than {@code bytes} and twice its size after the last rewrite.
+     */
+    static void compact(final long bytes) {
+        synchronized (lock) {
+            if (out == null || file.length() <= Math.max(bytes, 2 * compactedSize)) {
+                return;
+            }
+            try {
+                out.close();
+                out = null;
+                rewrite(System.currentTimeMillis());
+            } catch (final IOException e) {
+                LOG.warn("Unable to compact the GitHub event journal: {}", file, e);
+                reopen();
+            }
+        }
+    }
+
+    // guarded by lock, appends to what is there after a failed rewrite
+    private static void reopen() {
+        if (out == null) {
+            try {
+                out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            } catch (final IOException e) {
+                LOG.warn("Unable to write the GitHub event journal: {}", file, e);
+            }
+        }
+    }
+
+    private static void append(final String line) {
+        synchronized (lock) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            } catch (final IOException e) {
+                LOG.warn("Unable to write the GitHub event journal: {}", file, e);
+            }
+        }
+    }
+
+    // guarded by lock, keeps the latest time of every pull request and the most recent ids
+    private static void rewrite(final long checkpoint) throws IOException {
+        final Path path = file.toPath();
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            if (checkpoint > 0) {
+                writer.write(String.valueOf(checkpoint));
+                writer.write('\n');
+            }
+            lastSeen.values().removeIf(time -> time < checkpoint - RETENTION_MILLIS);
+            seen.keySet().retainAll(lastSeen.keySet());
+            for (final Map.Entry<PullRequestKey, Long> entry : lastSeen.entrySet()) {
+                writer.write(entry.getValue() + "\t" + entry.getKey() + "\t\n");
+            }
+            for (final Map.Entry<PullRequestKey, Long> entry : pending.entrySet()) {
+                writer.write(entry.getValue() + "\t" + entry.getKey() + '\t' + PENDING + '\n');
+            }
+            for (final Map.Entry<PullRequestKey, Ids> entry : seen.entrySet()) {
+                entry.getValue().write(entry.getKey(), writer);
+            }
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        compactedSize = Files.size(path);
+        out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    // the ids recorded for a pull request, in the order they were recorded
+    private static final class Ids {
+        private final Map<String, Long> times = new LinkedHashMap<>();
+        // activity up to this time has been handled, its ids were forgotten
+        private long forgotten;
+
+        synchronized boolean add(final String id, final long time) {
+            if (time <= forgotten || times.containsKey(id)) {
+                return false;
+            }
+            times.put(id, time);
+            for (final Iterator<Long> it = times.values().iterator(); times.size() > MAX_IDS; ) {
+                forget(it.next());
+                it.remove();
+            }
+            return true;
+        }
+
+        synchronized boolean remove(final String id) {
+            return times.remove(id) != null;
+        }
+
+        synchronized void forget(final long time) {
+            forgotten = Math.max(forgotten, time);
+        }
+
+        synchronized void write(final PullRequestKey key, final Writer writer) throws IOException {
+            if (forgotten > 0) {
+                writer.write(forgotten + "\t" + key + '\t' + FORGOTTEN + '\n');
+            }
+            for (final Map.Entry<String, Long> entry : times.entrySet()) {
+                writer.write(entry.getValue() + "\t" + key + '\t' + entry.getKey() + '\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * The few fields of a webhook payload needed to decide whether an event is of any interest.
+ *
+ * Read with a streaming parser that skips everything else, so uninteresting events are dropped without binding
+ * the whole payload, which is easily a few hundred KB for pull request events.
+ *
+ * @author Aaron Whiteside
+ */
+final class EventSummary {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private String action;
+    private String owner;
+    private String repository;
+    private int number = -1;
+
+    private EventSummary() {
+    }
+
+    /**
+     * @throws IOException if the payload is not a JSON object.
+     */
+    static EventSummary parse(final String payload) throws IOException {
+        final EventSummary summary = new EventSummary();
+        try (JsonParser parser = JSON.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Payload is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if ("action".equals(field) && value == JsonToken.VALUE_STRING) {
+                    summary.action = parser.getText();
+                } else if ("number".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    summary.number = parser.getIntValue();
+                } else if (("issue".equals(field) || "pull_request".equals(field)) && value == JsonToken.START_OBJECT) {
+                    final int nested = readNumber(parser);
+                    if (summary.number < 0) {
+                        summary.number = nested;
+                    }
+                } else if ("repository".equals(field) && value == JsonToken.START_OBJECT) {
+                    summary.readRepository(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return summary;
+    }
+
+    // reads the number of the issue or pull request object the parser is in, skipping everything else
+    private static int readNumber(final JsonParser parser) throws IOException {
+        int number = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("number".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                number = parser.getIntValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return number;
+    }
+
+    private void readRepository(final JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("name".equals(field) && value == JsonToken.VALUE_STRING) {
+                repository = parser.getText();
+            } else if ("owner".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String ownerField = parser.getCurrentName();
+                    final JsonToken ownerValue = parser.nextToken();
+                    if ("login".equals(ownerField) && ownerValue == JsonToken.VALUE_STRING) {
+                        owner = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    @CheckForNull
+    String getAction() {
+        return action;
+    }
+
+    /**
+     * @return the lower cased {@code owner/name} of the repository, or {@code null} if the payload has none.
+     */
+    @CheckForNull
+    String getRepository() {
+        return owner != null && repository != null
+                ? (owner + '/' + repository).toLowerCase(Locale.ENGLISH)
+                : null;
+    }
+
+    /**
+     * @return the key of the issue or pull request the event is about, or {@code null} if it is not about one.
+     */
+    @CheckForNull
+    TriggerRegistry.PullRequestKey getKey() {
+        return owner != null && repository != null && number >= 0
+                ? TriggerRegistry.PullRequestKey.of(owner, repository, number)
+                : null;
+    }
+
+    @Override
+    public String toString() {
+        return "EventSummary{action=" + action + ", repository=" + getRepository() + ", number=" + number + '}';
+    }
+}
@@ -1,8 +1,9 @@
 package org.jenkinsci.plugins.pipeline.github.trigger;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Extension;
-import hudson.model.CauseAction;
 import hudson.model.Item;
 import hudson.model.ParameterValue;
 import hudson.model.StringParameterValue;
@@ -12,30 +13,32 @@ import jenkins.scm.api.SCMSourceOwner;
 import org.jenkinsci.plugins.github.extension.GHEventsSubscriber;
 import org.jenkinsci.plugins.github.extension.GHSubscriberEvent;
 import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
+import org.jenkinsci.plugins.pipeline.github.CollaboratorCache;
 import org.jenkinsci.plugins.pipeline.github.GitHubHelper;
+import org.jenkinsci.plugins.pipeline.github.PullRequestSnapshot;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.kohsuke.github.GHEvent;
-import org.kohsuke.github.GHEventPayload;
-import org.kohsuke.github.GHIssueComment;
-import org.kohsuke.github.GHPullRequestReview;
-import org.kohsuke.github.GitHub;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Listens for GitHub events.
  *
- * Currently only handles IssueComment events.
+ * Handles IssueComment, PullRequest (labeled) and PullRequestReview events, asynchronously through the
+ * {@link WebhookDispatcher}. Member, Membership and Team events invalidate the {@link CollaboratorCache}. Comments
+ * and reviews are recorded in the {@link EventJournal}, so activity missed while Jenkins was down can be replayed
+ * through the same path by the {@link CatchUpWorker}.
  *
  * @author Aaron Whiteside
  */
@@ -43,6 +46,7 @@ import java.util.stream.Collectors;
 public class GitHubEventSubscriber extends GHEventsSubscriber {
 
     private static final Logger LOG = LoggerFactory.getLogger(GHEventsSubscriber.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
     @Override
     protected boolean isApplicable(@Nullable final Item project) {
@@ -67,10 +71,74 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
         return false;
     }
 
+    /**
+     * Drops uninteresting events using a cheap {@link EventSummary} of the payload, and hands the rest to the
+     * {@link WebhookDispatcher}, so the webhook is acknowledged before any GitHub API calls are made or builds
+     * are scheduled.
+     */
     @Override
     protected void onEvent(final GHSubscriberEvent event) {
         LOG.debug("Received event: {}", event.getGHEvent());
 
+        switch (event.getGHEvent()) {
+            case ISSUE_COMMENT:
+            case PULL_REQUEST:
+            case PULL_REQUEST_REVIEW:
+                final EventSummary summary;
+                try {
+                    summary = EventSummary.parse(event.getPayload());
+                } catch (final IOException e) {
+                    LOG.error("Unable to parse the payload of GHSubscriberEvent: {}", event, e);
+                    return;
+                }
+                if (isInteresting(event.getGHEvent(), summary) && !DeliveryDeduplicator.isDuplicate(event)) {
+                    final long receivedAt = System.currentTimeMillis();
+                    WebhookDispatcher.get().dispatch(summary.getRepository(),
+                            () -> handleEvent(event),
+                            () -> EventJournal.pending(summary.getKey(), receivedAt));
+                }
+                break;
+            case MEMBER:
+            case MEMBERSHIP:
+            case TEAM:
+                // cheap, and should happen before any later comment of the same repository is authorized
+                handleCollaboratorChange(event);
+                break;
+            default:
+                // no-op
+        }
+    }
+
+    private static boolean isInteresting(final GHEvent type, final EventSummary summary) {
+        final String action = summary.getAction();
+        final boolean interesting;
+        switch (type) {
+            case ISSUE_COMMENT:
+                interesting = "created".equals(action) || "edited".equals(action);
+                break;
+            case PULL_REQUEST:
+                interesting = "labeled".equals(action);
+                break;
+            case PULL_REQUEST_REVIEW:
+                interesting = "submitted".equals(action);
+                break;
+            default:
+                interesting = false;
+        }
+        if (!interesting) {
+            LOG.debug("Ignoring {} event with Action: {}", type, action);
+            return false;
+        }
+
+        final TriggerRegistry.PullRequestKey key = summary.getKey();
+        if (key == null || !TriggerRegistry.hasJobs(key)) {
+            LOG.debug("Ignoring {} event, no jobs are registered for: {}", type, key);
+            return false;
+        }
+        return true;
+    }
+
+    private void handleEvent(final GHSubscriberEvent event) {
         switch (event.getGHEvent()) {
             case ISSUE_COMMENT:
                 handleIssueComment(event);
@@ -86,6 +154,58 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
         }
     }
 
+    private void handleCollaboratorChange(final GHSubscriberEvent event) {
+        final JsonNode payload;
+        try {
+            payload = MAPPER.readTree(event.getPayload());
+        } catch (final IOException e) {
+            LOG.error("Unable to parse the payload of GHSubscriberEvent: {}", event, e);
+            CollaboratorCache.invalidateAll();
+            return;
+        }
+        final String repository = payload.path("repository").path("full_name").asText(null);
+        final String organization = payload.path("organization").path("login").asText(null);
+
+        if (repository != null) {
+            final String member = event.getGHEvent() == GHEvent.MEMBER
+                    ? payload.path("member").path("login").asText(null)
+                    : null;
+            LOG.debug("Collaborators of {} changed, member: {}", repository, member);
+            CollaboratorCache.invalidate(repository, member);
+        } else if (organization != null) {
+            LOG.debug("Teams or members of {} changed", organization);
+            CollaboratorCache.invalidateOwner(organization);
+        } else {
+            CollaboratorCache.invalidateAll();
+        }
+    }
+
+    // the payload is parsed once, the handlers and the snapshot read what they need from it
+    @CheckForNull
+    private static JsonNode payload(final GHSubscriberEvent event) {
+        try {
+            return MAPPER.readTree(event.getPayload());
+        } catch (final IOException e) {
+            LOG.error("Unable to parse the payload of GHSubscriberEvent: {}", event, e);
+            return null;
+        }
+    }
+
+    private static TriggerRegistry.PullRequestKey key(final JsonNode payload, final String field) {
+        final JsonNode repository = payload.path("repository");
+        return TriggerRegistry.PullRequestKey.of(
+                repository.path("owner").path("login").asText(),
+                repository.path("name").asText(),
+                payload.path(field).path("number").asInt());
+    }
+
+    // the pull request of the payload, for the builds to start from
+    @CheckForNull
+    private static PullRequestSnapshot snapshot(final JsonNode payload, final String field) {
+        final JsonNode pullRequest = payload.path(field);
+        return pullRequest.isObject() ? PullRequestSnapshot.of(pullRequest) : null;
+    }
+
     private void handleLabelEvent(final GHSubscriberEvent event) {
         switch (event.getType()){
             case CREATED:
@@ -94,28 +214,39 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
             default:
                 return;
         }
-        final GHEventPayload.PullRequest prEvent;
-        try {
-            prEvent = GitHub.offline()
-                    .parseEventPayload(new StringReader(event.getPayload()), GHEventPayload.PullRequest.class);
-        } catch (final IOException e) {
-            LOG.error("Unable to parse the payload of GHSubscriberEvent: {}", event, e);
+        final JsonNode prEvent = payload(event);
+        if (prEvent == null) {
             return;
         }
-        switch (prEvent.getAction()) {
+        final String action = prEvent.path("action").asText();
+        switch (action) {
             case "labeled":
                 break;
             default:
                 LOG.debug("Ignoring PR: {} event with Action: {}",
-                        prEvent.getNumber(), prEvent.getAction());
+                        prEvent.path("number").asInt(), action);
                 return;
         }
         // create key for this comment's PR
-        final String key = String.format("%s/%s/%d",
-                prEvent.getRepository().getOwnerName(),
-                prEvent.getRepository().getName(),
-                prEvent.getNumber());
-                // lookup trigger
+        final TriggerRegistry.PullRequestKey key = key(prEvent, "pull_request");
+
+        onLabelAdded(key,
+                prEvent.path("label").path("name").asText(null),
+                prEvent.path("sender").path("login").asText(null),
+                snapshot(prEvent, "pull_request"));
+    }
+
+    /**
+     * Triggers the jobs of the pull request whose {@link LabelAddedTrigger} matches the label. A job without a
+     * matching trigger is skipped, the jobs after it are still triggered.
+     *
+     * @param snapshot the pull request from the webhook payload, attached to the builds
+     */
+    static void onLabelAdded(final TriggerRegistry.PullRequestKey key,
+                             final String labelName,
+                             final String sender,
+                             @CheckForNull final PullRequestSnapshot snapshot) {
+        // lookup trigger
         final LabelAddedTrigger.DescriptorImpl triggerDescriptor = (LabelAddedTrigger.DescriptorImpl) Jenkins.get()
                 .getDescriptor(LabelAddedTrigger.class);
         if (triggerDescriptor == null) {
@@ -124,11 +255,15 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
         }
         // create values for the action if a new job is triggered afterward
         ArrayList<ParameterValue> values = new ArrayList<ParameterValue>();
-        String labelName = prEvent.getLabel().getName();
         LOG.info("Added label {} to repo {}", labelName, key);
         values.add(new StringParameterValue("GITHUB_LABEL_ADDED", String.valueOf(labelName)));
-        // lookup jobs
-        for (final WorkflowJob job : triggerDescriptor.getJobs(key)) {
+        // lookup jobs, and check all their patterns at once before looking at each trigger
+        final List<WorkflowJob> jobs = triggerDescriptor.getJobs(key);
+        if (!TriggerPattern.mayMatch(LabelAddedTrigger.class, key, jobs, labelName)) {
+            LOG.debug("Label {} matches none of the triggers of {}", labelName, key);
+            return;
+        }
+        for (final WorkflowJob job : jobs) {
             // find triggers
             final List<LabelAddedTrigger> matchingTriggers = job.getTriggersJobProperty()
                     .getTriggers()
@@ -140,21 +275,21 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
 
             if (matchingTriggers.size() == 0) {
                 LOG.debug("No labels match the ones attached to the trigger");
-                break;
+                continue;
             }
-            job.scheduleBuild2(
-                Jenkins.getInstance().getQuietPeriod(),
-                new CauseAction(
-                    new LabelAddedCause(
-                        prEvent.getSender().getLogin(),
-                        labelName
-                    )
+            BuildCoalescer.schedule(
+                job,
+                LabelAddedTrigger.class,
+                new LabelAddedCause(
+                    sender,
+                    labelName
                 ),
-                new GitHubEnvironmentVariablesAction(values)
+                values,
+                snapshot
             );
         }
     }
-    private boolean labelAddedMatches(final LabelAddedTrigger trigger,final String labelName,final WorkflowJob job ){
+    private static boolean labelAddedMatches(final LabelAddedTrigger trigger,final String labelName,final WorkflowJob job ){
         boolean matches = trigger.matchesLabel(labelName);
         if (matches) {
             LOG.debug("Job: {}, labelName: {}, the label did matched the triggerLabel: {}",
@@ -177,30 +312,57 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
         }
 
         // decode payload
-        final GHEventPayload.IssueComment issueCommentEvent;
-        try {
-            issueCommentEvent = GitHub.offline()
-                    .parseEventPayload(new StringReader(event.getPayload()), GHEventPayload.IssueComment.class);
-        } catch (final IOException e) {
-            LOG.error("Unable to parse the payload of GHSubscriberEvent: {}", event, e);
+        final JsonNode issueCommentEvent = payload(event);
+        if (issueCommentEvent == null) {
             return;
         }
-
-        switch (issueCommentEvent.getAction()) {
+        final String action = issueCommentEvent.path("action").asText();
+        final JsonNode comment = issueCommentEvent.path("comment");
+        switch (action) {
             case "created":
             case "edited":
                 break;
             default:
                 LOG.debug("Ignoring IssueComment: {} with Action: {}",
-                        issueCommentEvent.getComment(), issueCommentEvent.getAction());
+                        comment.path("id").asLong(), action);
                 return;
         }
 
         // create key for this comment's PR
-        final String key = String.format("%s/%s/%d",
-                issueCommentEvent.getRepository().getOwnerName(),
-                issueCommentEvent.getRepository().getName(),
-                issueCommentEvent.getIssue().getNumber());
+        final TriggerRegistry.PullRequestKey key = key(issueCommentEvent, "issue");
+
+        onIssueComment(key,
+                comment.path("id").asLong(),
+                "edited".equals(action),
+                event.getTimestamp(),
+                comment.path("user").path("login").asText(null),
+                comment.path("body").asText(null),
+                snapshot(issueCommentEvent, "issue"));
+    }
+
+    /**
+     * Triggers the jobs of the pull request whose {@link IssueCommentTrigger} matches the comment, unless the
+     * comment has already been handled and this isn't an edit of it. Shared by webhooks and the
+     * {@link CatchUpWorker}.
+     *
+     * Every matching trigger is authorized before any build is scheduled, if GitHub holds back the collaborator
+     * checks the comment is taken back from the {@link EventJournal} and the {@link UncheckedIOException} thrown, so
+     * that the {@link WebhookDispatcher} handles it again later.
+     *
+     * @param snapshot the pull request from the webhook payload, attached to the builds
+     */
+    static void onIssueComment(final TriggerRegistry.PullRequestKey key,
+                               final long commentId,
+                               final boolean edited,
+                               final long time,
+                               final String commentAuthor,
+                               final String body,
+                               @CheckForNull final PullRequestSnapshot snapshot) {
+        final boolean recorded = EventJournal.record(key, "comment:" + commentId, time);
+        if (!recorded && !edited) {
+            LOG.debug("IssueComment: {} of {} has already been handled", commentId, key);
+            return;
+        }
 
         // lookup trigger
         final IssueCommentTrigger.DescriptorImpl triggerDescriptor = (IssueCommentTrigger.DescriptorImpl) Jenkins.get()
@@ -213,66 +375,83 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
 
         // create values for the action if a new job is triggered afterward
         ArrayList<ParameterValue> values = new ArrayList<ParameterValue>();
-        values.add(new StringParameterValue("GITHUB_COMMENT", String.valueOf(issueCommentEvent.getComment().getBody())));
-        values.add(new StringParameterValue("GITHUB_COMMENT_AUTHOR", String.valueOf(issueCommentEvent.getComment().getUserName())));
-
-        // lookup jobs
-        for (final WorkflowJob job : triggerDescriptor.getJobs(key)) {
-            // find triggers
-            final List<IssueCommentTrigger> matchingTriggers = job.getTriggersJobProperty()
-                    .getTriggers()
-                    .stream()
-                    .filter(IssueCommentTrigger.class::isInstance)
-                    .map(IssueCommentTrigger.class::cast)
-                    .filter(t -> commentTriggerMatches(t, issueCommentEvent.getComment(), job))
-                    .collect(Collectors.toList());
+        values.add(new StringParameterValue("GITHUB_COMMENT", String.valueOf(body)));
+        values.add(new StringParameterValue("GITHUB_COMMENT_AUTHOR", String.valueOf(commentAuthor)));
 
-            // check if they have authorization
-            for (final IssueCommentTrigger matchingTrigger : matchingTriggers) {
-                String commentAuthor = issueCommentEvent.getComment().getUserName();
-                boolean authorized = isAuthorized(job, commentAuthor);
-
-                if (authorized) {
-                    job.scheduleBuild2(
-                            Jenkins.getInstance().getQuietPeriod(),
-                            new CauseAction(new IssueCommentCause(
-                                        issueCommentEvent.getComment().getUserName(),
-                                        issueCommentEvent.getComment().getBody(),
-                                        matchingTrigger.getCommentPattern())),
-                            new GitHubEnvironmentVariablesAction(values));
-
-                    LOG.info("Job: {} triggered by IssueComment: {}",
-                            job.getFullName(), issueCommentEvent.getComment());
-                } else {
-                    LOG.warn("Job: {}, IssueComment: {}, Comment Author: {} is not a collaborator, " +
-                                    "and is therefore not authorized to trigger a build.",
-                            job.getFullName(),
-                            issueCommentEvent.getComment(),
-                            commentAuthor);
+        // lookup jobs, and check all their patterns at once before looking at each trigger
+        final List<WorkflowJob> jobs = triggerDescriptor.getJobs(key);
+        if (!TriggerPattern.mayMatch(IssueCommentTrigger.class, key, jobs, body)) {
+            LOG.debug("IssueComment: {} matches none of the triggers of {}", commentId, key);
+            return;
+        }
+        final List<Runnable> builds = new ArrayList<>();
+        try {
+            for (final WorkflowJob job : jobs) {
+                // find triggers
+                final List<IssueCommentTrigger> matchingTriggers = job.getTriggersJobProperty()
+                        .getTriggers()
+                        .stream()
+                        .filter(IssueCommentTrigger.class::isInstance)
+                        .map(IssueCommentTrigger.class::cast)
+                        .filter(t -> commentTriggerMatches(t, commentId, body, job))
+                        .collect(Collectors.toList());
+
+                // check if they have authorization
+                for (final IssueCommentTrigger matchingTrigger : matchingTriggers) {
+                    boolean authorized = isAuthorized(job, commentAuthor);
+
+                    if (authorized) {
+                        builds.add(() -> {
+                            BuildCoalescer.schedule(
+                                    job,
+                                    IssueCommentTrigger.class,
+                                    new IssueCommentCause(
+                                                commentAuthor,
+                                                body,
+                                                matchingTrigger.getCommentPattern()),
+                                    values,
+                                    snapshot);
+
+                            LOG.info("Job: {} triggered by IssueComment: {}",
+                                    job.getFullName(), commentId);
+                        });
+                    } else {
+                        LOG.warn("Job: {}, IssueComment: {}, Comment Author: {} is not a collaborator, " +
+                                        "and is therefore not authorized to trigger a build.",
+                                job.getFullName(),
+                                commentId,
+                                commentAuthor);
+                    }
                 }
             }
+        } catch (final UncheckedIOException e) {
+            if (recorded) {
+                EventJournal.retry(key, "comment:" + commentId);
+            }
+            throw e;
         }
+        builds.forEach(Runnable::run);
     }
 
-    private boolean isAuthorized(final WorkflowJob job, final String commentAuthor) {
+    private static boolean isAuthorized(final WorkflowJob job, final String commentAuthor) {
         return GitHubHelper.isAuthorized(job, commentAuthor);
     }
 
-    private boolean commentTriggerMatches(final IssueCommentTrigger trigger,
-                                   final GHIssueComment issueComment,
-                                   final WorkflowJob job) {
-        if (trigger.matchesComment(issueComment.getBody())) {
+    private static boolean commentTriggerMatches(final IssueCommentTrigger trigger,
+                                                 final long commentId,
+                                                 final String body,
+                                                 final WorkflowJob job) {
+        if (trigger.matchesComment(body)) {
             LOG.debug("Job: {}, IssueComment: {} matched Pattern: {}",
-                    job.getFullName(), issueComment, trigger.getCommentPattern());
+                    job.getFullName(), commentId, trigger.getCommentPattern());
             return true;
         }
         LOG.debug("Job: {}, IssueComment: {}, the comment did not match Pattern: {}",
-                job.getFullName(), issueComment, trigger.getCommentPattern());
+                job.getFullName(), commentId, trigger.getCommentPattern());
     
         return false;
     }
 
-    @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
     private void handlePullRequestReview(final GHSubscriberEvent event) {
         // we only care about created or updated events
         switch (event.getType()) {
@@ -284,28 +463,54 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
                 return;
         }
         // decode payload
-        final GHEventPayload.PullRequestReview pullRequestReview;
-        try {
-            pullRequestReview = GitHub.offline()
-                    .parseEventPayload(new StringReader(event.getPayload()), GHEventPayload.PullRequestReview.class);
-        } catch (final IOException e) {
-            LOG.error("Unable to parse the payload of GHSubscriberEvent: {}", event, e);
+        final JsonNode pullRequestReview = payload(event);
+        if (pullRequestReview == null) {
             return;
         }
-
-        switch (pullRequestReview.getAction()) {
+        final String action = pullRequestReview.path("action").asText();
+        final JsonNode review = pullRequestReview.path("review");
+        switch (action) {
             case "submitted":
                 break;
             default:
                 LOG.debug("Ignoring pullRequestReview: {} with Action: {}",
-                pullRequestReview.getReview(), pullRequestReview.getAction());
+                review.path("id").asLong(), action);
                 return;
         }
 
-        final String key = String.format("%s/%s/%d",
-                pullRequestReview.getRepository().getOwnerName(),
-                pullRequestReview.getRepository().getName(),
-                pullRequestReview.getPullRequest().getNumber());
+        final TriggerRegistry.PullRequestKey key = key(pullRequestReview, "pull_request");
+
+        onPullRequestReview(key,
+                review.path("id").asLong(),
+                event.getTimestamp(),
+                pullRequestReview.path("sender").path("login").asText(null),
+                // the names of GHPullRequestReviewState, as before
+                review.path("state").asText().toUpperCase(Locale.ENGLISH),
+                review.path("body").asText(null),
+                snapshot(pullRequestReview, "pull_request"));
+    }
+
+    /**
+     * Triggers the jobs of the pull request whose {@link PullRequestReviewTrigger} matches the state of the review,
+     * unless the review has already been handled. Shared by webhooks and the {@link CatchUpWorker}.
+     *
+     * Like {@link #onIssueComment}, every matching trigger is authorized before any build is scheduled, and the
+     * review is taken back from the {@link EventJournal} if GitHub holds back the collaborator checks.
+     *
+     * @param state    the state of the review, e.g. {@code APPROVED}
+     * @param snapshot the pull request from the webhook payload, attached to the builds
+     */
+    static void onPullRequestReview(final TriggerRegistry.PullRequestKey key,
+                                    final long reviewId,
+                                    final long time,
+                                    final String reviewer,
+                                    final String state,
+                                    final String body,
+                                    @CheckForNull final PullRequestSnapshot snapshot) {
+        if (!EventJournal.record(key, "review:" + reviewId, time)) {
+            LOG.debug("PullRequestReview: {} of {} has already been handled", reviewId, key);
+            return;
+        }
 
         // lookup trigger
         final PullRequestReviewTrigger.DescriptorImpl triggerDescriptor = (PullRequestReviewTrigger.DescriptorImpl) Jenkins.get()
@@ -315,63 +520,73 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
             LOG.error("Unable to find the PullRequestReview Trigger, this shouldn't happen.");
             return;
         }
-        String reviewer = pullRequestReview.getSender().getLogin();
 
         // create values for the action if a new job is triggered afterward
         ArrayList<ParameterValue> reviewEnvVars = new ArrayList<ParameterValue>();
-        reviewEnvVars.add(new StringParameterValue("GITHUB_REVIEW_COMMENT", String.valueOf(pullRequestReview.getReview().getBody())));
+        reviewEnvVars.add(new StringParameterValue("GITHUB_REVIEW_COMMENT", String.valueOf(body)));
         reviewEnvVars.add(new StringParameterValue("GITHUB_REVIEW_AUTHOR", reviewer));
-        reviewEnvVars.add(new StringParameterValue("GITHUB_REVIEW_STATE", pullRequestReview.getReview().getState().name()));
+        reviewEnvVars.add(new StringParameterValue("GITHUB_REVIEW_STATE", state));
 
-
-        for (final WorkflowJob job : triggerDescriptor.getJobs(key)) {
-            // find triggers
-            final List<PullRequestReviewTrigger> matchingTriggers = job.getTriggersJobProperty()
-                    .getTriggers()
-                    .stream()
-                    .filter(PullRequestReviewTrigger.class::isInstance)
-                    .map(PullRequestReviewTrigger.class::cast)
-                    .filter(t -> commentTriggerMatches(t, pullRequestReview.getReview(), job))
-                    .collect(Collectors.toList());
-
-            // check if they have authorization
-            for (final PullRequestReviewTrigger matchingTrigger : matchingTriggers) {
-                boolean authorized = isAuthorized(job, reviewer);
-
-                if (authorized) {
-                    job.scheduleBuild2(
-                            Jenkins.get().getQuietPeriod(),
-                            new CauseAction(new PullRequestReviewCause(
-                                        reviewer,
-                                        pullRequestReview.getReview().getState().name().toLowerCase(),
-                                        pullRequestReview.getReview().getBody(),
-                                        matchingTrigger.getReviewStates())),
-                            new GitHubEnvironmentVariablesAction(reviewEnvVars));
-
-                    LOG.info("Job: {} triggered by PullRequestReview: {}",
-                            job.getFullName(), pullRequestReview.getReview());
-                } else {
-                    LOG.warn("Job: {}, PullRequestReview: {}, Reviewer: {} is not a collaborator, " +
-                                    "and is therefore not authorized to trigger a build.",
-                            job.getFullName(),
-                            pullRequestReview.getReview(),
-                            reviewer);
+        final String lowerCaseState = state.toLowerCase(Locale.ENGLISH);
+        final List<Runnable> builds = new ArrayList<>();
+        try {
+            for (final WorkflowJob job : triggerDescriptor.getJobs(key)) {
+                // find triggers
+                final List<PullRequestReviewTrigger> matchingTriggers = job.getTriggersJobProperty()
+                        .getTriggers()
+                        .stream()
+                        .filter(PullRequestReviewTrigger.class::isInstance)
+                        .map(PullRequestReviewTrigger.class::cast)
+                        .filter(t -> reviewTriggerMatches(t, reviewId, lowerCaseState, job))
+                        .collect(Collectors.toList());
+
+                // check if they have authorization
+                for (final PullRequestReviewTrigger matchingTrigger : matchingTriggers) {
+                    boolean authorized = isAuthorized(job, reviewer);
+
+                    if (authorized) {
+                        builds.add(() -> {
+                            BuildCoalescer.schedule(
+                                    job,
+                                    PullRequestReviewTrigger.class,
+                                    new PullRequestReviewCause(
+                                                reviewer,
+                                                lowerCaseState,
+                                                body,
+                                                matchingTrigger.getReviewStates()),
+                                    reviewEnvVars,
+                                    snapshot);
+
+                            LOG.info("Job: {} triggered by PullRequestReview: {}",
+                                    job.getFullName(), reviewId);
+                        });
+                    } else {
+                        LOG.warn("Job: {}, PullRequestReview: {}, Reviewer: {} is not a collaborator, " +
+                                        "and is therefore not authorized to trigger a build.",
+                                job.getFullName(),
+                                reviewId,
+                                reviewer);
+                    }
                 }
             }
+        } catch (final UncheckedIOException e) {
+            EventJournal.retry(key, "review:" + reviewId);
+            throw e;
         }
+        builds.forEach(Runnable::run);
     }
 
-    @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
-    private boolean commentTriggerMatches(final PullRequestReviewTrigger trigger,
-                                   final GHPullRequestReview review,
-                                   final WorkflowJob job) {
-        if (trigger.matches(review.getState().name().toLowerCase())) {
+    private static boolean reviewTriggerMatches(final PullRequestReviewTrigger trigger,
+                                                final long reviewId,
+                                                final String state,
+                                                final WorkflowJob job) {
+        if (trigger.matches(state)) {
             LOG.debug("Job: {}, PullRequestReview: {} matched one of the states: {}",
-                    job.getFullName(), review, trigger.getReviewStates());
+                    job.getFullName(), reviewId, trigger.getReviewStates());
             return true;
         } else {
             LOG.debug("Job: {}, PullRequestReview: {}, state did not match the states: {}",
-                    job.getFullName(), review, trigger.getReviewStates());
+                    job.getFullName(), reviewId, trigger.getReviewStates());
         }
         return false;
     }
@@ -384,6 +599,10 @@ public class GitHubEventSubscriber extends GHEventsSubscriber {
         events.add(GHEvent.ISSUE_COMMENT);
         events.add(GHEvent.PULL_REQUEST);
         events.add(GHEvent.PULL_REQUEST_REVIEW);
+        // invalidate cached collaborator checks
+        events.add(GHEvent.MEMBER);
+        events.add(GHEvent.MEMBERSHIP);
+        events.add(GHEvent.TEAM);
         return Collections.unmodifiableSet(events);
     }
 }
@@ -3,24 +3,16 @@ package org.jenkinsci.plugins.pipeline.github.trigger;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Item;
-import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
-import jenkins.scm.api.SCMHead;
-import jenkins.scm.api.SCMSource;
 import org.jenkinsci.Symbol;
-import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
-import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
 
 /**
  * An IssueCommentTrigger, to be used from pipeline scripts only.
@@ -30,81 +22,51 @@ import java.util.regex.Pattern;
  * @author Aaron Whiteside
  * @see org.jenkinsci.plugins.workflow.job.properties.PipelineTriggersJobProperty
  */
-public class IssueCommentTrigger extends Trigger<WorkflowJob> {
+public class IssueCommentTrigger extends PullRequestTrigger implements TriggerPattern.Source {
     private static final Logger LOG = LoggerFactory.getLogger(IssueCommentTrigger.class);
 
     private final String commentPattern;
+    // compiled once, rebuilt lazily after deserialization
+    private transient volatile TriggerPattern triggerPattern;
 
     @DataBoundConstructor
     public IssueCommentTrigger(@NonNull final String commentPattern) {
         this.commentPattern = commentPattern;
+        this.triggerPattern = new TriggerPattern(commentPattern);
     }
 
-    @Override
-    public void start(final WorkflowJob project, final boolean newInstance) {
-        super.start(project, newInstance);
-        // we only care about pull requests
-        if (SCMHead.HeadByItem.findHead(project) instanceof PullRequestSCMHead) {
-            final String key = getKey(project);
-            if (key != null) {
-                DescriptorImpl.jobs
-                        .computeIfAbsent(key, k -> new HashSet<>())
-                        .add(project);
-            }
-        }
+    public String getCommentPattern() {
+        return commentPattern;
     }
 
     @Override
-    public void stop() {
-        if (SCMHead.HeadByItem.findHead(job) instanceof PullRequestSCMHead) {
-            final String key = getKey(job);
-            if (key != null) {
-                DescriptorImpl.jobs.getOrDefault(key, Collections.emptySet())
-                        .remove(job);
-            }
-        }
-    }
-
-    private String getKey(final WorkflowJob project) {
-        final SCMSource scmSource = SCMSource.SourceByItem.findSource(project);
-        if (!(scmSource instanceof GitHubSCMSource)) {
-            LOG.warn("Job: {} has a non-GitHub SCM source: {}, skipping trigger registration",
-                    project.getFullName(), scmSource != null ? scmSource.getClass().getName() : "null");
-            return null;
-        }
-        final SCMHead scmHead = SCMHead.HeadByItem.findHead(project);
-        if (!(scmHead instanceof PullRequestSCMHead)) {
-            return null;
+    public TriggerPattern getTriggerPattern() {
+        TriggerPattern p = triggerPattern;
+        if (p == null) {
+            p = new TriggerPattern(commentPattern);
+            triggerPattern = p;
         }
-
-        return String.format("%s/%s/%d",
-                ((GitHubSCMSource) scmSource).getRepoOwner(),
-                ((GitHubSCMSource) scmSource).getRepository(),
-                ((PullRequestSCMHead) scmHead).getNumber()).toLowerCase();
-    }
-
-    public String getCommentPattern() {
-        return commentPattern;
+        return p;
     }
 
     boolean matchesComment(final String comment) {
-        return Pattern.compile(commentPattern)
-                .matcher(comment)
-                .matches();
+        return getTriggerPattern().matches(comment);
     }
 
     @Symbol("issueCommentTrigger")
     @Extension
     public static class DescriptorImpl extends TriggerDescriptor {
-        private transient static final Map<String, Set<WorkflowJob>> jobs = new ConcurrentHashMap<>();
-
         @Override
         public boolean isApplicable(final Item item) {
             return false; // this is not configurable from the ui.
         }
 
         public Set<WorkflowJob> getJobs(final String key) {
-            return jobs.getOrDefault(key.toLowerCase(), Collections.emptySet());
+            return new LinkedHashSet<>(getJobs(TriggerRegistry.PullRequestKey.parse(key)));
+        }
+
+        public List<WorkflowJob> getJobs(final TriggerRegistry.PullRequestKey key) {
+            return TriggerRegistry.getJobs(IssueCommentTrigger.class, key);
         }
     }
 
@@ -3,13 +3,8 @@ package org.jenkinsci.plugins.pipeline.github.trigger;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Item;
-import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
-import jenkins.scm.api.SCMHead;
-import jenkins.scm.api.SCMSource;
 import org.jenkinsci.Symbol;
-import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
-import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -17,13 +12,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
 
 /**
  * An PullRequestApprovalTrigger, to be used from pipeline scripts only.
@@ -33,87 +25,52 @@ import java.util.regex.Pattern;
  * @author Aaron Walker
  * @see org.jenkinsci.plugins.workflow.job.properties.PipelineTriggersJobProperty
  */
-public class PullRequestReviewTrigger  extends Trigger<WorkflowJob> {
+public class PullRequestReviewTrigger extends PullRequestTrigger {
   private static final Logger LOG = LoggerFactory.getLogger(PullRequestReviewTrigger.class);
 
   private String[] reviewStates = null;
+  // built once, rebuilt lazily after deserialization
+  private transient volatile Set<String> reviewStateSet;
 
   @DataBoundConstructor
   public PullRequestReviewTrigger() {}
 
   public String[] getReviewStates() {
-      return Arrays.copyOf(reviewStates, reviewStates.length);
+      return reviewStates == null ? null : Arrays.copyOf(reviewStates, reviewStates.length);
   }
 
   @DataBoundSetter
   public void setReviewStates(@NonNull final String [] reviewStates) {
       this.reviewStates = Arrays.copyOf(reviewStates, reviewStates.length);
-  }
-
-  @Override
-  public void start(final WorkflowJob project, final boolean newInstance) {
-      super.start(project, newInstance);
-      // we only care about pull requests
-      if (SCMHead.HeadByItem.findHead(project) instanceof PullRequestSCMHead) {
-          final String key = getKey(project);
-          if (key != null) {
-              DescriptorImpl.jobs
-                      .computeIfAbsent(key, k -> new HashSet<>())
-                      .add(project);
-          }
-      }
-  }
-
-  @Override
-  public void stop() {
-      if (SCMHead.HeadByItem.findHead(job) instanceof PullRequestSCMHead) {
-          final String key = getKey(job);
-          if (key != null) {
-              DescriptorImpl.jobs.getOrDefault(key, Collections.emptySet())
-                      .remove(job);
-          }
-      }
-  }
-
-  private String getKey(final WorkflowJob project) {
-      final SCMSource scmSource = SCMSource.SourceByItem.findSource(project);
-      if (!(scmSource instanceof GitHubSCMSource)) {
-          LOG.warn("Job: {} has a non-GitHub SCM source: {}, skipping trigger registration",
-                  project.getFullName(), scmSource != null ? scmSource.getClass().getName() : "null");
-          return null;
-      }
-      final SCMHead scmHead = SCMHead.HeadByItem.findHead(project);
-      if (!(scmHead instanceof PullRequestSCMHead)) {
-          return null;
-      }
-
-      return String.format("%s/%s/%d",
-              ((GitHubSCMSource) scmSource).getRepoOwner(),
-              ((GitHubSCMSource) scmSource).getRepository(),
-              ((PullRequestSCMHead) scmHead).getNumber()).toLowerCase();
+      this.reviewStateSet = null;
   }
 
   boolean matches(final String reviewState) {
     if(reviewStates == null) {
         return true; //defaults to trigger on any review state
-    } else {
-        List<String> list = Arrays.asList(reviewStates);
-        return list.contains(reviewState);
     }
+    Set<String> states = reviewStateSet;
+    if (states == null) {
+        states = new HashSet<>(Arrays.asList(reviewStates));
+        reviewStateSet = states;
+    }
+    return states.contains(reviewState);
   }
 
   @Symbol("pullRequestReview")
   @Extension
   public static class DescriptorImpl extends TriggerDescriptor {
-      private transient static final Map<String, Set<WorkflowJob>> jobs = new ConcurrentHashMap<>();
-
       @Override
       public boolean isApplicable(final Item item) {
           return false; // this is not configurable from the ui.
       }
 
       public Set<WorkflowJob> getJobs(final String key) {
-          return jobs.getOrDefault(key.toLowerCase(), Collections.emptySet());
+          return new LinkedHashSet<>(getJobs(TriggerRegistry.PullRequestKey.parse(key)));
+      }
+
+      public List<WorkflowJob> getJobs(final TriggerRegistry.PullRequestKey key) {
+          return TriggerRegistry.getJobs(PullRequestReviewTrigger.class, key);
       }
   }
 }
@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.triggers.Trigger;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+
+/**
+ * Base class of the triggers that fire on events of the pull request their job builds.
+ *
+ * Starting the trigger registers the job with the {@link TriggerRegistry}, while Jenkins is starting up this is
+ * left to {@link StartupRegistration}, which registers all jobs in one pass once they are loaded.
+ *
+ * @author Aaron Whiteside
+ */
+public abstract class PullRequestTrigger extends Trigger<WorkflowJob> {
+
+    private transient volatile TriggerRegistry.PullRequestKey key;
+
+    @Override
+    public void start(final WorkflowJob project, final boolean newInstance) {
+        super.start(project, newInstance);
+        // we only care about pull requests, of() returns null for other jobs
+        if (!StartupRegistration.defer(project)) {
+            register(TriggerRegistry.PullRequestKey.of(project));
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (job != null) {
+            TriggerRegistry.unregister(getClass(), key, job);
+        }
+        key = null;
+    }
+
+    /**
+     * Registers the started job under the given key, which has been resolved for it.
+     */
+    void register(@CheckForNull final TriggerRegistry.PullRequestKey key) {
+        this.key = key;
+        if (key != null && job != null) {
+            TriggerRegistry.register(getClass(), key, job);
+        }
+    }
+
+    /**
+     * @return the key the job is registered under, {@code null} if it isn't registered.
+     */
+    @CheckForNull
+    TriggerRegistry.PullRequestKey getPullRequestKey() {
+        return key;
+    }
+}
@@ -0,0 +1,149 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.ItemGroup;
+import hudson.triggers.Trigger;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.properties.PipelineTriggersJobProperty;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registers the triggers of all jobs in one pass after they have been loaded at startup.
+ *
+ * While jobs are being loaded, {@link PullRequestTrigger#start} only records its job. Once all jobs are loaded the
+ * pull request of every recorded job is resolved once, all of its triggers are registered, and folders are worked
+ * on in parallel. Registrations restored by {@link TriggerRegistrySnapshot} that no job claimed are dropped
+ * afterwards. Disabled with the {@code disabled} system property prefixed with this class name.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class StartupRegistration {
+    private static final Logger LOG = LoggerFactory.getLogger(StartupRegistration.class);
+
+    static final boolean DISABLED = Boolean.getBoolean(StartupRegistration.class.getName() + ".disabled");
+    static final int THREADS = Integer.getInteger(StartupRegistration.class.getName() + ".threads",
+            Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())));
+
+    private static final Set<WorkflowJob> pending = ConcurrentHashMap.newKeySet();
+    private static volatile boolean done;
+
+    private StartupRegistration() {
+        // go away
+    }
+
+    /**
+     * @return {@code true} if Jenkins is still loading jobs and the job will be registered later.
+     */
+    static boolean defer(final WorkflowJob job) {
+        if (done || DISABLED) {
+            return false;
+        }
+        final Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null || jenkins.getInitLevel().compareTo(InitMilestone.JOB_LOADED) >= 0) {
+            return false;
+        }
+        pending.add(job);
+        if (done) {
+            // raced with registerPending(), register it directly, registering twice is harmless
+            pending.remove(job);
+            return false;
+        }
+        return true;
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED, before = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void registerPending() throws InterruptedException {
+        done = true;
+
+        final Map<ItemGroup<?>, List<WorkflowJob>> byFolder = new HashMap<>();
+        for (final Iterator<WorkflowJob> it = pending.iterator(); it.hasNext(); ) {
+            final WorkflowJob job = it.next();
+            it.remove();
+            byFolder.computeIfAbsent(job.getParent(), f -> new ArrayList<>()).add(job);
+        }
+        if (!byFolder.isEmpty()) {
+            registerAll(byFolder);
+        }
+        // registrations restored from the snapshot whose job didn't register itself
+        TriggerRegistry.dropRestored();
+    }
+
+    private static void registerAll(final Map<ItemGroup<?>, List<WorkflowJob>> byFolder) throws InterruptedException {
+        final long start = System.nanoTime();
+        final AtomicInteger jobs = new AtomicInteger();
+        final AtomicInteger registered = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS,
+                new NamingThreadFactory(new DaemonThreadFactory(), "GitHub trigger registration"));
+        try {
+            final List<Future<?>> folders = new ArrayList<>(byFolder.size());
+            for (final List<WorkflowJob> folder : byFolder.values()) {
+                folders.add(executor.submit(() -> {
+                    for (final WorkflowJob job : folder) {
+                        jobs.incrementAndGet();
+                        try {
+                            registered.addAndGet(register(job));
+                        } catch (final RuntimeException e) {
+                            LOG.warn("Unable to register the GitHub triggers of job: {}", job.getFullName(), e);
+                        }
+                    }
+                }));
+            }
+            for (final Future<?> folder : folders) {
+                try {
+                    folder.get();
+                } catch (final ExecutionException e) {
+                    LOG.warn("Unable to register GitHub triggers", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOG.info("Registered {} GitHub triggers of {} jobs in {} folders in {} ms", registered.get(), jobs.get(),
+                byFolder.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // resolves the job's pull request once for all of its triggers
+    private static int register(final WorkflowJob job) {
+        final PipelineTriggersJobProperty property = job.getTriggersJobProperty();
+        if (property == null) {
+            return 0;
+        }
+        TriggerRegistry.PullRequestKey key = null;
+        boolean resolved = false;
+        int count = 0;
+        for (final Trigger<?> trigger : property.getTriggers()) {
+            if (trigger instanceof PullRequestTrigger) {
+                if (!resolved) {
+                    key = TriggerRegistry.PullRequestKey.of(job);
+                    resolved = true;
+                }
+                ((PullRequestTrigger) trigger).register(key);
+                count += key != null ? 1 : 0;
+            }
+        }
+        return count;
+    }
+}
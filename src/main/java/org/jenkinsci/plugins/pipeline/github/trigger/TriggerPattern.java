@@ -0,0 +1,184 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import hudson.triggers.Trigger;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A trigger's regular expression, compiled at most once.
+ *
+ * Patterns without any regular expression syntax are compared with {@link String#equals(Object)} and never compiled.
+ * {@link #mayMatch(Class, TriggerRegistry.PullRequestKey, List, String)} checks the patterns of all jobs of a pull
+ * request in one pass, so events that match none of them are dropped without evaluating every trigger.
+ *
+ * @author Aaron Whiteside
+ */
+final class TriggerPattern {
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final Pattern BACKREFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+    private static final int MAX_COMBINED = 10000;
+
+    private static final Map<CombinedKey, Combined> combined = new ConcurrentHashMap<>();
+
+    /**
+     * Implemented by triggers whose events are matched against a pattern.
+     */
+    interface Source {
+        TriggerPattern getTriggerPattern();
+    }
+
+    private final String pattern;
+    private final boolean literal;
+    private volatile Pattern compiled;
+
+    TriggerPattern(final String pattern) {
+        this.pattern = pattern;
+        this.literal = isLiteral(pattern);
+    }
+
+    private static boolean isLiteral(final String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (METACHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    boolean isLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return whether the whole input matches, like {@link java.util.regex.Matcher#matches()}.
+     */
+    boolean matches(final String input) {
+        if (literal) {
+            return pattern.equals(input);
+        }
+        return compiled().matcher(input).matches();
+    }
+
+    private Pattern compiled() {
+        Pattern p = compiled;
+        if (p == null) {
+            p = Pattern.compile(pattern);
+            compiled = p;
+        }
+        return p;
+    }
+
+    /**
+     * Checks the input against the patterns of all triggers of the given type of the jobs at once.
+     *
+     * @return {@code false} if none of the triggers can match, {@code true} if some may.
+     */
+    static boolean mayMatch(final Class<? extends Trigger<?>> type,
+                            final TriggerRegistry.PullRequestKey key,
+                            final List<WorkflowJob> jobs,
+                            final String input) {
+        final Set<String> literals = new HashSet<>();
+        final List<String> regexes = new ArrayList<>();
+        for (final WorkflowJob job : jobs) {
+            for (final Trigger<?> trigger : job.getTriggersJobProperty().getTriggers()) {
+                if (type.isInstance(trigger) && trigger instanceof Source) {
+                    final TriggerPattern p = ((Source) trigger).getTriggerPattern();
+                    if (p.literal) {
+                        literals.add(p.pattern);
+                    } else if (BACKREFERENCE.matcher(p.pattern).find()) {
+                        // group numbers change when combined, can't be checked in one pass
+                        return true;
+                    } else {
+                        regexes.add(p.pattern);
+                    }
+                }
+            }
+        }
+        if (literals.contains(input)) {
+            return true;
+        }
+        if (regexes.isEmpty()) {
+            return false;
+        }
+
+        final CombinedKey combinedKey = new CombinedKey(type, key);
+        Combined c = combined.get(combinedKey);
+        if (c == null || !c.sources.equals(regexes)) {
+            if (combined.size() > MAX_COMBINED) {
+                combined.clear();
+            }
+            c = new Combined(regexes);
+            combined.put(combinedKey, c);
+        }
+        return c.pattern == null || c.pattern.matcher(input).matches();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    private static final class Combined {
+        private final List<String> sources;
+        // null if one of the sources doesn't compile, the triggers are then matched one by one
+        private final Pattern pattern;
+
+        private Combined(final List<String> sources) {
+            this.sources = sources;
+            final StringBuilder alternation = new StringBuilder();
+            for (final String source : sources) {
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(source).append(')');
+            }
+            Pattern p;
+            try {
+                p = Pattern.compile(alternation.toString());
+            } catch (final PatternSyntaxException e) {
+                p = null;
+            }
+            this.pattern = p;
+        }
+    }
+
+    private static final class CombinedKey {
+        private final Class<?> type;
+        private final TriggerRegistry.PullRequestKey key;
+
+        private CombinedKey(final Class<?> type, final TriggerRegistry.PullRequestKey key) {
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CombinedKey)) {
+                return false;
+            }
+            CombinedKey that = (CombinedKey) o;
+            return type == that.type && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + key.hashCode();
+        }
+    }
+}
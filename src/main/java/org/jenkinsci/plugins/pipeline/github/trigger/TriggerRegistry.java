@@ -0,0 +1,411 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.triggers.Trigger;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMSource;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.properties.PipelineTriggersJobProperty;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps pull requests to the jobs that have one of our triggers registered for them.
+ *
+ * Every trigger type has its own index by pull request, plus a shared index of the pull requests registered for
+ * each repository. The values are immutable and replaced atomically on registration, so webhook lookups never lock
+ * and never see a partially updated set while jobs are reloaded. Jobs are only weakly referenced, references to
+ * jobs that were dropped without stopping their triggers are compacted on lookup, and empty entries are removed.
+ *
+ * Changes are recorded in the {@link TriggerRegistrySnapshot}, which restores the registrations on the next start
+ * before any job has been loaded.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class TriggerRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(TriggerRegistry.class);
+
+    private static final JobRef[] NO_JOBS = new JobRef[0];
+
+    private static final Map<Class<?>, Map<PullRequestKey, JobRef[]>> byPullRequest = new ConcurrentHashMap<>();
+    private static final Map<String, Map<PullRequestKey, Integer>> byRepository = new ConcurrentHashMap<>();
+
+    private TriggerRegistry() {
+        // go away
+    }
+
+    /**
+     * Registers the job for the given pull request, replacing an earlier instance of the same job.
+     */
+    static void register(@NonNull final Class<? extends Trigger<?>> type,
+                         @NonNull final PullRequestKey key,
+                         @NonNull final WorkflowJob job) {
+        final String fullName = job.getFullName();
+        index(type).compute(key, (k, refs) -> {
+            final JobRef[] current = refs == null ? NO_JOBS : refs;
+            final List<JobRef> updated = new ArrayList<>(current.length + 1);
+            boolean known = false;
+            for (final JobRef ref : current) {
+                if (ref.fullName.equals(fullName)) {
+                    // a reloaded job replaces its previous instance
+                    known = true;
+                } else if (ref.isLive()) {
+                    updated.add(ref);
+                } else {
+                    TriggerRegistrySnapshot.removed(type, k, ref.fullName);
+                }
+            }
+            updated.add(new JobRef(job));
+            if (!known) {
+                TriggerRegistrySnapshot.added(type, k, fullName);
+            }
+            if (refs == null) {
+                addToRepository(key);
+            }
+            return updated.toArray(NO_JOBS);
+        });
+    }
+
+    /**
+     * Removes the job, unless it has already been replaced by a reloaded instance of the same job.
+     */
+    static void unregister(@NonNull final Class<? extends Trigger<?>> type,
+                           @CheckForNull final PullRequestKey key,
+                           @NonNull final WorkflowJob job) {
+        if (key == null) {
+            return;
+        }
+        index(type).computeIfPresent(key, (k, refs) -> {
+            final List<JobRef> updated = new ArrayList<>(refs.length);
+            for (final JobRef ref : refs) {
+                final boolean removed = ref.get() == job
+                        || (ref.restored && ref.fullName.equals(job.getFullName()))
+                        || !ref.isLive();
+                if (removed) {
+                    TriggerRegistrySnapshot.removed(type, k, ref.fullName);
+                } else {
+                    updated.add(ref);
+                }
+            }
+            return updated.size() == refs.length ? refs : compacted(type, k, updated.toArray(NO_JOBS));
+        });
+    }
+
+    /**
+     * Adds a registration read from the {@link TriggerRegistrySnapshot}, the job is looked up by name until it
+     * registers itself.
+     */
+    static void restore(@NonNull final Class<?> type,
+                        @NonNull final PullRequestKey key,
+                        @NonNull final String fullName) {
+        index(type).compute(key, (k, refs) -> {
+            final JobRef[] current = refs == null ? NO_JOBS : refs;
+            for (final JobRef ref : current) {
+                if (ref.fullName.equals(fullName)) {
+                    return refs;
+                }
+            }
+            final JobRef[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = new JobRef(fullName);
+            if (refs == null) {
+                addToRepository(key);
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Drops the restored registrations whose job did not register itself while Jenkins started, unless the job
+     * still exists and has a trigger of that type.
+     */
+    static void dropRestored() {
+        byPullRequest.forEach((type, index) -> {
+            for (final PullRequestKey key : index.keySet()) {
+                index.computeIfPresent(key, (k, refs) -> {
+                    boolean changed = false;
+                    final List<JobRef> updated = new ArrayList<>(refs.length);
+                    for (final JobRef ref : refs) {
+                        if (!ref.restored) {
+                            updated.add(ref);
+                            continue;
+                        }
+                        changed = true;
+                        final WorkflowJob job = ref.resolve();
+                        if (job != null && hasTrigger(job, type)) {
+                            updated.add(new JobRef(job));
+                        } else {
+                            TriggerRegistrySnapshot.removed(type, k, ref.fullName);
+                        }
+                    }
+                    return changed ? compacted(type, k, updated.toArray(NO_JOBS)) : refs;
+                });
+            }
+        });
+    }
+
+    private static boolean hasTrigger(final WorkflowJob job, final Class<?> type) {
+        final PipelineTriggersJobProperty property = job.getTriggersJobProperty();
+        return property != null && property.getTriggers().stream().anyMatch(type::isInstance);
+    }
+
+    /**
+     * @return the jobs registered for the pull request, never {@code null}.
+     */
+    @NonNull
+    static List<WorkflowJob> getJobs(@NonNull final Class<? extends Trigger<?>> type,
+                                     @NonNull final PullRequestKey key) {
+        final Map<PullRequestKey, JobRef[]> index = byPullRequest.get(type);
+        final JobRef[] refs = index != null ? index.get(key) : null;
+        if (refs == null) {
+            return Collections.emptyList();
+        }
+        if (refs.length == 1) {
+            final WorkflowJob job = refs[0].resolve();
+            if (job != null) {
+                return Collections.singletonList(job);
+            }
+        }
+        final List<WorkflowJob> jobs = new ArrayList<>(refs.length);
+        boolean dead = false;
+        for (final JobRef ref : refs) {
+            final WorkflowJob job = ref.resolve();
+            if (job != null) {
+                jobs.add(job);
+            }
+            dead |= !ref.isLive();
+        }
+        if (dead) {
+            compact(type, key);
+        }
+        return jobs;
+    }
+
+    /**
+     * @return whether any trigger type has a job registered for the pull request.
+     */
+    static boolean hasJobs(@NonNull final PullRequestKey key) {
+        final Map<PullRequestKey, Integer> keys = byRepository.get(key.getRepository());
+        return keys != null && keys.containsKey(key);
+    }
+
+    /**
+     * @param repository the repository in {@code owner/name} form
+     * @return the pull requests of the repository that have jobs registered, never {@code null}.
+     */
+    @NonNull
+    static Set<PullRequestKey> getPullRequests(@NonNull final String repository) {
+        return byRepository.getOrDefault(repository.toLowerCase(Locale.ENGLISH), Collections.emptyMap()).keySet();
+    }
+
+    /**
+     * @return all pull requests that have jobs registered, never {@code null}.
+     */
+    @NonNull
+    static Set<PullRequestKey> getPullRequests() {
+        final Set<PullRequestKey> keys = new HashSet<>();
+        for (final Map<PullRequestKey, Integer> repository : byRepository.values()) {
+            keys.addAll(repository.keySet());
+        }
+        return keys;
+    }
+
+    /**
+     * Removes all registrations, Jenkins may be started more than once in the same JVM.
+     */
+    static void clear() {
+        byPullRequest.clear();
+        byRepository.clear();
+    }
+
+    private static Map<PullRequestKey, JobRef[]> index(final Class<?> type) {
+        return byPullRequest.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+    }
+
+    private static void compact(final Class<?> type, final PullRequestKey key) {
+        index(type).computeIfPresent(key, (k, refs) -> {
+            final List<JobRef> live = new ArrayList<>(refs.length);
+            for (final JobRef ref : refs) {
+                if (ref.isLive()) {
+                    live.add(ref);
+                } else {
+                    TriggerRegistrySnapshot.removed(type, k, ref.fullName);
+                }
+            }
+            return live.size() == refs.length ? refs : compacted(type, k, live.toArray(NO_JOBS));
+        });
+    }
+
+    // called while holding the index entry of the key, returns the new value of that entry
+    private static JobRef[] compacted(final Class<?> type, final PullRequestKey key, final JobRef[] refs) {
+        if (refs.length > 0) {
+            return refs;
+        }
+        LOG.debug("No more {} jobs for {}", type.getSimpleName(), key);
+        removeFromRepository(key);
+        return null;
+    }
+
+    // counts the trigger types with jobs for the key, so types can come and go in any order
+    private static void addToRepository(final PullRequestKey key) {
+        byRepository.compute(key.getRepository(), (repository, keys) -> {
+            final Map<PullRequestKey, Integer> updated = keys == null ? new HashMap<>() : new HashMap<>(keys);
+            updated.merge(key, 1, Integer::sum);
+            return Collections.unmodifiableMap(updated);
+        });
+    }
+
+    private static void removeFromRepository(final PullRequestKey key) {
+        byRepository.computeIfPresent(key.getRepository(), (repository, keys) -> {
+            final Map<PullRequestKey, Integer> updated = new HashMap<>(keys);
+            updated.computeIfPresent(key, (k, types) -> types > 1 ? types - 1 : null);
+            return updated.isEmpty() ? null : Collections.unmodifiableMap(updated);
+        });
+    }
+
+    /**
+     * Identifies a pull request, the owner and repository are lower cased once on creation.
+     */
+    public static final class PullRequestKey {
+        private final String owner;
+        private final String name;
+        private final int number;
+        private final String repository;
+        private final int hash;
+
+        private PullRequestKey(final String owner, final String name, final int number) {
+            this.owner = owner.toLowerCase(Locale.ENGLISH);
+            this.name = name.toLowerCase(Locale.ENGLISH);
+            this.number = number;
+            this.repository = this.owner + '/' + this.name;
+            this.hash = 31 * repository.hashCode() + number;
+        }
+
+        public static PullRequestKey of(@NonNull final String owner, @NonNull final String name, final int number) {
+            return new PullRequestKey(owner, name, number);
+        }
+
+        /**
+         * Parses the {@code owner/repo/number} form returned by {@link #toString()}.
+         */
+        public static PullRequestKey parse(@NonNull final String key) {
+            final String[] parts = key.split("/");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Not a pull request key: " + key);
+            }
+            return new PullRequestKey(parts[0], parts[1], Integer.parseInt(parts[2]));
+        }
+
+        /**
+         * @return the key of the pull request the job builds, or {@code null} if it does not build a GitHub pull
+         *         request.
+         */
+        @CheckForNull
+        static PullRequestKey of(@NonNull final WorkflowJob job) {
+            final SCMHead scmHead = SCMHead.HeadByItem.findHead(job);
+            if (!(scmHead instanceof PullRequestSCMHead)) {
+                return null;
+            }
+            final SCMSource scmSource = SCMSource.SourceByItem.findSource(job);
+            if (!(scmSource instanceof GitHubSCMSource)) {
+                LOG.warn("Job: {} has a non-GitHub SCM source: {}, skipping trigger registration",
+                        job.getFullName(), scmSource != null ? scmSource.getClass().getName() : "null");
+                return null;
+            }
+            return of(((GitHubSCMSource) scmSource).getRepoOwner(),
+                    ((GitHubSCMSource) scmSource).getRepository(),
+                    ((PullRequestSCMHead) scmHead).getNumber());
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        /**
+         * @return {@code owner/name}
+         */
+        public String getRepository() {
+            return repository;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PullRequestKey)) {
+                return false;
+            }
+            final PullRequestKey that = (PullRequestKey) o;
+            return number == that.number && repository.equals(that.repository);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return repository + '/' + number;
+        }
+    }
+
+    private static final class JobRef extends WeakReference<WorkflowJob> {
+        private final String fullName;
+        // restored from the snapshot, the job is looked up by name until it registers itself
+        private final boolean restored;
+
+        private JobRef(final WorkflowJob job) {
+            super(job);
+            this.fullName = job.getFullName();
+            this.restored = false;
+        }
+
+        private JobRef(final String fullName) {
+            super(null);
+            this.fullName = fullName;
+            this.restored = true;
+        }
+
+        @CheckForNull
+        private WorkflowJob resolve() {
+            WorkflowJob job = get();
+            if (job == null && restored) {
+                final Jenkins jenkins = Jenkins.getInstanceOrNull();
+                job = jenkins != null ? jenkins.getItemByFullName(fullName, WorkflowJob.class) : null;
+            }
+            return job;
+        }
+
+        private boolean isLive() {
+            return restored || get() != null;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.pipeline.github.trigger.TriggerRegistry.PullRequestKey;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists the {@link TriggerRegistry} in {@code JENKINS_HOME}, so comment, label and review events are routed as
+ * soon as Jenkins starts, instead of only once every job has been loaded and has started its triggers.
+ *
+ * The snapshot is an append only log of registrations added and removed, written in the background shortly after
+ * the registry changes, and rewritten with only the current registrations once it has grown to several times their
+ * number. On startup the log is memory mapped and replayed before any job is loaded, a record cut short by a crash
+ * ends the log. Restored registrations refer to their job by name, {@link StartupRegistration} drops those whose job
+ * no longer has the trigger once all jobs are loaded.
+ *
+ * Disabled with the {@code disabled} system property prefixed with this class name.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class TriggerRegistrySnapshot {
+    private static final Logger LOG = LoggerFactory.getLogger(TriggerRegistrySnapshot.class);
+
+    static final boolean DISABLED = Boolean.getBoolean(TriggerRegistrySnapshot.class.getName() + ".disabled");
+
+    private static final int MAGIC = 0x47485452; // GHTR
+    private static final int VERSION = 1;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_COMPACT = 1000;
+    private static final long WRITE_DELAY_MILLIS = 1000L;
+
+    private static final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean scheduled = new AtomicBoolean();
+    private static final Object lock = new Object();
+
+    private static volatile boolean open;
+    // guarded by lock
+    private static File file;
+    private static DataOutputStream out;
+    private static Set<Record> live = new LinkedHashSet<>();
+    private static int appended;
+
+    private TriggerRegistrySnapshot() {
+        // go away
+    }
+
+    static void added(final Class<?> type, final PullRequestKey key, final String job) {
+        record(ADD, type, key, job);
+    }
+
+    static void removed(final Class<?> type, final PullRequestKey key, final String job) {
+        record(REMOVE, type, key, job);
+    }
+
+    // called while the registry holds the entry of the key, so changes of a key are queued in order
+    private static void record(final byte op, final Class<?> type, final PullRequestKey key, final String job) {
+        if (!open) {
+            return;
+        }
+        changes.add(new Change(op, new Record(type.getName(), key.toString(), job)));
+        if (scheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(() -> {
+                scheduled.set(false);
+                flush();
+            }, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED, before = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void load() {
+        if (DISABLED) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final File snapshot = new File(Jenkins.get().getRootDir(), TriggerRegistry.class.getName() + ".snapshot");
+        Set<Record> records = new LinkedHashSet<>();
+        if (snapshot.isFile()) {
+            try {
+                records = read(snapshot.toPath());
+            } catch (final IOException e) {
+                LOG.warn("Unable to read the GitHub trigger registry snapshot: {}", snapshot, e);
+            }
+        }
+
+        TriggerRegistry.clear();
+        final ClassLoader loader = Jenkins.get().getPluginManager().uberClassLoader;
+        final Map<String, Class<?>> types = new HashMap<>();
+        int restored = 0;
+        for (final Record record : records) {
+            final Class<?> type = types.computeIfAbsent(record.type, name -> triggerType(loader, name));
+            if (type == null) {
+                continue;
+            }
+            final PullRequestKey key;
+            try {
+                key = PullRequestKey.parse(record.key);
+            } catch (final IllegalArgumentException e) {
+                continue;
+            }
+            TriggerRegistry.restore(type, key, record.job);
+            restored++;
+        }
+
+        synchronized (lock) {
+            changes.clear();
+            file = snapshot;
+            live = records;
+            try {
+                rewrite();
+                open = true;
+            } catch (final IOException e) {
+                LOG.warn("Unable to write the GitHub trigger registry snapshot: {}", snapshot, e);
+            }
+        }
+        LOG.info("Restored {} GitHub trigger registrations in {} ms", restored,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Terminator
+    public static void close() {
+        flush();
+        synchronized (lock) {
+            open = false;
+            closeOutput();
+        }
+    }
+
+    /**
+     * Writes the queued changes.
+     */
+    static void flush() {
+        synchronized (lock) {
+            if (out == null) {
+                return;
+            }
+            try {
+                Change change;
+                while ((change = changes.poll()) != null) {
+                    final boolean changed = change.op == ADD ? live.add(change.record) : live.remove(change.record);
+                    if (changed) {
+                        write(out, change.op, change.record);
+                        appended++;
+                    }
+                }
+                out.flush();
+                if (appended > Math.max(MIN_COMPACT, 4 * live.size())) {
+                    rewrite();
+                }
+            } catch (final IOException e) {
+                LOG.warn("Unable to write the GitHub trigger registry snapshot: {}", file, e);
+            }
+        }
+    }
+
+    // guarded by lock
+    private static void rewrite() throws IOException {
+        closeOutput();
+        final Path path = file.toPath();
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream tmpOut = open(tmp, StandardOpenOption.TRUNCATE_EXISTING)) {
+            tmpOut.writeInt(MAGIC);
+            tmpOut.writeInt(VERSION);
+            for (final Record record : live) {
+                write(tmpOut, ADD, record);
+            }
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        out = open(path, StandardOpenOption.APPEND);
+        appended = 0;
+    }
+
+    // guarded by lock
+    private static void closeOutput() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                LOG.debug("Unable to close the GitHub trigger registry snapshot: {}", file, e);
+            }
+            out = null;
+        }
+    }
+
+    private static DataOutputStream open(final Path path, final StandardOpenOption mode) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)));
+    }
+
+    private static void write(final DataOutputStream out, final byte op, final Record record) throws IOException {
+        out.writeByte(op);
+        writeString(out, record.type);
+        writeString(out, record.key);
+        writeString(out, record.job);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static Set<Record> read(final Path path) throws IOException {
+        final Set<Record> records = new LinkedHashSet<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < 8) {
+                return records;
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                LOG.warn("Ignoring GitHub trigger registry snapshot with an unknown format: {}", path);
+                return records;
+            }
+            while (buffer.hasRemaining()) {
+                try {
+                    final byte op = buffer.get();
+                    final Record record = new Record(readString(buffer), readString(buffer), readString(buffer));
+                    if (op == ADD) {
+                        records.add(record);
+                    } else if (op == REMOVE) {
+                        records.remove(record);
+                    } else {
+                        LOG.warn("Ignoring the rest of corrupt GitHub trigger registry snapshot: {}", path);
+                        break;
+                    }
+                } catch (final BufferUnderflowException | IllegalArgumentException e) {
+                    // the last record was cut short
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length: " + length);
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Class<?> triggerType(final ClassLoader loader, final String name) {
+        try {
+            final Class<?> type = Class.forName(name, false, loader);
+            return PullRequestTrigger.class.isAssignableFrom(type) ? type : null;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            LOG.debug("Dropping registrations of unknown trigger: {}", name);
+            return null;
+        }
+    }
+
+    private static final class Change {
+        private final byte op;
+        private final Record record;
+
+        private Change(final byte op, final Record record) {
+            this.op = op;
+            this.record = record;
+        }
+    }
+
+    static final class Record {
+        private final String type;
+        private final String key;
+        private final String job;
+
+        Record(final String type, final String key, final String job) {
+            this.type = type;
+            this.key = key;
+            this.job = job;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Record)) {
+                return false;
+            }
+            Record record = (Record) o;
+            return type.equals(record.type) && key.equals(record.key) && job.equals(record.job);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * type.hashCode() + key.hashCode()) + job.hashCode();
+        }
+    }
+}
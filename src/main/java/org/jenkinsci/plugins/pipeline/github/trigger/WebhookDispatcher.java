@@ -0,0 +1,278 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import hudson.init.Terminator;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.pipeline.github.client.RequestGovernor;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves webhook handling off the thread that received the webhook.
+ *
+ * Events are spread over a fixed number of lanes by repository, each lane is a single worker thread with its own
+ * queue, so the events of one repository are handled in the order they were received while different repositories
+ * proceed in parallel. The queues are unbounded so that no event is lost, an event queued behind
+ * {@link #QUEUE_CAPACITY} others is only counted as an overflow. Events still queued when Jenkins shuts down, or
+ * arriving after it did, are handed to their {@code abandoned} callback, which records them in the
+ * {@link EventJournal} so that {@link CatchUpWorker} replays them after the restart.
+ *
+ * Handlers run as {@link RequestGovernor#forInfrastructure() infrastructure} work, so a lane is not held up for long
+ * by the GitHub rate limit. A handler failing with a {@link RequestGovernor.HeldBackException} is queued again on its
+ * lane once GitHub lets us make requests again, it must not have done anything it would do twice before failing.
+ * Deferred events are handled after the events of their repository received in the meantime, and are abandoned too
+ * if Jenkins shuts down first.
+ *
+ * Tuned with the {@code lanes} and {@code queueCapacity} system properties prefixed with this class name, setting
+ * {@code lanes} to 0 handles every event on the receiving thread as before.
+ *
+ * @author Aaron Whiteside
+ */
+@Restricted(NoExternalUse.class)
+public final class WebhookDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(WebhookDispatcher.class);
+
+    static final int LANES = Integer.getInteger(WebhookDispatcher.class.getName() + ".lanes",
+            Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+    static final int QUEUE_CAPACITY = Integer.getInteger(WebhookDispatcher.class.getName() + ".queueCapacity", 1000);
+    // reached once the lanes are closed, the journal of the abandoned events must stay open until then
+    static final String CLOSED = "WebhookDispatcher.closed";
+
+    private static volatile WebhookDispatcher instance;
+
+    private final ThreadPoolExecutor[] lanes;
+    private final int queueCapacity;
+    // waiting for GitHub to let us make requests again
+    private final Set<Task> deferredTasks = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong queueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    WebhookDispatcher(final int laneCount, final int queueCapacity) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        this.queueCapacity = queueCapacity;
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "GitHubEventSubscriber lane " + i),
+                    (task, executor) -> abandon(task));
+        }
+    }
+
+    public static WebhookDispatcher get() {
+        WebhookDispatcher dispatcher = instance;
+        if (dispatcher == null) {
+            synchronized (WebhookDispatcher.class) {
+                dispatcher = instance;
+                if (dispatcher == null) {
+                    dispatcher = new WebhookDispatcher(LANES, QUEUE_CAPACITY);
+                    instance = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    @Terminator(attains = CLOSED)
+    public static void shutdown() {
+        WebhookDispatcher dispatcher = instance;
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    /**
+     * Queues the handling of an event on the lane of its repository.
+     *
+     * @param repository the repository the event belongs to, picks the lane, may be {@code null}
+     * @param handler    handles the event, runs as {@link ACL#SYSTEM2}
+     * @param abandoned  runs instead of the handler if Jenkins shuts down before the event is handled
+     */
+    void dispatch(final String repository, final Runnable handler, final Runnable abandoned) {
+        final Task task = new Task(repository, handler, abandoned);
+        submitted.incrementAndGet();
+        execute(task);
+    }
+
+    private void execute(final Task task) {
+        if (lanes.length == 0) {
+            task.run();
+            return;
+        }
+        final ThreadPoolExecutor lane = lanes[laneOf(task.repository)];
+        if (lane.getQueue().size() >= queueCapacity) {
+            overflowed.incrementAndGet();
+            LOG.debug("The lane of {} has more than {} GitHub events queued", task.repository, queueCapacity);
+        }
+        lane.execute(task);
+    }
+
+    private void defer(final Task task, final RequestGovernor.HeldBackException e) {
+        deferred.incrementAndGet();
+        LOG.debug("Deferring a GitHub event of {} by {}ms: {}", task.repository, e.getHeldMillis(), e.getMessage());
+        deferredTasks.add(task);
+        Timer.get().schedule(() -> {
+            if (deferredTasks.remove(task)) {
+                task.queuedAt = System.nanoTime();
+                execute(task);
+            }
+        }, e.getHeldMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private int laneOf(final String repository) {
+        return repository == null ? 0 : Math.floorMod(repository.hashCode(), lanes.length);
+    }
+
+    void close() {
+        close(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Handles the queued events for up to the given time, the ones left are abandoned.
+     */
+    void close(final long timeout, final TimeUnit unit) {
+        for (final ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (final ThreadPoolExecutor lane : lanes) {
+            try {
+                if (lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    continue;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final List<Runnable> left = lane.shutdownNow();
+            LOG.info("Leaving {} queued GitHub events to be caught up on after the restart", left.size());
+            left.forEach(this::abandon);
+        }
+        for (final Task task : deferredTasks) {
+            if (deferredTasks.remove(task)) {
+                abandon(task);
+            }
+        }
+    }
+
+    private void abandon(final Runnable task) {
+        abandoned.incrementAndGet();
+        try {
+            ((Task) task).abandoned.run();
+        } catch (final RuntimeException e) {
+            LOG.warn("Unable to record an unhandled GitHub event", e);
+        }
+    }
+
+    /**
+     * @return the number of events waiting in all lanes.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (final ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of events queued while their lane already had {@link #QUEUE_CAPACITY} events waiting.
+     */
+    public long getOverflowedCount() {
+        return overflowed.get();
+    }
+
+    /**
+     * @return the number of events left to be caught up on after a restart, because Jenkins shut down first.
+     */
+    public long getAbandonedCount() {
+        return abandoned.get();
+    }
+
+    /**
+     * @return the number of times an event was queued again because GitHub asked us to hold back.
+     */
+    public long getDeferredCount() {
+        return deferred.get();
+    }
+
+    public long getTotalQueueMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(queueNanos.get());
+    }
+
+    public long getMaxQueueMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxQueueNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "WebhookDispatcher{lanes=" + lanes.length + ", queueDepth=" + getQueueDepth()
+                + ", submitted=" + getSubmittedCount() + ", completed=" + getCompletedCount()
+                + ", failed=" + getFailedCount() + ", overflowed=" + getOverflowedCount()
+                + ", abandoned=" + getAbandonedCount() + ", deferred=" + getDeferredCount()
+                + ", maxQueueMillis=" + getMaxQueueMillis() + '}';
+    }
+
+    private final class Task implements Runnable {
+        private volatile long queuedAt = System.nanoTime();
+        private final String repository;
+        private final Runnable handler;
+        private final Runnable abandoned;
+
+        private Task(final String repository, final Runnable handler, final Runnable abandoned) {
+            this.repository = repository;
+            this.handler = handler;
+            this.abandoned = abandoned;
+        }
+
+        @Override
+        public void run() {
+            long queued = System.nanoTime() - queuedAt;
+            queueNanos.addAndGet(queued);
+            maxQueueNanos.accumulateAndGet(queued, Math::max);
+            try (ACLContext ignored = ACL.as2(ACL.SYSTEM2);
+                 RequestGovernor.Scope infrastructure = RequestGovernor.forInfrastructure()) {
+                handler.run();
+            } catch (final RuntimeException e) {
+                final RequestGovernor.HeldBackException heldBack = RequestGovernor.HeldBackException.of(e);
+                if (heldBack != null) {
+                    defer(this, heldBack);
+                    return;
+                }
+                failed.incrementAndGet();
+                LOG.error("Unable to handle GitHub event", e);
+            }
+            completed.incrementAndGet();
+        }
+    }
+}
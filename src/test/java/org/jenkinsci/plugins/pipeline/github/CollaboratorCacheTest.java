@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class CollaboratorCacheTest {
+
+    private static final String API = "https://api.github.com";
+
+    @After
+    public void clear() {
+        CollaboratorCache.invalidateAll();
+    }
+
+    @Test
+    public void testAnswersAreCachedUntilInvalidated() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertTrue(CollaboratorCache.isCollaborator(API, "Owner/Repo", "Kirk", () -> calls.incrementAndGet() > 0));
+        assertTrue(CollaboratorCache.isCollaborator(API, "owner/repo", "kirk", () -> calls.incrementAndGet() > 0));
+        assertEquals(1, calls.get());
+
+        CollaboratorCache.invalidate("owner/repo", "KIRK");
+        assertTrue(CollaboratorCache.isCollaborator(API, "owner/repo", "kirk", () -> calls.incrementAndGet() > 0));
+        assertEquals(2, calls.get());
+
+        assertFalse(CollaboratorCache.isCollaborator(API, "owner/repo", "khan", () -> false));
+        CollaboratorCache.invalidateOwner("owner");
+        assertEquals(0, CollaboratorCache.size());
+    }
+
+    @Test
+    public void testConcurrentChecksAreSingleFlighted() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> CollaboratorCache.isCollaborator(API, "owner/repo", "spock", () -> {
+                    calls.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return true;
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.egit.github.core.Commit;
+import org.eclipse.egit.github.core.CommitFile;
+import org.eclipse.egit.github.core.CommitStats;
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.User;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedCommitService;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedGitHubClient;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMSource;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class CommitGroovyObjectTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule();
+
+    private static RepositoryCommit commit(int i) {
+        StringBuilder patch = new StringBuilder();
+        for (int line = 0; line < 50; line++) {
+            patch.append("+ line ").append(line).append(" of a change to file ").append(i).append('\n');
+        }
+        User user = new User()
+            .setLogin("octocat")
+            .setName("The Octocat")
+            .setAvatarUrl("https://github.com/images/error/octocat_happy.gif")
+            .setHtmlUrl("https://github.com/octocat")
+            .setUrl("https://api.github.com/users/octocat");
+        return new RepositoryCommit()
+            .setSha("sha" + i)
+            .setUrl("https://api.github.com/repos/owner/repo/commits/sha" + i)
+            .setAuthor(user)
+            .setCommitter(user)
+            .setCommit(new Commit().setMessage("commit " + i).setCommentCount(1))
+            .setParents(Collections.singletonList(new Commit().setSha("sha" + (i - 1))))
+            .setStats(new CommitStats().setAdditions(50).setTotal(50))
+            .setFiles(Collections.singletonList(new CommitFile()
+                .setFilename("file" + i)
+                .setStatus("modified")
+                .setAdditions(50)
+                .setPatch(patch.toString())));
+    }
+
+    static byte[] serialize(Object object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object deserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    @Test
+    public void testSerializedFormIsSlim() throws Exception {
+        ExtendedCommitService commitService = new ExtendedCommitService(new ExtendedGitHubClient());
+        RepositoryId base = RepositoryId.create("owner", "repo");
+        List<CommitGroovyObject> commits = new ArrayList<>();
+        List<RepositoryCommit> models = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            models.add(commit(i));
+            commits.add(new CommitGroovyObject("p", commit(i), commitService, base));
+        }
+
+        int full = serialize(models).length;
+        byte[] slim = serialize(commits);
+        assertTrue(slim.length * 4 < full, "serialized " + slim.length + " bytes, the commits are " + full);
+
+        @SuppressWarnings("unchecked")
+        List<CommitGroovyObject> restored = (List<CommitGroovyObject>) deserialize(slim);
+        CommitGroovyObject commit = restored.get(42);
+        assertEquals("sha42", commit.getSha());
+        assertEquals("commit 42", commit.getMessage());
+        assertEquals("octocat", commit.getAuthor());
+        assertEquals(50, commit.getAdditions());
+        assertEquals(Collections.singletonList("sha41"), commit.getParents());
+    }
+
+    @Test
+    public void testFilesAreFetchedAfterRestore() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new PullRequestGroovyObjectTest.TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class)
+            .add(new PullRequestGroovyObjectTest.TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/commits/sha1"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"sha\":\"sha1\",\"files\":[{\"filename\":\"file1\",\"patch\":\"+ fetched\"}]}")));
+
+        CommitGroovyObject commit = (CommitGroovyObject) deserialize(serialize(new CommitGroovyObject(
+            job.getFullName(), commit(1), new ExtendedCommitService(new ExtendedGitHubClient()),
+            RepositoryId.create("owner", "repo"))));
+
+        CommitFileGroovyObject file = commit.getFiles().iterator().next();
+        assertEquals("file1", file.getFilename());
+        assertEquals("+ fetched", file.getPatch());
+        commit.getFiles();
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/commits/sha1")));
+    }
+
+    @Test
+    public void testFilesAreFetchedWhenTheCommitCameWithoutThem() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new PullRequestGroovyObjectTest.TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class)
+            .add(new PullRequestGroovyObjectTest.TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/commits/sha1"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"sha\":\"sha1\",\"files\":[{\"filename\":\"file1\",\"patch\":\"+ fetched\"}]}")));
+        ExtendedCommitService commitService = new ExtendedCommitService(GitHubHelper.getGitHubClient(job));
+        RepositoryId base = RepositoryId.create("owner", "repo");
+
+        // the commits of a pull request come without their files, the same as a restored commit
+        CommitGroovyObject listed = new CommitGroovyObject(job.getFullName(), commit(1).setFiles(null),
+            commitService, base);
+        CommitFileGroovyObject file = listed.getFiles().iterator().next();
+        assertEquals("file1", file.getFilename());
+        assertEquals("+ fetched", file.getPatch());
+        listed.getFiles();
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/commits/sha1")));
+
+        // a commit that has its files doesn't fetch them
+        CommitGroovyObject fetched = new CommitGroovyObject(job.getFullName(), commit(2), commitService, base);
+        assertEquals("file2", fetched.getFiles().iterator().next().getFilename());
+        verify(exactly(0), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/commits/sha2")));
+    }
+}
@@ -0,0 +1,27 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class GitHubApiStatisticsLinkTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testShowsTheCounters() throws Exception {
+        SkippedWrites.increment("addLabels");
+
+        String page = r.createWebClient().goTo("manage/pipeline-github-statistics").asNormalizedText();
+
+        assertTrue(page.contains("addLabels"), page);
+        assertTrue(page.contains("Response cache"), page);
+        assertTrue(page.contains("Webhook lanes"), page);
+    }
+}
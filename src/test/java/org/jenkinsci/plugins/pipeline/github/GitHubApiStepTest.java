@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.egit.github.core.RepositoryCommit;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedCommitComment;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedCommitService;
+import org.jenkinsci.plugins.pipeline.github.client.ExtendedGitHubClient;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.Result;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class GitHubApiStepTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testInvokesWhitelistedMethods() {
+        ExtendedCommitService commitService = new ExtendedCommitService(new ExtendedGitHubClient());
+        RepositoryId base = RepositoryId.create("owner", "repo");
+        CommitGroovyObject commit = new CommitGroovyObject("p",
+            new RepositoryCommit().setSha("abc"), commitService, base);
+        ReviewCommentGroovyObject comment = new ReviewCommentGroovyObject("p", base,
+            new ExtendedCommitComment(), commitService);
+
+        assertEquals("abc", GitHubApiStep.invoke(commit, "getSha", Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class,
+            () -> GitHubApiStep.invoke(comment, "replyTo", Collections.singletonList("not whitelisted")));
+        assertThrows(IllegalArgumentException.class,
+            () -> GitHubApiStep.invoke(commit, "getSha", Arrays.asList("too", "many")));
+        assertThrows(IllegalArgumentException.class,
+            () -> GitHubApiStep.invoke("not ours", "length", Collections.emptyList()));
+    }
+
+    @Test
+    public void testRejectsOtherObjects() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        job.setDefinition(new CpsFlowDefinition("githubApi target: 'not ours', method: 'length'", true));
+        WorkflowRun run = r.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+        r.assertLogContains("Not a GitHub object: java.lang.String", run);
+    }
+}
@@ -1,23 +1,63 @@
 package org.jenkinsci.plugins.pipeline.github;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.delete;
+import static com.github.tomakehurst.wiremock.client.WireMock.deleteRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.matchingJsonPath;
+import static com.github.tomakehurst.wiremock.client.WireMock.patch;
+import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.put;
+import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
+import org.jenkinsci.plugins.github_branch_source.BranchSCMHead;
 import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMRevision;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
 
 import hudson.model.Item;
 import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMHeadOrigin;
 import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
 
 /**
  * @author Aaron Whiteside
@@ -37,6 +77,14 @@ public class PullRequestGroovyObjectTest {
         }
     }
 
+    public static class TestBranchHeadByItemImpl extends SCMHead.HeadByItem {
+        @Override
+        public SCMHead getHead(Item item) {
+            return new PullRequestSCMHead("PR-42", "owner", "repo", "feature", 42, new BranchSCMHead("main"),
+                SCMHeadOrigin.DEFAULT, ChangeRequestCheckoutStrategy.MERGE);
+        }
+    }
+
     public static class TestSourceByItemImpl extends SCMSource.SourceByItem {
         public TestSourceByItemImpl(int port) {
             this.port = port;
@@ -71,4 +119,732 @@ public class PullRequestGroovyObjectTest {
         PullRequestGroovyObject prgo = new PullRequestGroovyObject((WorkflowJob)job);
         assertEquals("abc", prgo.getBaseSha());
    }
-}
\ No newline at end of file
+
+    @Test
+    public void testSnapshotAvoidsFetch() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/pulls/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"body\":\"fetched\",\"head\":{\"sha\":\"def\"}}")));
+
+        PullRequestSnapshot snapshot = PullRequestSnapshot.of(new ObjectMapper().readTree(
+            "{\"number\":42,\"title\":\"from webhook\",\"state\":\"open\",\"draft\":false,"
+                + "\"head\":{\"sha\":\"abc\",\"ref\":\"feature\"},\"base\":{\"sha\":\"123\",\"ref\":\"main\"},"
+                + "\"labels\":[{\"name\":\"bug\"}],\"updated_at\":\"2024-01-02T03:04:05Z\"}"));
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job, snapshot, null);
+
+        assertEquals(42, prgo.getNumber());
+        assertEquals("from webhook", prgo.getTitle());
+        assertEquals("abc", prgo.getHead());
+        assertEquals("feature", prgo.getHeadRef());
+        assertEquals("main", prgo.getBase());
+        assertFalse(prgo.isDraft());
+        verify(exactly(0), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+
+        // not in the snapshot, fetched once, the refs stay those of the build
+        assertEquals("fetched", prgo.getBody());
+        assertEquals("abc", prgo.getHead());
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+
+        // until refreshed
+        prgo.refresh();
+        assertEquals("def", prgo.getHead());
+    }
+
+    @Test
+    public void testFieldGroupsAreLoadedLazily() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestBranchHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/pulls/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"title\":\"fetched\",\"commits\":3,"
+                    + "\"head\":{\"sha\":\"abc\",\"ref\":\"feature\"},\"base\":{\"sha\":\"123\",\"ref\":\"main\"}}")));
+
+        PullRequestSCMHead head = (PullRequestSCMHead) SCMHead.HeadByItem.findHead(job);
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job, null,
+            new PullRequestSCMRevision(head, "123", "abc"));
+        verify(exactly(0), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+
+        // identity and refs come from the SCM head and revision
+        assertEquals(42, prgo.getNumber());
+        assertEquals("feature", prgo.getHeadRef());
+        assertEquals("main", prgo.getBase());
+        assertEquals("abc", prgo.getHead());
+        assertEquals("123", prgo.getBaseSha());
+        verify(exactly(0), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+
+        // metadata and counters are fetched once, together
+        assertEquals("fetched", prgo.getTitle());
+        assertEquals(3, prgo.getCommitCount());
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+    }
+
+    @Test
+    public void testFetchedPullRequestIsSerializedAsSnapshot() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/pulls/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"title\":\"fetched\",\"body\":\"body\",\"state\":\"open\","
+                    + "\"head\":{\"sha\":\"abc\",\"ref\":\"feature\"},\"base\":{\"sha\":\"123\",\"ref\":\"main\"}}")));
+
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+        assertEquals("body", prgo.getBody());
+
+        PullRequestGroovyObject restored = (PullRequestGroovyObject) CommitGroovyObjectTest.deserialize(
+            CommitGroovyObjectTest.serialize(prgo));
+        assertEquals(42, restored.getNumber());
+        assertEquals("fetched", restored.getTitle());
+        assertEquals("open", restored.getState());
+        assertEquals("abc", restored.getHead());
+        assertEquals("main", restored.getBase());
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+
+        // not in the snapshot, fetched again
+        assertEquals("body", restored.getBody());
+        verify(exactly(2), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+    }
+
+    @Test
+    public void testBatchSendsOneRequestPerResource() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(patch(urlPathMatching("/api/v3/repos/owner/repo/pulls/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"title\":\"batched\",\"body\":\"new body\"}")));
+        stubFor(patch(urlPathMatching("/api/v3/repos/owner/repo/issues/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"labels\":[{\"name\":\"ci\"}],\"milestone\":{\"number\":3}}")));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/requested_reviewers"))
+            .willReturn(aResponse()
+                .withStatus(201)
+                .withBody("{\"number\":42}")));
+
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("title", "batched");
+        changes.put("body", "new body");
+        changes.put("labels", Collections.singletonList("ci"));
+        changes.put("assignees", Collections.singletonList("octocat"));
+        changes.put("milestone", 3);
+        changes.put("reviewers", Collections.singletonList("reviewer"));
+        prgo.batch(changes);
+
+        verify(exactly(1), patchRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42"))
+            .withRequestBody(containing("\"batched\"")));
+        verify(exactly(1), patchRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42"))
+            .withRequestBody(containing("\"octocat\"")));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/requested_reviewers")));
+
+        // the cached pull request has all of the changes
+        assertEquals("batched", prgo.getTitle());
+        assertEquals(Collections.singletonList("octocat"), prgo.getAssignees());
+        verify(exactly(0), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+        verify(exactly(0), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels")));
+    }
+
+    @Test
+    public void testBatchAddsAndRemovesLabelsWithoutReplacingThem() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"name\":\"wip\"}]")));
+        // a label someone else set since is kept by GitHub
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"name\":\"wip\"},{\"name\":\"by-hand\"},{\"name\":\"ci\"}]")));
+        stubFor(delete(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels/wip"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"name\":\"by-hand\"},{\"name\":\"ci\"}]")));
+
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+        assertEquals(Collections.singletonList("wip"), prgo.getLabels());
+        prgo.batch().addLabels(Collections.singletonList("ci")).removeLabels(Collections.singletonList("wip")).apply();
+
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .withRequestBody(containing("\"ci\"")));
+        verify(exactly(1), deleteRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels/wip")));
+        verify(exactly(0), patchRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42")));
+    }
+
+    @Test
+    public void testAssigneeWritesAreOnlySkippedOnceTheBuildKnowsTheAssignees() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/pulls/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"assignees\":[{\"login\":\"spock\"}]}")));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .willReturn(aResponse()
+                .withStatus(201)
+                .withBody("{\"number\":42}")));
+        stubFor(delete(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42}")));
+        stubFor(put(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42}")));
+
+        // the fetched pull request may be stale by the time of the write, so it is sent
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+        assertEquals(Collections.singletonList("spock"), prgo.getAssignees());
+        prgo.addAssignees(Collections.singletonList("spock"));
+        prgo.addAssignees(Collections.singletonList("spock"));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees")));
+
+        prgo.removeAssignees(Collections.singletonList("spock"));
+        prgo.removeAssignees(Collections.singletonList("spock"));
+        verify(exactly(1), deleteRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees")));
+
+        // not all of them are known until they are replaced
+        prgo.setAssignees(Collections.emptyList());
+        prgo.setAssignees(Collections.emptyList());
+        prgo.removeAssignees(Collections.singletonList("kirk"));
+        verify(exactly(1), putRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees")));
+        verify(exactly(1), deleteRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees")));
+        assertEquals(Collections.emptyList(), prgo.getAssignees());
+    }
+
+    @Test
+    public void testBatchAddsAndRemovesAssigneesWithoutReplacingThem() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/pulls/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"assignees\":[{\"login\":\"spock\"},{\"login\":\"kirk\"}]}")));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .willReturn(aResponse()
+                .withStatus(201)
+                .withFixedDelay(200)
+                .withBody("{\"number\":42}")));
+        stubFor(delete(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withFixedDelay(200)
+                .withBody("{\"number\":42}")));
+
+        // read, so only the difference is sent
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+        prgo.refresh();
+        long start = System.nanoTime();
+        prgo.batch()
+            .addAssignees(Arrays.asList("octocat", "spock"))
+            .removeAssignees(Arrays.asList("kirk", "mccoy"))
+            .apply();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        // the two requests are sent at the same time
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .withRequestBody(equalToJson("{\"assignees\":[\"octocat\"]}")));
+        verify(exactly(1), deleteRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .withRequestBody(equalToJson("{\"assignees\":[\"kirk\"]}")));
+        verify(exactly(0), patchRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42")));
+        assertTrue(millis < 400, "took " + millis + "ms");
+
+        // the cached pull request has the changes
+        assertEquals(Arrays.asList("spock", "octocat"), prgo.getAssignees());
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42")));
+    }
+
+    @Test
+    public void testLabelsAreReadEachTime() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[]")));
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+        assertEquals(Collections.emptyList(), prgo.getLabels());
+
+        // a label someone adds during the build is seen, and can be removed
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"name\":\"ready\"}]")));
+        stubFor(delete(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels/ready"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[]")));
+        assertEquals(Collections.singletonList("ready"), prgo.getLabels());
+        prgo.removeLabel("ready");
+        verify(exactly(1), deleteRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels/ready")));
+    }
+
+    @Test
+    public void testNoOpLabelWritesAreSkipped() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"name\":\"bug\"},{\"name\":\"ci\"}]")));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"name\":\"bug\"}]")));
+
+        // labels from the webhook may be stale, so they are not compared against
+        PullRequestSnapshot snapshot = PullRequestSnapshot.of(new ObjectMapper().readTree(
+            "{\"number\":42,\"labels\":[{\"name\":\"wip\"}]}"));
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job, snapshot, null);
+        long skipped = SkippedWrites.getCount("addLabels") + SkippedWrites.getCount("setLabels")
+            + SkippedWrites.getCount("removeLabel");
+        assertEquals(Collections.singletonList("bug"), prgo.getLabels());
+
+        // compared against the labels read, ignoring case
+        prgo.addLabel("BUG");
+        prgo.setLabels(Collections.singletonList("Bug"));
+        prgo.removeLabel("wip");
+        assertEquals(skipped + 3, SkippedWrites.getCount("addLabels") + SkippedWrites.getCount("setLabels")
+            + SkippedWrites.getCount("removeLabel"));
+
+        // only the missing label is sent
+        prgo.addLabels(Arrays.asList("bug", "ci"));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .withRequestBody(equalToJson("[\"ci\"]")));
+
+        // and against the labels the write returned
+        prgo.addLabel("ci");
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels")));
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/.*")));
+    }
+
+    private void stubFilePages(int pages) {
+        String path = "/api/v3/repos/owner/repo/pulls/42/files";
+        String patch = String.join("", Collections.nCopies(20, "+ a line of a change to the file\n"));
+        for (int page = 1; page <= pages; page++) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < 100; i++) {
+                body.append(i > 0 ? "," : "")
+                    .append("{\"filename\":\"file").append((page - 1) * 100 + i).append("\",")
+                    .append("\"patch\":\"").append(patch.replace("\n", "\\n")).append("\"}");
+            }
+            body.append("]");
+            String link = page < pages
+                ? String.format("<http://localhost:%d%s?page=%d&per_page=100>; rel=\"next\"",
+                    wireMockRule.port(), path, page + 1)
+                : "";
+            stubFor(get(urlPathMatching(path))
+                .withQueryParam("page", equalTo(String.valueOf(page)))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Link", link)
+                    .withBody(body.toString())));
+        }
+    }
+
+    @Test
+    public void testFilesArePagedLazily() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFilePages(30);
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+
+        // stopping early reads the first page, and prefetches at most the second
+        int read = 0;
+        for (CommitFileGroovyObject file : prgo.getFiles()) {
+            if (++read == 5) {
+                break;
+            }
+        }
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/files"))
+            .withQueryParam("page", equalTo("1")));
+        verify(exactly(0), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/files"))
+            .withQueryParam("page", equalTo("3")));
+
+        // all 3,000 files, in order, without their patches
+        List<CommitFileGroovyObject> files = new ArrayList<>();
+        prgo.getFiles().forEach(files::add);
+        assertEquals(3000, files.size());
+        assertEquals("file0", files.get(0).getFilename());
+        assertEquals("file2999", files.get(2999).getFilename());
+        int size = CommitGroovyObjectTest.serialize(new ArrayList<>(files)).length;
+        assertTrue(size < 3000 * 600, "the files take " + size + " bytes");
+
+        // the patch is read again from the file's page
+        assertTrue(files.get(642).getPatch().startsWith("+ a line of a change"));
+        verify(exactly(2), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/files"))
+            .withQueryParam("page", equalTo("7")));
+    }
+
+    @Test
+    public void testFilesIteratorResumesAfterItIsRestored() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFilePages(3);
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+
+        Iterator<CommitFileGroovyObject> files = prgo.getFiles().iterator();
+        for (int i = 0; i < 150; i++) {
+            files.next();
+        }
+        @SuppressWarnings("unchecked")
+        Iterator<CommitFileGroovyObject> restored = (Iterator<CommitFileGroovyObject>)
+            CommitGroovyObjectTest.deserialize(CommitGroovyObjectTest.serialize(files));
+
+        // the current page is read again, the items already returned are skipped
+        assertEquals("file150", restored.next().getFilename());
+        int rest = 1;
+        while (restored.hasNext()) {
+            restored.next();
+            rest++;
+        }
+        assertEquals(150, rest);
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/files"))
+            .withQueryParam("page", equalTo("1")));
+    }
+
+    @Test
+    public void testPipelineRunsStepsWhileLoopingOverFiles() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFilePages(2);
+
+        // the program is saved at each step, with the loop's iterator in it
+        job.setDefinition(new CpsFlowDefinition(
+            "def names = []\n"
+                + "for (commitFile in pullRequest.files) {\n"
+                + "  names << githubApi(target: commitFile, method: 'getFilename')\n"
+                + "}\n"
+                + "assert names.size() == 200 && names[199] == 'file199'\n",
+            true));
+        r.buildAndAssertSuccess(job);
+    }
+
+    @Test
+    public void testPagesAreFetchedConcurrentlyWhenTheLastPageIsKnown() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        String path = "/api/v3/repos/owner/repo/pulls/42/comments";
+        int pages = 12;
+        for (int page = 1; page <= pages; page++) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < 100; i++) {
+                int id = (page - 1) * 100 + i;
+                body.append(i > 0 ? "," : "")
+                    .append("{\"id\":").append(id).append(",\"body\":\"comment").append(id).append("\"}");
+            }
+            body.append("]");
+            // only the first page needs to link to the last one
+            String link = page == 1
+                ? String.format("<http://localhost:%1$d%2$s?page=2&per_page=100>; rel=\"next\", "
+                    + "<http://localhost:%1$d%2$s?page=%3$d&per_page=100>; rel=\"last\"",
+                    wireMockRule.port(), path, pages)
+                : "";
+            stubFor(get(urlPathMatching(path))
+                .withQueryParam("page", equalTo(String.valueOf(page)))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withFixedDelay(page == 1 ? 0 : 50)
+                    .withHeader("Link", link)
+                    .withBody(body.toString())));
+        }
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+
+        List<String> comments = new ArrayList<>();
+        prgo.getReviewComments().forEach(comment -> comments.add(comment.getBody()));
+
+        // in order, each page fetched once
+        assertEquals(pages * 100, comments.size());
+        for (int i = 0; i < comments.size(); i++) {
+            assertEquals("comment" + i, comments.get(i));
+        }
+        for (int page = 1; page <= pages; page++) {
+            verify(exactly(1), getRequestedFor(urlPathMatching(path))
+                .withQueryParam("page", equalTo(String.valueOf(page))));
+        }
+    }
+
+    @Test
+    public void testUpsertCommentEditsTheCommentOfAnEarlierBuild() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        job.setDefinition(new CpsFlowDefinition("", true));
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"id\":1,\"body\":\"unrelated\"}]")));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments"))
+            .willReturn(aResponse()
+                .withStatus(201)
+                .withBody("{\"id\":7,\"body\":\"first\"}")));
+        stubFor(any(urlPathMatching("/api/v3/repos/owner/repo/issues/comments/7"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"id\":7,\"body\":\"second\"}")));
+
+        // the first build looks through the comments, then creates the comment
+        WorkflowRun first = r.buildAndAssertSuccess(job);
+        IssueCommentGroovyObject created = new PullRequestGroovyObject(first, null, null)
+            .upsertComment("ci-summary", "first");
+        assertEquals(7, created.getId());
+        assertEquals("ci-summary", created.getMarker());
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments")));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments"))
+            .withRequestBody(containing("ci-summary")));
+
+        // the next build edits it with a single request
+        WorkflowRun second = r.buildAndAssertSuccess(job);
+        IssueCommentGroovyObject edited = new PullRequestGroovyObject(second, null, null)
+            .upsertComment("ci-summary", "second");
+        assertEquals(7, edited.getId());
+        assertEquals("second", edited.getBody());
+        verify(exactly(1), anyRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/comments/7"))
+            .withRequestBody(containing("ci-summary")));
+        verify(exactly(1), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments")));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments")));
+
+        // a deleted comment is looked for again
+        stubFor(any(urlPathMatching("/api/v3/repos/owner/repo/issues/comments/7"))
+            .willReturn(aResponse()
+                .withStatus(404)
+                .withBody("{\"message\":\"Not Found\"}")));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"id\":9,\"body\":\"written by hand\\n\\n<!-- ci-summary -->\"}]")));
+        stubFor(any(urlPathMatching("/api/v3/repos/owner/repo/issues/comments/9"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"id\":9,\"body\":\"third\"}")));
+        WorkflowRun third = r.buildAndAssertSuccess(job);
+        assertEquals(9, new PullRequestGroovyObject(third, null, null).upsertComment("ci-summary", "third").getId());
+        verify(exactly(2), getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments")));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/comments")));
+        assertEquals(9L, third.getAction(CommentMarkerIndex.class).get("ci-summary"));
+    }
+
+    @Test
+    public void testReviewCommentsAreSubmittedInChunks() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"id\":1,\"html_url\":\"https://github.com/owner/repo/pull/42#pullrequestreview-1\"}")));
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("event", "REQUEST_CHANGES");
+        params.put("body", "Lint found problems");
+        params.put("comments", reviewComments(2 * PullRequestGroovyObject.REVIEW_COMMENTS_PER_REQUEST + 1));
+        List<ReviewGroovyObject> reviews = prgo.review(params);
+
+        // three reviews instead of a request per comment, the last one with the event
+        assertEquals(3, reviews.size());
+        assertEquals("https://github.com/owner/repo/pull/42#pullrequestreview-1", reviews.get(2).getUrl());
+        verify(exactly(3), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews")));
+        verify(exactly(2), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews"))
+            .withRequestBody(containing("\"event\":\"COMMENT\"")));
+        // only the last review has a body unless one is given for the others
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews"))
+            .withRequestBody(matchingJsonPath("$.body")));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews"))
+            .withRequestBody(containing("\"event\":\"REQUEST_CHANGES\""))
+            .withRequestBody(containing("finding " + 2 * PullRequestGroovyObject.REVIEW_COMMENTS_PER_REQUEST)));
+        verify(exactly(0), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/comments")));
+
+        prgo.review(null, "APPROVE", null, reviewComments(PullRequestGroovyObject.REVIEW_COMMENTS_PER_REQUEST + 1),
+            "Continued below");
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews"))
+            .withRequestBody(matchingJsonPath("$.body", equalTo("Continued below"))));
+    }
+
+    @Test
+    public void testFailedReviewPartTellsWhichPartsWereSubmitted() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews"))
+            .inScenario("review")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willSetStateTo("failing")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"id\":7}")));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews"))
+            .inScenario("review")
+            .whenScenarioStateIs("failing")
+            .willReturn(aResponse()
+                .withStatus(422)
+                .withBody("{\"message\":\"Validation Failed\"}")));
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job);
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> prgo.review(null, "APPROVE", null,
+            reviewComments(2 * PullRequestGroovyObject.REVIEW_COMMENTS_PER_REQUEST + 1)));
+        assertTrue(e.getMessage().contains("part 2 of 3"), e.getMessage());
+        assertTrue(e.getMessage().contains("[7]"), e.getMessage());
+        verify(exactly(2), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/pulls/42/reviews")));
+    }
+
+    private static List<Map<String, Object>> reviewComments(final int count) {
+        List<Map<String, Object>> comments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> comment = new LinkedHashMap<>();
+            comment.put("path", "src/File" + i + ".java");
+            comment.put("line", i + 1);
+            comment.put("body", "finding " + i);
+            comments.add(comment);
+        }
+        return comments;
+    }
+
+    @Test
+    public void testStatusWritesAreDeduplicatedAndCoalesced() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestBranchHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        String path = "/api/v3/repos/owner/repo/statuses/abc";
+        stubFor(post(urlPathMatching(path))
+            .willReturn(aResponse()
+                .withStatus(201)
+                .withBody("{\"id\":1,\"state\":\"pending\",\"context\":\"ci\",\"creator\":{\"login\":\"bot\"}}")));
+        PullRequestSCMHead head = (PullRequestSCMHead) SCMHead.HeadByItem.findHead(job);
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job, null,
+            new PullRequestSCMRevision(head, "123", "abc"));
+        long skipped = SkippedWrites.getCount("createStatus");
+
+        // an identical status is not sent again
+        assertEquals("bot", prgo.createStatus("pending", "ci", "building", null).getCreator());
+        assertEquals("bot", prgo.createStatus("pending", "ci", "building", null).getCreator());
+        verify(exactly(1), postRequestedFor(urlPathMatching(path)));
+
+        // rapid pending updates are held, the latest one is returned
+        prgo.createStatus("pending", "ci", "step 2", null);
+        CommitStatusGroovyObject held = prgo.createStatus("pending", "ci", "step 3", null);
+        assertEquals("step 3", held.getDescription());
+        assertNull(held.getCreator());
+        verify(exactly(1), postRequestedFor(urlPathMatching(path)));
+
+        // a final state is sent right away, replacing them
+        prgo.createStatus("success", "ci", "done", null);
+        verify(exactly(2), postRequestedFor(urlPathMatching(path)));
+        verify(exactly(1), postRequestedFor(urlPathMatching(path))
+            .withRequestBody(containing("\"state\":\"success\"")));
+        verify(exactly(0), postRequestedFor(urlPathMatching(path)).withRequestBody(containing("step")));
+        assertEquals(skipped + 2, SkippedWrites.getCount("createStatus"));
+
+        // held statuses are sent when the build completes
+        prgo.createStatus("pending", "lint", "started", null);
+        prgo.createStatus("pending", "lint", "half way", null);
+        verify(exactly(3), postRequestedFor(urlPathMatching(path)));
+        CommitStatusWriter.flush(job.getFullName());
+        verify(exactly(1), postRequestedFor(urlPathMatching(path))
+            .withRequestBody(containing("half way")));
+    }
+
+    @Test
+    public void testStatusWritesAreTrackedPerBuild() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestBranchHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        String path = "/api/v3/repos/owner/repo/statuses/abc";
+        stubFor(post(urlPathMatching(path))
+            .willReturn(aResponse()
+                .withStatus(201)
+                .withBody("{\"id\":1,\"state\":\"pending\",\"context\":\"ci\"}")));
+        job.setDefinition(new CpsFlowDefinition("", true));
+        WorkflowRun first = r.buildAndAssertSuccess(job);
+        WorkflowRun second = r.buildAndAssertSuccess(job);
+        PullRequestSCMHead head = (PullRequestSCMHead) SCMHead.HeadByItem.findHead(job);
+        PullRequestSCMRevision revision = new PullRequestSCMRevision(head, "123", "abc");
+        PullRequestGroovyObject one = new PullRequestGroovyObject(first, null, revision);
+        PullRequestGroovyObject two = new PullRequestGroovyObject(second, null, revision);
+
+        // each build sends its own status
+        one.createStatus("pending", "ci", "building", null);
+        two.createStatus("pending", "ci", "building", null);
+        verify(exactly(2), postRequestedFor(urlPathMatching(path)));
+
+        // and keeps what it wrote when the other one completes
+        CommitStatusWriter.flush(first.getExternalizableId());
+        two.createStatus("pending", "ci", "building", null);
+        verify(exactly(2), postRequestedFor(urlPathMatching(path)));
+        CommitStatusWriter.flush(second.getExternalizableId());
+    }
+
+    @Test
+    public void testPipelineCallsTheSamePullRequestFromParallelSteps() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(post(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withFixedDelay(200)
+                .withBody("[{\"name\":\"lint\"},{\"name\":\"test\"}]")));
+
+        // both branches share the pull request, its labels are the last write's once both are done
+        job.setDefinition(new CpsFlowDefinition(
+            "parallel lint: {\n"
+                + "  githubApi target: pullRequest, method: 'addLabels', args: [['lint']]\n"
+                + "}, test: {\n"
+                + "  githubApi target: pullRequest, method: 'addLabels', args: [['test']]\n"
+                + "}\n"
+                + "githubApi target: pullRequest, method: 'addLabels', args: [['lint', 'test']]\n",
+            true));
+        r.buildAndAssertSuccess(job);
+
+        verify(exactly(2), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels")));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .withRequestBody(equalToJson("[\"lint\"]")));
+        verify(exactly(1), postRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .withRequestBody(equalToJson("[\"test\"]")));
+    }
+
+    @Test
+    public void testSlowCallDoesNotHoldUpOtherCallsOnTheSamePullRequest() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        r.jenkins.getExtensionList(SCMHead.HeadByItem.class).add(new TestHeadByItemImpl());
+        r.jenkins.getExtensionList(SCMSource.SourceByItem.class).add(new TestSourceByItemImpl(wireMockRule.port()));
+        stubFor(get(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withFixedDelay(2000)
+                .withBody("[{\"name\":\"bug\"}]")));
+        PullRequestSnapshot snapshot = PullRequestSnapshot.of(new ObjectMapper().readTree(
+            "{\"number\":42,\"title\":\"from webhook\"}"));
+        PullRequestGroovyObject prgo = new PullRequestGroovyObject(job, snapshot, null);
+
+        CompletableFuture<Object> labels = CompletableFuture.supplyAsync(
+            () -> GitHubApiStep.invoke(prgo, "getLabels", Collections.emptyList()));
+        while (findAll(getRequestedFor(urlPathMatching("/api/v3/repos/owner/repo/issues/42/labels"))).isEmpty()) {
+            Thread.sleep(10);
+        }
+
+        // answered while the labels are still being read
+        assertEquals("from webhook", GitHubApiStep.invoke(prgo, "getTitle", Collections.emptyList()));
+        assertFalse(labels.isDone());
+        assertEquals(Collections.singletonList("bug"), labels.get());
+    }
+}
@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.pipeline.github;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMRevision;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class PullRequestSnapshotTest {
+
+    private static final PullRequestSCMHead HEAD =
+        new PullRequestSCMHead("PR-42", "owner", "repo", null, 42, null, null, null);
+
+    @Test
+    public void testSnapshotIsCurrentOnlyForTheHeadItWasTakenOf() throws Exception {
+        PullRequestSnapshot snapshot = PullRequestSnapshot.of(new ObjectMapper().readTree(
+            "{\"number\":42,\"title\":\"from webhook\",\"head\":{\"sha\":\"abc\"}}"));
+
+        assertTrue(snapshot.isCurrent(new PullRequestSCMRevision(HEAD, "123", "abc")));
+        assertFalse(snapshot.isCurrent(new PullRequestSCMRevision(HEAD, "123", "def")));
+        assertFalse(snapshot.isCurrent(null));
+    }
+
+    @Test
+    public void testSnapshotWithoutHeadIsNotCurrent() throws Exception {
+        // the issue of an issue comment event has no head, it can't be told what the build checked out
+        PullRequestSnapshot snapshot = PullRequestSnapshot.of(new ObjectMapper().readTree(
+            "{\"number\":42,\"title\":\"from webhook\",\"state\":\"open\",\"labels\":[]}"));
+
+        assertFalse(snapshot.isCurrent(new PullRequestSCMRevision(HEAD, "123", "abc")));
+        assertFalse(snapshot.isCurrent(null));
+    }
+}
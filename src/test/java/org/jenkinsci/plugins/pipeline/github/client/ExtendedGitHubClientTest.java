@@ -0,0 +1,174 @@
+package org.jenkinsci.plugins.pipeline.github.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.delete;
+import static com.github.tomakehurst.wiremock.client.WireMock.deleteRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.patch;
+import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class ExtendedGitHubClientTest {
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule();
+
+    private ExtendedGitHubClient client() {
+        return new ExtendedGitHubClient("localhost", wireMockRule.port(), "http");
+    }
+
+    @Test
+    public void testEditPullRequestSendsPatch() {
+        stubFor(patch(urlPathEqualTo("/api/v3/repos/owner/repo/pulls/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"title\":\"new title\"}")));
+
+        ExtendedPullRequest edit = new ExtendedPullRequest();
+        edit.setNumber(42);
+        edit.setTitle("new title");
+        ExtendedPullRequest pr = new ExtendedPullRequestService(client())
+            .editPullRequest(RepositoryId.create("owner", "repo"), edit);
+
+        assertEquals("new title", pr.getTitle());
+        verify(patchRequestedFor(urlPathEqualTo("/api/v3/repos/owner/repo/pulls/42"))
+            .withRequestBody(equalToJson("{\"title\":\"new title\"}")));
+    }
+
+    @Test
+    public void testDeleteSendsBody() throws Exception {
+        stubFor(delete(urlPathEqualTo("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .willReturn(aResponse().withStatus(200).withBody("{}")));
+
+        new ExtendedIssueService(client())
+            .removeAssignees(RepositoryId.create("owner", "repo"), 42, Arrays.asList("spock"));
+
+        verify(deleteRequestedFor(urlPathEqualTo("/api/v3/repos/owner/repo/issues/42/assignees"))
+            .withRequestBody(equalToJson("{\"assignees\":[\"spock\"]}")));
+    }
+
+    @Test
+    public void testGzipResponseAndCredentials() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write("{\"number\":42,\"base\":{\"sha\":\"abc\"}}".getBytes(StandardCharsets.UTF_8));
+        }
+        stubFor(get(urlPathEqualTo("/api/v3/repos/owner/repo/pulls/42"))
+            .withHeader("Authorization", equalTo("token secret"))
+            .withHeader("Accept-Encoding", equalTo("gzip"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Encoding", "gzip")
+                .withHeader("X-RateLimit-Limit", "5000")
+                .withHeader("X-RateLimit-Remaining", "4999")
+                .withBody(compressed.toByteArray())));
+
+        ExtendedGitHubClient client = client();
+        client.setOAuth2Token("secret");
+        ExtendedPullRequest pr = new ExtendedPullRequestService(client)
+            .getPullRequest(RepositoryId.create("owner", "repo"), 42);
+
+        assertEquals("abc", pr.getBase().getSha());
+        assertEquals(4999, client.getRemainingRequests());
+    }
+
+    @Test
+    public void testConditionalGetServedFromCache() {
+        stubFor(get(urlPathEqualTo("/api/v3/repos/owner/repo/pulls/42"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("ETag", "\"v1\"")
+                .withBody("{\"number\":42,\"title\":\"cached\"}")));
+        stubFor(get(urlPathEqualTo("/api/v3/repos/owner/repo/pulls/42"))
+            .withHeader("If-None-Match", equalTo("\"v1\""))
+            .willReturn(aResponse()
+                .withStatus(304)
+                .withHeader("X-RateLimit-Remaining", "4998")));
+
+        ResponseCache cache = new ResponseCache(1024 * 1024, 1024 * 1024);
+        ExtendedGitHubClient client = client().setResponseCache(cache);
+        ExtendedPullRequestService service = new ExtendedPullRequestService(client);
+
+        assertEquals("cached", service.getPullRequest(RepositoryId.create("owner", "repo"), 42).getTitle());
+        assertEquals("cached", service.getPullRequest(RepositoryId.create("owner", "repo"), 42).getTitle());
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getNotModifiedCount());
+        assertEquals(4998, client.getRemainingRequests());
+    }
+
+    @Test
+    public void testRetryAfterIsHonoured() {
+        stubFor(get(urlPathEqualTo("/api/v3/repos/owner/repo/pulls/42"))
+            .inScenario("secondary rate limit")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse()
+                .withStatus(403)
+                .withHeader("Retry-After", "1")
+                .withBody("{\"message\":\"You have exceeded a secondary rate limit.\"}"))
+            .willSetStateTo("recovered"));
+        stubFor(get(urlPathEqualTo("/api/v3/repos/owner/repo/pulls/42"))
+            .inScenario("secondary rate limit")
+            .whenScenarioStateIs("recovered")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("{\"number\":42,\"title\":\"retried\"}")));
+
+        ExtendedGitHubClient client = client().setResponseCache(null);
+        client.setOAuth2Token("retry-after-token");
+        long start = System.nanoTime();
+        ExtendedPullRequest pr = new ExtendedPullRequestService(client)
+            .getPullRequest(RepositoryId.create("owner", "repo"), 42);
+
+        assertEquals("retried", pr.getTitle());
+        assertTrue(System.nanoTime() - start >= 900_000_000L, "should wait for Retry-After");
+        verify(exactly(2), getRequestedFor(urlPathEqualTo("/api/v3/repos/owner/repo/pulls/42")));
+    }
+
+    @Test
+    public void testPageCommentsSince() {
+        stubFor(get(urlPathEqualTo("/api/v3/repos/owner/repo/issues/42/comments"))
+            .withQueryParam("since", equalTo("2024-01-02T03:04:05Z"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withBody("[{\"id\":7,\"body\":\"retest\",\"updated_at\":\"2024-01-02T03:05:00Z\"}]")));
+
+        List<Comment> comments = new ArrayList<>();
+        new ExtendedIssueService(client())
+            .pageComments(RepositoryId.create("owner", "repo"), 42, new Date(1704164645123L))
+            .forEach(comments::addAll);
+
+        assertEquals(1, comments.size());
+        assertEquals(7, comments.get(0).getId());
+        verify(getRequestedFor(urlPathEqualTo("/api/v3/repos/owner/repo/issues/42/comments"))
+            .withQueryParam("per_page", equalTo("100")));
+    }
+}
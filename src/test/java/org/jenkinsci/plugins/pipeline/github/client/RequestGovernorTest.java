@@ -0,0 +1,137 @@
+package org.jenkinsci.plugins.pipeline.github.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class RequestGovernorTest {
+
+    private static GitHubTransport.Response retryAfter(final int seconds) {
+        Map<String, List<String>> headers = Collections.singletonMap("Retry-After",
+            Collections.singletonList(String.valueOf(seconds)));
+        return new GitHubTransport.Response(URI.create("https://api.github.com/"), 429, headers, null);
+    }
+
+    @Test
+    public void testCpsVmThreadFailsFastWhenGitHubAsksToWait() throws Exception {
+        RequestGovernor governor = new RequestGovernor();
+        assertTrue(governor.update(retryAfter(30)));
+
+        long start = System.nanoTime();
+        IOException e = assertThrows(IOException.class,
+            () -> governor.acquire(RequestGovernor.Priority.CRITICAL, true));
+        assertTrue(e.getMessage().contains("githubApi"));
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        assertEquals(0, governor.getQueueDepth());
+    }
+
+    @Test
+    public void testCpsVmThreadIsNotHeldByOwnPacing() throws Exception {
+        RequestGovernor governor = new RequestGovernor();
+
+        // more mutations than the burst allows, the ones over it go out after the short wait
+        long start = System.nanoTime();
+        for (int i = 0; i < RequestGovernor.MUTATION_BURST + 2; i++) {
+            governor.acquire(RequestGovernor.Priority.MUTATING, true);
+        }
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+
+    @Test
+    public void testWorkDoneForTheCpsVmThreadFailsFastWhenGitHubAsksToWait() throws Exception {
+        RequestGovernor governor = new RequestGovernor();
+        assertTrue(governor.update(retryAfter(30)));
+
+        // e.g. a page prefetched while the CPS VM thread waits for it
+        long start = System.nanoTime();
+        RequestGovernor.Context cps = new RequestGovernor.Context(RequestGovernor.Priority.CRITICAL, true);
+        try (RequestGovernor.Scope scope = cps.enter()) {
+            assertThrows(IOException.class, () -> governor.acquire(RequestGovernor.Priority.CRITICAL));
+        }
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        assertFalse(RequestGovernor.currentContext().isCpsVmThread());
+    }
+
+    @Test
+    public void testInfrastructureWorkIsDeferredWhenGitHubAsksToWait() throws Exception {
+        RequestGovernor governor = new RequestGovernor();
+        assertTrue(governor.update(retryAfter(30)));
+
+        long start = System.nanoTime();
+        try (RequestGovernor.Scope scope = RequestGovernor.forInfrastructure()) {
+            RequestGovernor.HeldBackException e = assertThrows(RequestGovernor.HeldBackException.class,
+                () -> governor.acquire(RequestGovernor.Priority.MUTATING));
+            assertTrue(e.getHeldMillis() > 0 && e.getHeldMillis() <= 30_000L);
+        }
+        // without waiting for a hold that outlasts the wait
+        long waited = System.nanoTime() - start;
+        assertTrue(waited < TimeUnit.MILLISECONDS.toNanos(RequestGovernor.INFRASTRUCTURE_MAX_WAIT_MILLIS));
+        assertFalse(RequestGovernor.currentContext().isInfrastructure());
+    }
+
+    @Test
+    public void testWaitersGoInOrderOfPriority() throws Exception {
+        RequestGovernor governor = new RequestGovernor();
+        // held back for a second, after which only a mutation may go until the reset
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("Retry-After", Collections.singletonList("1"));
+        headers.put("X-RateLimit-Limit", Collections.singletonList("5000"));
+        headers.put("X-RateLimit-Remaining", Collections.singletonList(String.valueOf(
+            RequestGovernor.CRITICAL_RESERVE + 1)));
+        headers.put("X-RateLimit-Reset", Collections.singletonList(String.valueOf(
+            System.currentTimeMillis() / 1000 + 4)));
+        assertTrue(governor.update(new GitHubTransport.Response(URI.create("https://api.github.com/"), 429,
+            headers, null)));
+
+        CompletableFuture<Void> critical = CompletableFuture.runAsync(() -> acquire(governor,
+            RequestGovernor.Priority.CRITICAL));
+        while (governor.getQueueDepth() < 1) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<Void> mutating = CompletableFuture.runAsync(() -> acquire(governor,
+            RequestGovernor.Priority.MUTATING));
+
+        // the mutation came later but goes first, leaving the critical read waiting for the reset
+        mutating.get(10, TimeUnit.SECONDS);
+        assertFalse(critical.isDone());
+        critical.get(10, TimeUnit.SECONDS);
+    }
+
+    private static void acquire(final RequestGovernor governor, final RequestGovernor.Priority p) {
+        try {
+            governor.acquire(p, false);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void testParallelismFollowsTheBudget() throws Exception {
+        RequestGovernor governor = new RequestGovernor();
+        assertEquals(4, governor.parallelism(RequestGovernor.Priority.CRITICAL, 4));
+
+        // all but two tokens used up
+        for (int i = 0; i < RequestGovernor.REQUEST_BURST - 2; i++) {
+            governor.acquire(RequestGovernor.Priority.CRITICAL, false);
+        }
+        assertTrue(governor.parallelism(RequestGovernor.Priority.CRITICAL, 4) < 4);
+
+        assertTrue(governor.update(retryAfter(30)));
+        assertEquals(1, governor.parallelism(RequestGovernor.Priority.CRITICAL, 4));
+    }
+}
@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.Cause;
+import hudson.model.ParameterValue;
+import hudson.model.StringParameterValue;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class BuildCoalescerTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testMergeKeepsLastValueAndListsAll() {
+        List<ParameterValue> merged = BuildCoalescer.merge(Arrays.asList(
+            Collections.singletonList(new StringParameterValue("GITHUB_LABEL_ADDED", "bug")),
+            Collections.singletonList(new StringParameterValue("GITHUB_LABEL_ADDED", "ci")),
+            Collections.singletonList(new StringParameterValue("GITHUB_LABEL_ADDED", "urgent"))));
+
+        Map<String, Object> values = merged.stream()
+            .collect(Collectors.toMap(ParameterValue::getName, ParameterValue::getValue));
+        assertEquals(2, values.size());
+        assertEquals("urgent", values.get("GITHUB_LABEL_ADDED"));
+        assertEquals("bug\nci\nurgent", values.get("GITHUB_LABELS_ADDED"));
+    }
+
+    @Test
+    public void testEventsWithinTheWindowMakeOneBuild() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        job.setDefinition(new CpsFlowDefinition("", true));
+
+        for (int i = 0; i < 3; i++) {
+            label(job, "label" + i, 1000L);
+        }
+        // the build is scheduled once the window closes
+        Thread.sleep(1500L);
+        r.waitUntilNoActivityUpTo(30_000);
+
+        assertEquals(1, job.getBuilds().size());
+        WorkflowRun run = job.getLastBuild();
+        assertEquals(3, run.getCauses().size());
+        assertEquals("label0\nlabel1\nlabel2",
+            run.getAction(GitHubEnvironmentVariablesAction.class).getParameter("GITHUB_LABELS_ADDED").getValue());
+    }
+
+    @Test
+    public void testEventsOutsideTheWindowMakeTwoBuilds() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "p");
+        job.setDefinition(new CpsFlowDefinition("", true));
+
+        label(job, "first", 100L);
+        Thread.sleep(500L);
+        r.waitUntilNoActivityUpTo(30_000);
+        label(job, "second", 100L);
+        Thread.sleep(500L);
+        r.waitUntilNoActivityUpTo(30_000);
+
+        assertEquals(2, job.getBuilds().size());
+    }
+
+    private static void label(final WorkflowJob job, final String label, final long windowMillis) {
+        BuildCoalescer.schedule(job, LabelAddedTrigger.class, new Cause.RemoteCause("github", label),
+            Collections.singletonList(new StringParameterValue("GITHUB_LABEL_ADDED", label)), null, windowMillis);
+    }
+}
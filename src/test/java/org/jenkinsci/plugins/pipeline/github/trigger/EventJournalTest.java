@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.jenkinsci.plugins.pipeline.github.trigger.TriggerRegistry.PullRequestKey;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class EventJournalTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testActivityIsHandledOnce() {
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 1);
+
+        assertTrue(EventJournal.record(key, "comment:1", 1000L));
+        assertFalse(EventJournal.record(key, "comment:1", 1000L));
+        assertTrue(EventJournal.record(key, "review:1", 500L));
+        assertEquals(1000L, (long) EventJournal.getLastSeen(key));
+        assertNull(EventJournal.getLastSeen(PullRequestKey.of("owner", "repo", 2)));
+    }
+
+    @Test
+    public void testJournalIsReloaded() {
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 3);
+        long before = System.currentTimeMillis();
+        EventJournal.record(key, "comment:3", before);
+        EventJournal.close();
+
+        EventJournal.load();
+
+        assertTrue(EventJournal.getPreviousCheckpoint() >= before);
+        assertEquals(before, (long) EventJournal.getLastSeen(key));
+        assertFalse(EventJournal.record(key, "comment:3", before));
+        assertTrue(EventJournal.record(key, "comment:4", before));
+    }
+
+    @Test
+    public void testJournalIsCompactedOnceItGrows() {
+        File journal = new File(r.jenkins.getRootDir(), EventJournal.class.getName() + ".log");
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 5);
+        long before = System.currentTimeMillis();
+        EventJournal.record(key, "comment:5", before);
+        for (int i = 0; i < 100; i++) {
+            EventJournal.checkpoint();
+        }
+        long grown = journal.length();
+
+        EventJournal.compact(0);
+        assertTrue(journal.length() < grown / 10);
+
+        // and keeps what it had
+        EventJournal.close();
+        EventJournal.load();
+        assertEquals(before, (long) EventJournal.getLastSeen(key));
+        assertFalse(EventJournal.record(key, "comment:5", before));
+    }
+
+    @Test
+    public void testPendingEventsAreKeptUntilCaughtUp() {
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 6);
+        long now = System.currentTimeMillis();
+        EventJournal.record(key, "comment:6", now);
+        EventJournal.pending(key, now - 1000);
+        EventJournal.pending(key, now - 2000);
+        EventJournal.close();
+
+        // the oldest one, and the last seen time is not moved by them
+        EventJournal.load();
+        assertEquals(now - 2000, (long) EventJournal.getPending(key));
+        assertEquals(now, (long) EventJournal.getLastSeen(key));
+
+        EventJournal.caughtUp(key);
+        assertNull(EventJournal.getPending(key));
+        EventJournal.close();
+        EventJournal.load();
+        assertNull(EventJournal.getPending(key));
+    }
+
+    @Test
+    public void testIdsAreKeptPerPullRequest() {
+        PullRequestKey quiet = PullRequestKey.of("owner", "repo", 7);
+        PullRequestKey busy = PullRequestKey.of("owner", "repo", 8);
+        long now = System.currentTimeMillis();
+        assertTrue(EventJournal.record(quiet, "comment:7", now - 500));
+        for (int i = 0; i <= EventJournal.MAX_IDS; i++) {
+            assertTrue(EventJournal.record(busy, "comment:8-" + i, now + i));
+        }
+
+        // a busy pull request doesn't push out the ids of others, and its own oldest are still handled once
+        assertFalse(EventJournal.record(quiet, "comment:7", now - 500));
+        assertFalse(EventJournal.record(busy, "comment:8-0", now));
+        assertTrue(EventJournal.record(busy, "comment:8-new", now + EventJournal.MAX_IDS + 1));
+
+        EventJournal.close();
+        EventJournal.load();
+        assertFalse(EventJournal.record(quiet, "comment:7", now - 500));
+        assertFalse(EventJournal.record(busy, "comment:8-0", now));
+        assertFalse(EventJournal.record(busy, "comment:8-1", now + 1));
+    }
+
+    @Test
+    public void testRetriedActivityIsHandledAgain() {
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 9);
+        long now = System.currentTimeMillis();
+        assertTrue(EventJournal.record(key, "comment:9", now));
+
+        EventJournal.retry(key, "comment:9");
+        EventJournal.close();
+        EventJournal.load();
+
+        assertTrue(EventJournal.record(key, "comment:9", now));
+        assertFalse(EventJournal.record(key, "comment:9", now));
+    }
+}
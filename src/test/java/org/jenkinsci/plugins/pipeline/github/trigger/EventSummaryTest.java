@@ -0,0 +1,45 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class EventSummaryTest {
+
+    @Test
+    public void testIssueComment() throws Exception {
+        EventSummary summary = EventSummary.parse("{\"action\":\"created\","
+            + "\"issue\":{\"url\":\"x\",\"number\":7,\"user\":{\"login\":\"kirk\"},\"labels\":[{\"number\":1}]},"
+            + "\"comment\":{\"body\":\"retest\"},"
+            + "\"repository\":{\"id\":1,\"name\":\"Hello-World\",\"owner\":{\"id\":2,\"login\":\"Octo\"}}}");
+
+        assertEquals("created", summary.getAction());
+        assertEquals("octo/hello-world", summary.getRepository());
+        assertEquals(TriggerRegistry.PullRequestKey.of("octo", "hello-world", 7), summary.getKey());
+    }
+
+    @Test
+    public void testPullRequestNumberWinsOverNestedNumbers() throws Exception {
+        EventSummary summary = EventSummary.parse("{\"pull_request\":{\"number\":3},\"number\":3,"
+            + "\"action\":\"labeled\",\"repository\":{\"owner\":{\"login\":\"octo\"},\"name\":\"repo\"}}");
+
+        assertEquals("labeled", summary.getAction());
+        assertEquals("octo/repo/3", summary.getKey().toString());
+    }
+
+    @Test
+    public void testPayloadWithoutRepository() throws Exception {
+        EventSummary summary = EventSummary.parse("{\"zen\":\"Keep it logically awesome.\"}");
+
+        assertNull(summary.getRepository());
+        assertNull(summary.getKey());
+        assertThrows(IOException.class, () -> EventSummary.parse("[]"));
+    }
+}
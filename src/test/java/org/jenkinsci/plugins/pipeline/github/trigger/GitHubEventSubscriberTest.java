@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.jenkinsci.plugins.pipeline.github.trigger.TriggerRegistry.PullRequestKey;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class GitHubEventSubscriberTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testLabelTriggersJobsAfterOneThatDoesNotMatch() throws Exception {
+        WorkflowJob other = r.createProject(WorkflowJob.class, "other");
+        other.setDefinition(new CpsFlowDefinition("", true));
+        other.addTrigger(new LabelAddedTrigger("other"));
+        WorkflowJob bug = r.createProject(WorkflowJob.class, "bug");
+        bug.setDefinition(new CpsFlowDefinition("", true));
+        bug.addTrigger(new LabelAddedTrigger("bug"));
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 1);
+        TriggerRegistry.register(LabelAddedTrigger.class, key, other);
+        TriggerRegistry.register(LabelAddedTrigger.class, key, bug);
+
+        GitHubEventSubscriber.onLabelAdded(key, "bug", "octocat", null);
+        r.waitUntilNoActivityUpTo(30_000);
+
+        // the job whose trigger doesn't match comes first, and must not stop the ones after it
+        assertEquals(0, other.getBuilds().size());
+        assertEquals(1, bug.getBuilds().size());
+    }
+}
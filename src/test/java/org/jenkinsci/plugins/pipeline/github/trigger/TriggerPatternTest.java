@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.properties.PipelineTriggersJobProperty;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.triggers.Trigger;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class TriggerPatternTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testLiteralAndRegexPatterns() {
+        TriggerPattern literal = new TriggerPattern("retest");
+        assertTrue(literal.isLiteral());
+        assertTrue(literal.matches("retest"));
+        assertFalse(literal.matches("please retest"));
+
+        TriggerPattern regex = new TriggerPattern(".*test this please.*");
+        assertFalse(regex.isLiteral());
+        assertTrue(regex.matches("ok, test this please!"));
+        assertFalse(regex.matches("test that please"));
+    }
+
+    @Test
+    public void testMayMatchChecksAllTriggersOfAPullRequest() throws Exception {
+        TriggerRegistry.PullRequestKey key = TriggerRegistry.PullRequestKey.of("owner", "repo", 7);
+        List<WorkflowJob> jobs = new ArrayList<>();
+        int i = 0;
+        for (String pattern : Arrays.asList("retest", ".*deploy (staging|prod).*", "(?i)LGTM")) {
+            WorkflowJob job = r.createProject(WorkflowJob.class, "job" + i++);
+            job.addProperty(new PipelineTriggersJobProperty(
+                Collections.<Trigger<?>>singletonList(new IssueCommentTrigger(pattern)))));
+            jobs.add(job);
+        }
+
+        assertTrue(TriggerPattern.mayMatch(IssueCommentTrigger.class, key, jobs, "retest"));
+        assertTrue(TriggerPattern.mayMatch(IssueCommentTrigger.class, key, jobs, "please deploy prod now"));
+        assertTrue(TriggerPattern.mayMatch(IssueCommentTrigger.class, key, jobs, "lgtm"));
+        assertFalse(TriggerPattern.mayMatch(IssueCommentTrigger.class, key, jobs, "nice work"));
+        assertFalse(TriggerPattern.mayMatch(LabelAddedTrigger.class, key, jobs, "retest"));
+    }
+
+    @Test
+    public void testReviewStatesMayBeUnset() {
+        PullRequestReviewTrigger trigger = new PullRequestReviewTrigger();
+        assertTrue(trigger.matches("approved"));
+        trigger.setReviewStates(new String[] {"approved"});
+        assertTrue(trigger.matches("approved"));
+        assertFalse(trigger.matches("commented"));
+    }
+}
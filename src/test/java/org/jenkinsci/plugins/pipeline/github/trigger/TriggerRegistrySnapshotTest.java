@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import hudson.triggers.Trigger;
+import org.jenkinsci.plugins.pipeline.github.trigger.TriggerRegistry.PullRequestKey;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.properties.PipelineTriggersJobProperty;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsSessionRule;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class TriggerRegistrySnapshotTest {
+
+    @Rule
+    public JenkinsSessionRule sessions = new JenkinsSessionRule();
+
+    @Test
+    public void testRegistrationsSurviveRestart() throws Throwable {
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 1);
+        sessions.then(r -> {
+            WorkflowJob kept = r.createProject(WorkflowJob.class, "kept");
+            kept.addProperty(new PipelineTriggersJobProperty(
+                    Collections.<Trigger<?>>singletonList(new IssueCommentTrigger(".*test.*"))));
+            // no longer has the trigger after the restart
+            WorkflowJob dropped = r.createProject(WorkflowJob.class, "dropped");
+
+            TriggerRegistry.register(IssueCommentTrigger.class, key, kept);
+            TriggerRegistry.register(IssueCommentTrigger.class, key, dropped);
+            TriggerRegistry.register(LabelAddedTrigger.class, PullRequestKey.of("owner", "repo", 2), dropped);
+            TriggerRegistrySnapshot.flush();
+        });
+        sessions.then(r -> {
+            WorkflowJob kept = r.jenkins.getItemByFullName("kept", WorkflowJob.class);
+            assertEquals(Collections.singletonList(kept), TriggerRegistry.getJobs(IssueCommentTrigger.class, key));
+            assertTrue(TriggerRegistry.hasJobs(key));
+            assertTrue(TriggerRegistry.getJobs(LabelAddedTrigger.class, PullRequestKey.of("owner", "repo", 2))
+                    .isEmpty());
+            assertEquals(Collections.singleton(key), TriggerRegistry.getPullRequests("owner/repo"));
+        });
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsRead() throws Throwable {
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 3);
+        sessions.then(r -> {
+            WorkflowJob job = r.createProject(WorkflowJob.class, "job");
+            job.addProperty(new PipelineTriggersJobProperty(
+                    Collections.<Trigger<?>>singletonList(new IssueCommentTrigger("test"))));
+            TriggerRegistry.register(IssueCommentTrigger.class, key, job);
+            TriggerRegistrySnapshot.flush();
+            TriggerRegistry.register(IssueCommentTrigger.class, PullRequestKey.of("owner", "repo", 4), job);
+            TriggerRegistrySnapshot.close();
+
+            // cut the last record short, as if Jenkins crashed while appending it
+            Path snapshot = r.jenkins.getRootDir().toPath()
+                    .resolve(TriggerRegistry.class.getName() + ".snapshot");
+            byte[] bytes = Files.readAllBytes(snapshot);
+            Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 3));
+        });
+        sessions.then(r -> {
+            WorkflowJob job = r.jenkins.getItemByFullName("job", WorkflowJob.class);
+            assertEquals(Collections.singletonList(job), TriggerRegistry.getJobs(IssueCommentTrigger.class, key));
+            assertTrue(TriggerRegistry.getJobs(IssueCommentTrigger.class, PullRequestKey.of("owner", "repo", 4))
+                    .isEmpty());
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.jenkinsci.plugins.pipeline.github.trigger.TriggerRegistry.PullRequestKey;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class TriggerRegistryTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testKeysAreCaseInsensitive() {
+        PullRequestKey key = PullRequestKey.of("Owner", "Repo", 42);
+        assertEquals(key, PullRequestKey.parse("owner/repo/42"));
+        assertEquals(key.hashCode(), PullRequestKey.parse("OWNER/REPO/42").hashCode());
+        assertEquals("owner/repo", key.getRepository());
+        assertEquals("owner/repo/42", key.toString());
+    }
+
+    @Test
+    public void testRegisterAndUnregister() throws Exception {
+        WorkflowJob a = r.createProject(WorkflowJob.class, "a");
+        WorkflowJob b = r.createProject(WorkflowJob.class, "b");
+        PullRequestKey key = PullRequestKey.of("owner", "repo", 1);
+
+        TriggerRegistry.register(IssueCommentTrigger.class, key, a);
+        TriggerRegistry.register(IssueCommentTrigger.class, key, b);
+        TriggerRegistry.register(LabelAddedTrigger.class, key, a);
+
+        assertEquals(Arrays.asList(a, b), TriggerRegistry.getJobs(IssueCommentTrigger.class, key));
+        assertTrue(TriggerRegistry.getJobs(PullRequestReviewTrigger.class, key).isEmpty());
+        assertTrue(TriggerRegistry.getPullRequests("Owner/Repo").contains(key));
+
+        // registering the same job again replaces it
+        TriggerRegistry.register(IssueCommentTrigger.class, key, a);
+        assertEquals(2, TriggerRegistry.getJobs(IssueCommentTrigger.class, key).size());
+
+        TriggerRegistry.unregister(IssueCommentTrigger.class, key, a);
+        TriggerRegistry.unregister(IssueCommentTrigger.class, key, b);
+        assertTrue(TriggerRegistry.getJobs(IssueCommentTrigger.class, key).isEmpty());
+        assertTrue(TriggerRegistry.hasJobs(key));
+
+        TriggerRegistry.unregister(LabelAddedTrigger.class, key, a);
+        assertFalse(TriggerRegistry.hasJobs(key));
+        assertTrue(TriggerRegistry.getPullRequests("owner/repo").isEmpty());
+    }
+}
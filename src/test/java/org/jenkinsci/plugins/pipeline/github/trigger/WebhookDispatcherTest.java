@@ -0,0 +1,146 @@
+package org.jenkinsci.plugins.pipeline.github.trigger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jenkinsci.plugins.pipeline.github.client.RequestGovernor;
+import org.junit.Test;
+
+/**
+ * @author Aaron Whiteside
+ */
+public class WebhookDispatcherTest {
+
+    @Test
+    public void testEventsOfOneRepositoryAreHandledInOrder() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(4, 100);
+        try {
+            List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(50);
+            for (int i = 0; i < 50; i++) {
+                final int n = i;
+                dispatcher.dispatch("octo/hello-world", () -> {
+                    handled.add(n);
+                    done.countDown();
+                }, () -> { });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i, handled.get(i).intValue());
+            }
+            assertEquals(50, dispatcher.getSubmittedCount());
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void testEventsOverAFullLaneAreQueuedNotDropped() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // one event handled, one queued, the lane is full
+            dispatcher.dispatch("octo/hello-world", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, () -> { });
+            dispatcher.dispatch("octo/hello-world", () -> { }, () -> { });
+            while (dispatcher.getQueueDepth() < 1) {
+                Thread.sleep(10);
+            }
+
+            CountDownLatch handled = new CountDownLatch(1);
+            dispatcher.dispatch("octo/hello-world", handled::countDown, () -> { });
+            assertEquals(1, dispatcher.getOverflowedCount());
+            assertEquals(2, dispatcher.getQueueDepth());
+
+            release.countDown();
+            assertTrue(handled.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            dispatcher.close();
+        }
+        assertEquals(3, dispatcher.getCompletedCount());
+        assertEquals(0, dispatcher.getAbandonedCount());
+    }
+
+    @Test
+    public void testEventsLeftAtShutdownAreAbandoned() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(1, 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> abandoned = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean handled = new AtomicBoolean();
+        dispatcher.dispatch("octo/hello-world", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> abandoned.add("first"));
+        dispatcher.dispatch("octo/hello-world", () -> handled.set(true), () -> abandoned.add("queued"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        dispatcher.close(50, TimeUnit.MILLISECONDS);
+        dispatcher.dispatch("octo/hello-world", () -> handled.set(true), () -> abandoned.add("late"));
+
+        assertFalse(handled.get());
+        assertEquals(Arrays.asList("queued", "late"), abandoned);
+        assertEquals(2, dispatcher.getAbandonedCount());
+    }
+
+    @Test
+    public void testEventsHeldBackByGitHubAreDeferred() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(1, 100);
+        try {
+            AtomicInteger attempts = new AtomicInteger();
+            CountDownLatch handled = new CountDownLatch(1);
+            dispatcher.dispatch("octo/hello-world", () -> {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new UncheckedIOException(new RequestGovernor.HeldBackException("held back", 100));
+                }
+                handled.countDown();
+            }, () -> { });
+
+            assertTrue(handled.await(10, TimeUnit.SECONDS));
+            assertEquals(2, attempts.get());
+            assertEquals(1, dispatcher.getDeferredCount());
+            assertEquals(0, dispatcher.getFailedCount());
+        } finally {
+            dispatcher.close();
+        }
+        assertEquals(1, dispatcher.getCompletedCount());
+    }
+
+    @Test
+    public void testEventsDeferredAtShutdownAreAbandoned() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(1, 100);
+        List<String> abandoned = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.dispatch("octo/hello-world", () -> {
+            throw new UncheckedIOException(new RequestGovernor.HeldBackException("held back", 60_000));
+        }, () -> abandoned.add("deferred"));
+        while (dispatcher.getDeferredCount() < 1) {
+            Thread.sleep(10);
+        }
+
+        dispatcher.close();
+
+        assertEquals(Collections.singletonList("deferred"), abandoned);
+        assertEquals(1, dispatcher.getAbandonedCount());
+    }
+}